@@ -0,0 +1,237 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FeedStorage;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Хвост ленты активных пользователей: последние tail-size событий каждого в кольцевом буфере по возрастанию event_id.
+// Запрос «события после since» отдаётся из памяти, если буфер покрывает всё после since: в нём есть
+// все события пользователя с event_id больше floor, и since >= floor. Иначе — запрос к базе.
+// Буфер заполняется из базы при первом запросе, дальше к нему дописываются события после коммита их записи.
+// Событие, записанное без id (пакетная запись) или пришедшее не по порядку id, буфер сбрасывает.
+// Пользователей не больше max-users, вытесняется тот, чью ленту давно не читали.
+@Component
+public class FeedTailCache implements MetricsSource {
+    private final FeedStorage feedRepository;
+    private final int tailSize;
+    private final int maxUsers;
+
+    // accessOrder = true: первым вытесняется пользователь, чью ленту давно не читали
+    private final LinkedHashMap<Integer, Tail> tails = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidated = new LongAdder();
+
+    public FeedTailCache(FeedStorage feedRepository,
+                         @Value("${filmorate.feed.tail.size:50}") int tailSize,
+                         @Value("${filmorate.feed.tail.max-users:10000}") int maxUsers) {
+        this.feedRepository = feedRepository;
+        this.tailSize = tailSize;
+        this.maxUsers = maxUsers;
+    }
+
+    // События пользователя с event_id больше since по возрастанию id, не больше limit
+    public List<Feed> findSince(int userId, long since, int limit) {
+        List<Feed> events = fromTail(userId, since, limit);
+        if (events == null && load(userId)) {
+            events = fromTail(userId, since, limit);
+        }
+        if (events != null) {
+            hits.increment();
+            return events;
+        }
+
+        misses.increment();
+        return feedRepository.getFeedSince(userId, since, limit);
+    }
+
+    // Событие записано и закоммичено, id известен
+    public synchronized void append(Feed feed) {
+        Tail tail = tails.get(feed.getUserId());
+        if (tail == null) {
+            return;
+        }
+        if (!tail.loaded) {
+            // буфер сейчас читается из базы и может не увидеть это событие
+            tail.stale = true;
+            return;
+        }
+        if (tail.size > 0 && feed.getEventId() <= tail.last().getEventId()) {
+            // параллельные коммиты пришли не по порядку id — проще перечитать
+            tails.remove(feed.getUserId());
+            invalidated.increment();
+            return;
+        }
+        tail.add(copyOf(feed));
+    }
+
+    // События пользователя записаны без id — буфер перечитается при следующем запросе
+    public synchronized void invalidate(int userId) {
+        Tail tail = tails.get(userId);
+        if (tail == null) {
+            return;
+        }
+        if (tail.loaded) {
+            tails.remove(userId);
+        } else {
+            tail.stale = true;
+        }
+        invalidated.increment();
+    }
+
+    @Override
+    public String name() {
+        return "feedTailCache";
+    }
+
+    @Override
+    public synchronized Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("users", tails.size());
+        metrics.put("maxUsers", maxUsers);
+        metrics.put("tailSize", tailSize);
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        metrics.put("hits", hitCount);
+        metrics.put("misses", misses.sum());
+        metrics.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        metrics.put("loads", loads.sum());
+        metrics.put("evictions", evictions.sum());
+        metrics.put("invalidated", invalidated.sum());
+        return metrics;
+    }
+
+    // null — буфера нет или он не покрывает всё после since
+    private synchronized List<Feed> fromTail(int userId, long since, int limit) {
+        Tail tail = tails.get(userId);
+        if (tail == null || !tail.loaded || since < tail.floor) {
+            return null;
+        }
+        return tail.after(since, limit);
+    }
+
+    // Читает последние tail-size событий пользователя. Пока идёт запрос, в карте лежит незаполненный буфер:
+    // дописанное или сброшенное за это время событие помечает его устаревшим, и такой буфер не ставится
+    private boolean load(int userId) {
+        Tail placeholder = new Tail(tailSize);
+        synchronized (this) {
+            if (tails.containsKey(userId)) {
+                // буфер уже есть или его читает другой запрос
+                return false;
+            }
+            tails.put(userId, placeholder);
+            evictOverflow();
+        }
+
+        List<Feed> latest;
+        try {
+            latest = feedRepository.getLatestFeed(userId, tailSize + 1);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                tails.remove(userId, placeholder);
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            if (tails.get(userId) != placeholder) {
+                return false;
+            }
+            if (placeholder.stale) {
+                tails.remove(userId);
+                return false;
+            }
+
+            // запрос вернул события по убыванию id; лишнее (tail-size + 1)-е задаёт floor
+            int count = Math.min(latest.size(), tailSize);
+            placeholder.floor = latest.size() > tailSize ? latest.get(tailSize).getEventId() : 0;
+            for (int i = count - 1; i >= 0; i--) {
+                placeholder.add(copyOf(latest.get(i)));
+            }
+            placeholder.loaded = true;
+            loads.increment();
+            return true;
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Integer> eldest = tails.keySet().iterator();
+        while (tails.size() > maxUsers && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private static Feed copyOf(Feed feed) {
+        return Feed.builder()
+                .eventId(feed.getEventId())
+                .timestamp(feed.getTimestamp())
+                .feedType(feed.getFeedType())
+                .feedOperation(feed.getFeedOperation())
+                .userId(feed.getUserId())
+                .entityId(feed.getEntityId())
+                .build();
+    }
+
+    // Кольцевой буфер: при переполнении затирается самое старое событие, floor поднимается до его id
+    private static final class Tail {
+        private final Feed[] events;
+        private int start;
+        private int size;
+        // в буфере все события пользователя с event_id > floor
+        private long floor;
+        private boolean loaded;
+        private boolean stale;
+
+        private Tail(int capacity) {
+            this.events = new Feed[capacity];
+        }
+
+        private Feed get(int i) {
+            return events[(start + i) % events.length];
+        }
+
+        private Feed last() {
+            return get(size - 1);
+        }
+
+        private void add(Feed feed) {
+            if (size < events.length) {
+                events[(start + size++) % events.length] = feed;
+                return;
+            }
+            floor = events[start].getEventId();
+            events[start] = feed;
+            start = (start + 1) % events.length;
+        }
+
+        private List<Feed> after(long since, int limit) {
+            // буфер отсортирован по id: ищем первое событие после since двоичным поиском
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (get(middle).getEventId() <= since) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            List<Feed> result = new ArrayList<>(Math.min(limit, size - low));
+            for (int i = low; i < size && result.size() < limit; i++) {
+                result.add(copyOf(get(i)));
+            }
+            return result;
+        }
+    }
+}
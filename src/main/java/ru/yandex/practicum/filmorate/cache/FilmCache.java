@@ -0,0 +1,164 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.TransactionCallbacks;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Кэш собранных фильмов (с рейтингом, жанрами и режиссёрами) для карточки фильма.
+// Ограничен по размеру (вытесняется давно не читанный фильм) и по времени жизни записи.
+// Наружу всегда отдаётся копия, чтобы изменение фильма вызывающим не портило кэш.
+@Component
+public class FilmCache implements MetricsSource {
+    private final int maxSize;
+    private final long ttlNanos;
+
+    // accessOrder = true: при чтении запись переезжает в конец, первой вытесняется самая старая
+    private final LinkedHashMap<Integer, CachedFilm> films = new LinkedHashMap<>(16, 0.75f, true);
+    // Какие закэшированные фильмы снял режиссёр — чтобы при его изменении сбросить только их
+    private final Map<Integer, Set<Integer>> filmIdsByDirector = new HashMap<>();
+    // Растёт при каждой инвалидации: фильм, прочитанный до неё, в кэш уже не кладём
+    private long invalidations;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public FilmCache(@Value("${filmorate.film-cache.max-size:10000}") int maxSize,
+                     @Value("${filmorate.film-cache.ttl:10m}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public Film get(int filmId, Supplier<Film> loader) {
+        long loadedAt;
+        synchronized (this) {
+            CachedFilm cached = films.get(filmId);
+            if (cached != null && cached.expiresAt() - System.nanoTime() > 0) {
+                hits.increment();
+                return copyOf(cached.film());
+            }
+            if (cached != null) {
+                remove(filmId);
+            }
+            loadedAt = invalidations;
+        }
+
+        misses.increment();
+        Film film = loader.get();
+
+        synchronized (this) {
+            if (loadedAt == invalidations) {
+                put(filmId, copyOf(film));
+            }
+        }
+        return film;
+    }
+
+    // Сбрасываем сразу и ещё раз после завершения транзакции: до коммита другой поток мог прочитать и закэшировать старую версию
+    public void invalidate(int filmId) {
+        evict(filmId);
+        TransactionCallbacks.afterCompletion(() -> evict(filmId));
+    }
+
+    public void invalidateDirector(int directorId) {
+        evictDirector(directorId);
+        TransactionCallbacks.afterCompletion(() -> evictDirector(directorId));
+    }
+
+    @Override
+    public String name() {
+        return "filmCache";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long requests = hitCount + missCount;
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", size());
+        metrics.put("maxSize", maxSize);
+        metrics.put("hits", hitCount);
+        metrics.put("misses", missCount);
+        metrics.put("hitRatio", requests == 0 ? 0.0 : (double) hitCount / requests);
+        metrics.put("evictions", evictions.sum());
+        return metrics;
+    }
+
+    public synchronized int size() {
+        return films.size();
+    }
+
+    private synchronized void evict(int filmId) {
+        invalidations++;
+        remove(filmId);
+    }
+
+    private synchronized void evictDirector(int directorId) {
+        invalidations++;
+        Set<Integer> filmIds = filmIdsByDirector.get(directorId);
+        if (filmIds != null) {
+            for (Integer filmId : List.copyOf(filmIds)) {
+                remove(filmId);
+            }
+        }
+    }
+
+    // Методы ниже вызываются только под блокировкой кэша
+    private void put(int filmId, Film film) {
+        remove(filmId);
+        films.put(filmId, new CachedFilm(film, System.nanoTime() + ttlNanos));
+        for (Director director : film.getDirectors()) {
+            filmIdsByDirector.computeIfAbsent(director.getId(), k -> new HashSet<>()).add(filmId);
+        }
+
+        Iterator<Map.Entry<Integer, CachedFilm>> eldest = films.entrySet().iterator();
+        while (films.size() > maxSize && eldest.hasNext()) {
+            Map.Entry<Integer, CachedFilm> entry = eldest.next();
+            eldest.remove();
+            unlinkDirectors(entry.getKey(), entry.getValue().film());
+            evictions.increment();
+        }
+    }
+
+    private void remove(int filmId) {
+        CachedFilm removed = films.remove(filmId);
+        if (removed != null) {
+            unlinkDirectors(filmId, removed.film());
+        }
+    }
+
+    private void unlinkDirectors(int filmId, Film film) {
+        for (Director director : film.getDirectors()) {
+            Set<Integer> filmIds = filmIdsByDirector.get(director.getId());
+            if (filmIds != null) {
+                filmIds.remove(filmId);
+                if (filmIds.isEmpty()) {
+                    filmIdsByDirector.remove(director.getId());
+                }
+            }
+        }
+    }
+
+    private static Film copyOf(Film film) {
+        Set<Genre> genres = new TreeSet<>(Comparator.comparing(Genre::getId));
+        genres.addAll(film.getGenres());
+        return film.toBuilder()
+                .genres(genres)
+                .directors(new HashSet<>(film.getDirectors()))
+                .build();
+    }
+
+    private record CachedFilm(Film film, long expiresAt) {
+    }
+}
@@ -0,0 +1,186 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+import ru.yandex.practicum.filmorate.model.SearchBy;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Кэш результатов поиска по (запрос в нижнем регистре, где искать): хранятся только id найденных фильмов
+// уже в порядке выдачи, сами фильмы читаются отдельно. Попадание отдаёт готовый массив без пересортировки.
+// Ограничен по размеру, вытесняется давно не читанный запрос.
+// Лайк фильма сбрасывает только запросы, в выдаче которых он есть, — их порядок мог измениться.
+// При изменении названия или режиссёров фильма сбрасываются запросы, в выдаче которых фильм был
+// или под которые он теперь подходит. Самые частые запросы считаются в Space-Saving — их стоит прогревать.
+@Component
+public class SearchResultCache implements MetricsSource {
+    private static final int TOP_QUERIES_SHOWN = 10;
+
+    private final FilmSearchIndex filmSearchIndex;
+    private final LikesIndex likesIndex;
+    private final int maxSize;
+
+    // accessOrder = true: при чтении запись переезжает в конец, первой вытесняется самая старая.
+    // Значение — id найденных фильмов по убыванию лайков, как их вернул FilmSearchIndex.search
+    private final LinkedHashMap<SearchKey, int[]> results = new LinkedHashMap<>(16, 0.75f, true);
+    // Запросы, в выдаче которых есть фильм: лайк сбрасывает их, не перебирая весь кэш
+    private final Map<Integer, Set<SearchKey>> keysByFilm = new HashMap<>();
+    // Растёт при каждой инвалидации: результат, посчитанный до неё, в кэш уже не кладём
+    private long invalidations;
+    private final SpaceSavingSketch<SearchKey> topQueries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidated = new LongAdder();
+
+    public SearchResultCache(FilmSearchIndex filmSearchIndex,
+                             LikesIndex likesIndex,
+                             @Value("${filmorate.search-cache.max-size:1000}") int maxSize,
+                             @Value("${filmorate.search-cache.top-queries-capacity:100}") int topQueriesCapacity) {
+        this.filmSearchIndex = filmSearchIndex;
+        this.likesIndex = likesIndex;
+        this.maxSize = maxSize;
+        this.topQueries = new SpaceSavingSketch<>(topQueriesCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        filmSearchIndex.addChangeListener(this::invalidateFilm);
+        likesIndex.addFilmChangeListener(this::invalidateLikes);
+    }
+
+    // id найденных фильмов по убыванию числа лайков, как FilmSearchIndex.search. Возвращаемый массив нельзя изменять
+    public int[] search(String query, SearchBy searchBy) {
+        SearchKey key = new SearchKey(query.trim().toLowerCase(Locale.ROOT), searchBy);
+        topQueries.add(key);
+
+        int[] cached;
+        long loadedAt;
+        synchronized (this) {
+            cached = results.get(key);
+            loadedAt = invalidations;
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        int[] found = filmSearchIndex.search(key.query(), searchBy);
+
+        synchronized (this) {
+            // лайк или правка фильма во время поиска могли сделать порядок или состав выдачи устаревшими
+            if (loadedAt == invalidations) {
+                put(key, found);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public String name() {
+        return "searchResultCache";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long requests = hitCount + missCount;
+
+        List<Map<String, Object>> top = new ArrayList<>();
+        for (SpaceSavingSketch.Entry<SearchKey> entry : topQueries.top(TOP_QUERIES_SHOWN)) {
+            Map<String, Object> query = new LinkedHashMap<>();
+            query.put("query", entry.key().query());
+            query.put("by", entry.key().searchBy());
+            query.put("count", entry.count());
+            query.put("error", entry.error());
+            top.add(query);
+        }
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", size());
+        metrics.put("maxSize", maxSize);
+        metrics.put("hits", hitCount);
+        metrics.put("misses", missCount);
+        metrics.put("hitRatio", requests == 0 ? 0.0 : (double) hitCount / requests);
+        metrics.put("evictions", evictions.sum());
+        metrics.put("invalidated", invalidated.sum());
+        metrics.put("topQueries", top);
+        return metrics;
+    }
+
+    public synchronized int size() {
+        return results.size();
+    }
+
+    // Вызывается FilmSearchIndex уже после изменения, так что matches видит новое название и режиссёров
+    private synchronized void invalidateFilm(int filmId) {
+        invalidations++;
+        List<SearchKey> affected = new ArrayList<>(keysByFilm.getOrDefault(filmId, Set.of()));
+        for (SearchKey key : results.keySet()) {
+            if (filmSearchIndex.matches(filmId, key.query(), key.searchBy())) {
+                affected.add(key);
+            }
+        }
+        for (SearchKey key : affected) {
+            if (remove(key)) {
+                invalidated.increment();
+            }
+        }
+    }
+
+    // Вызывается LikesIndex уже после изменения лайков фильма
+    private synchronized void invalidateLikes(int filmId) {
+        invalidations++;
+        Set<SearchKey> keys = keysByFilm.get(filmId);
+        if (keys == null) {
+            return;
+        }
+
+        for (SearchKey key : List.copyOf(keys)) {
+            remove(key);
+            invalidated.increment();
+        }
+    }
+
+    // Вызывается только под блокировкой кэша
+    private void put(SearchKey key, int[] filmIds) {
+        remove(key);
+        results.put(key, filmIds);
+        for (int filmId : filmIds) {
+            keysByFilm.computeIfAbsent(filmId, id -> new HashSet<>()).add(key);
+        }
+
+        while (results.size() > maxSize) {
+            remove(results.keySet().iterator().next());
+            evictions.increment();
+        }
+    }
+
+    // Вызывается только под блокировкой кэша
+    private boolean remove(SearchKey key) {
+        int[] filmIds = results.remove(key);
+        if (filmIds == null) {
+            return false;
+        }
+
+        for (int filmId : filmIds) {
+            Set<SearchKey> keys = keysByFilm.get(filmId);
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                keysByFilm.remove(filmId);
+            }
+        }
+        return true;
+    }
+
+    private record SearchKey(String query, SearchBy searchBy) {
+    }
+}
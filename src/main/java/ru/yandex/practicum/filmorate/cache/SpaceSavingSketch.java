@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import java.util.*;
+
+// Приближённый подсчёт самых частых ключей потока (алгоритм Space-Saving).
+// Хранится не больше capacity счётчиков. Новый ключ при заполненном наборе занимает место ключа
+// с наименьшим счётчиком и наследует его значение как погрешность: счётчик завышен не больше чем на error.
+// Ключ, встретившийся больше n / capacity раз из n, из набора не вытесняется.
+public class SpaceSavingSketch<K> {
+    private final int capacity;
+    private final Map<K, Counter<K>> counters = new HashMap<>();
+    // по возрастанию счётчика: первым вытесняется наименьший
+    private final TreeSet<Counter<K>> byCount = new TreeSet<>(Comparator.<Counter<K>>comparingLong(c -> c.count)
+            .thenComparingLong(c -> c.sequence));
+    private long sequence;
+
+    public SpaceSavingSketch(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public synchronized void add(K key) {
+        Counter<K> counter = counters.get(key);
+        if (counter == null) {
+            if (counters.size() < capacity) {
+                counter = new Counter<>(key, 0, 0, sequence++);
+            } else {
+                Counter<K> smallest = byCount.pollFirst();
+                counters.remove(smallest.key);
+                counter = new Counter<>(key, smallest.count, smallest.count, sequence++);
+            }
+            counters.put(key, counter);
+        } else {
+            byCount.remove(counter);
+        }
+        counter.count++;
+        byCount.add(counter);
+    }
+
+    // limit самых частых ключей по убыванию счётчика
+    public synchronized List<Entry<K>> top(int limit) {
+        List<Entry<K>> top = new ArrayList<>(Math.min(limit, byCount.size()));
+        for (Counter<K> counter : byCount.descendingSet()) {
+            if (top.size() == limit) {
+                break;
+            }
+            top.add(new Entry<>(counter.key, counter.count, counter.error));
+        }
+        return top;
+    }
+
+    public record Entry<K>(K key, long count, long error) {
+    }
+
+    private static final class Counter<K> {
+        private final K key;
+        private final long error;
+        private final long sequence;
+        private long count;
+
+        private Counter(K key, long count, long error, long sequence) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.dto.FilmSuggestionDTO;
+import ru.yandex.practicum.filmorate.dto.Page;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.SearchBy;
 import ru.yandex.practicum.filmorate.model.SortOrder;
@@ -12,6 +17,7 @@ import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.validators.Marker;
 
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/films")
@@ -19,12 +25,27 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class FilmController {
     private final FilmService filmService;
+    private final NdjsonWriter ndjsonWriter;
 
     @GetMapping
     public Collection<Film> findAll() {
         return filmService.findAll();
     }
 
+    // Постраничная выдача: следующая страница запрашивается с after = nextCursor из предыдущего ответа
+    @GetMapping(params = "limit")
+    public Page<Film> findPage(
+            @RequestParam(required = false) String after,
+            @RequestParam @Positive @Max(1000) int limit) {
+        return filmService.findPage(after, limit);
+    }
+
+    // Для больших каталогов: фильмы отдаются построчно, по мере чтения из базы
+    @GetMapping(produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        return ndjsonWriter.stream(filmService::streamAll);
+    }
+
     @PostMapping
     @Validated({Marker.OnCreate.class})
     public Film create(@Valid @RequestBody Film film) {
@@ -84,8 +105,18 @@ public class FilmController {
     @GetMapping("/search")
     public Collection<Film> searchFilms(
             @RequestParam String query,
-            @RequestParam(required = false, defaultValue = "director,title") SearchBy by) {
-        return filmService.searchFilms(query, by);
+            @RequestParam(required = false, defaultValue = "director,title") SearchBy by,
+            @RequestParam(defaultValue = "false") boolean fuzzy) {
+        return filmService.searchFilms(query, by, fuzzy);
+    }
+
+    // Подсказки при наборе: фильмы, у которых название или имя режиссёра содержит слово, начинающееся с prefix.
+    // Верхняя граница limit — top-k индекса подсказок, её проверяет сервис
+    @GetMapping("/suggest")
+    public List<FilmSuggestionDTO> suggest(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") @Positive int limit) {
+        return filmService.suggest(prefix, limit);
     }
 
 }
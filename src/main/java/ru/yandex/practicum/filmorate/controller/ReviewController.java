@@ -1,9 +1,12 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.dto.Page;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.service.ReviewService;
 import ru.yandex.practicum.filmorate.validators.Marker;
@@ -12,6 +15,7 @@ import java.util.Collection;
 
 @RestController
 @RequestMapping("/reviews")
+@Validated
 @RequiredArgsConstructor
 public class ReviewController {
     private final ReviewService reviewService;
@@ -45,6 +49,16 @@ public class ReviewController {
         return reviewService.findAll(filmId, count);
     }
 
+    // Постраничная выдача: следующая страница запрашивается с after = nextCursor из предыдущего ответа
+    @GetMapping(params = "limit")
+    public Page<Review> findPage(
+            @RequestParam(name = "filmId", defaultValue = "0", required = false) int filmId,
+            @RequestParam(required = false) String after,
+            @RequestParam @Positive @Max(1000) int limit
+    ) {
+        return reviewService.findPage(filmId, after, limit);
+    }
+
     @PutMapping("/{id}/like/{userId}")
     public void likeReview(@PathVariable int id, @PathVariable int userId) {
         reviewService.addReaction(id, userId, true);
@@ -1,9 +1,15 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.dto.Page;
 import ru.yandex.practicum.filmorate.dto.UserDTO;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Film;
@@ -13,6 +19,7 @@ import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.validators.Marker;
 
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/users")
@@ -21,12 +28,27 @@ import java.util.Collection;
 public class UserController {
     private final UserService userService;
     private final FeedService feedService;
+    private final NdjsonWriter ndjsonWriter;
 
     @GetMapping
     public Collection<UserDTO> findAll() {
         return userService.getAllUsers();
     }
 
+    // Постраничная выдача: следующая страница запрашивается с after = nextCursor из предыдущего ответа
+    @GetMapping(params = "limit")
+    public Page<UserDTO> findPage(
+            @RequestParam(required = false) String after,
+            @RequestParam @Positive @Max(1000) int limit) {
+        return userService.getUsersPage(after, limit);
+    }
+
+    // Для больших таблиц: пользователи отдаются построчно, по мере чтения из базы
+    @GetMapping(produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        return ndjsonWriter.stream(userService::streamAllUsers);
+    }
+
     @PostMapping
     @Validated({Marker.OnCreate.class})
     public User create(@Valid @RequestBody User user) {
@@ -64,16 +86,47 @@ public class UserController {
         return userService.getUserFriends(userId);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public Collection<UserDTO> getFriendSuggestions(
+            @PathVariable("id") int userId,
+            @RequestParam(defaultValue = "10") @Positive @Max(100) int count) {
+        return userService.getFriendSuggestions(userId, count);
+    }
+
     @GetMapping("/{id}/friends/common/{otherId}")
     public Collection<User> findCommonFriends(@PathVariable int id, @PathVariable int otherId) {
         return userService.findCommonFriends(id, otherId);
     }
 
+    @GetMapping("/{id}/path/{otherId}")
+    public Collection<UserDTO> findPath(
+            @PathVariable int id,
+            @PathVariable int otherId,
+            @RequestParam(required = false) @Positive Integer maxDepth) {
+        return userService.findPath(id, otherId, maxDepth);
+    }
+
     @GetMapping("/{id}/recommendations")
     public Collection<Film> getRecommendations(@PathVariable("id") int userId) {
         return userService.getRecommendations(userId);
     }
 
+    @GetMapping(value = "/{id}/feed", params = "since")
+    public List<Feed> findFeedSince(
+            @PathVariable("id") int userId,
+            @RequestParam @PositiveOrZero long since,
+            @RequestParam(defaultValue = "100") @Positive @Max(1000) int limit) {
+        return feedService.findFeedSince(userId, since, limit);
+    }
+
+    @GetMapping(value = "/{id}/feed", params = {"limit", "!since"})
+    public Page<Feed> findFeedPage(
+            @PathVariable("id") int userId,
+            @RequestParam(required = false) String after,
+            @RequestParam @Positive @Max(1000) int limit) {
+        return feedService.findFeedPage(userId, after, limit);
+    }
+
     @GetMapping("/{id}/feed")
     public Collection<Feed> findFeeds(@PathVariable("id") int userId) {
         return feedService.findFeeds(userId);
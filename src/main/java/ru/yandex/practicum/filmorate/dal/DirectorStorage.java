@@ -3,7 +3,6 @@ package ru.yandex.practicum.filmorate.dal;
 import ru.yandex.practicum.filmorate.model.Director;
 
 import java.util.Collection;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -24,7 +23,5 @@ public interface DirectorStorage {
 
     Set<Director> getFilmDirectorsByFilmId(int filmId);
 
-    Map<Integer, Set<Director>> getFilmDirectorsForFilms(Collection<Integer> filmIds);
-
     Set<Director> getDirectorsByIds(Collection<Integer> ids);
 }
@@ -3,10 +3,21 @@ package ru.yandex.practicum.filmorate.dal;
 import ru.yandex.practicum.filmorate.model.Feed;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface FeedStorage {
 
     Collection<Feed> getAllFeedById(int userId);
 
+    List<Feed> getFeedPage(int userId, long afterTime, int afterEventId, int limit);
+
+    // События после sinceEventId по возрастанию id — для опроса новых событий
+    List<Feed> getFeedSince(int userId, long sinceEventId, int limit);
+
+    // Последние события по убыванию id
+    List<Feed> getLatestFeed(int userId, int limit);
+
     Feed create(Feed feed);
+
+    void createAll(List<Feed> feeds);
 }
@@ -1,25 +1,55 @@
 package ru.yandex.practicum.filmorate.dal;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmPopularity;
+import ru.yandex.practicum.filmorate.model.LikeChange;
 import ru.yandex.practicum.filmorate.model.SearchBy;
 import ru.yandex.practicum.filmorate.model.SortOrder;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 public interface FilmStorage {
     Collection<Film> findAll();
 
+    void streamAll(Consumer<Film> consumer);
+
+    List<Film> findPage(int afterId, int limit);
+
+    List<Film> findByIds(List<Integer> ids);
+
+    Collection<FilmPopularity> getFilmsPopularity();
+
     Film create(Film film);
 
     Film update(Film newFilm);
 
     Optional<Film> getFilmById(int id);
 
-    void addLike(int filmId, int userId);
+    boolean existsById(int id);
+
+    // id всех фильмов — для реестра существующих id
+    void streamAllIds(IntConsumer consumer);
+
+    boolean addLike(int filmId, int userId);
 
     void removeLike(int filmId, int userId);
 
+    Map<Integer, Integer> applyLikeChanges(Collection<LikeChange> changes);
+
+    // Лайки целиком, сгруппированные по пользователю и по фильму: id внутри массива отсортированы
+    Map<Integer, int[]> getFilmIdsByUser();
+
+    Map<Integer, int[]> getUserIdsByFilm();
+
+    List<Integer> removeUserLikes(int userId);
+
+    int rebuildLikesCount();
+
     Collection<Film> findByDirectorId(int directorId, SortOrder sortOrder);
 
     void delete(int id);
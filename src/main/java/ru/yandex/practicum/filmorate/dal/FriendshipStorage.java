@@ -4,6 +4,7 @@ import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
+import java.util.Map;
 
 public interface FriendshipStorage {
 
@@ -15,4 +16,7 @@ public interface FriendshipStorage {
 
     List<User> findCommonFriends(int userA, int userB);
 
+    // id друзей каждого пользователя по возрастанию — для графа дружбы в памяти
+    Map<Integer, int[]> getFriendIdsByUser();
+
 }
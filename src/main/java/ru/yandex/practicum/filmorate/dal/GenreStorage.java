@@ -13,6 +13,4 @@ public interface GenreStorage {
     List<Genre> getFilmGenresByFilmId(int filmId);
 
     void saveFilmGenres(int filmId, Set<Genre> genres);
-
-    Map<Integer, Set<Genre>> getFilmGenresForFilms(Collection<Integer> filmIds);
 }
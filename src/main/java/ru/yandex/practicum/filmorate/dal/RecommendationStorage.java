@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface RecommendationStorage {
+
+    Optional<List<Integer>> getRecommendations(int userId);
+
+    void saveRecommendations(Map<Integer, List<Integer>> filmIdsByUser);
+
+}
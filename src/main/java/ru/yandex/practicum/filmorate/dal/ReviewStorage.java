@@ -3,12 +3,15 @@ package ru.yandex.practicum.filmorate.dal;
 import ru.yandex.practicum.filmorate.model.Review;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ReviewStorage {
 
     Collection<Review> findAll(int count);
 
+    List<Review> findPage(int filmId, int afterUseful, int afterReviewId, int limit);
+
     Optional<Review> getReviewById(int id);
 
     Collection<Review> getAllReviewById(int filmId, int count);
@@ -21,9 +24,13 @@ public interface ReviewStorage {
 
     boolean isNotExists(int id);
 
-    void updateUseful(int reviewId);
+    // Новая полезность отзыва или пусто, если оценка ничего не изменила
+    Optional<Integer> addReaction(Integer reviewId, Integer userId, Boolean isPositive);
+
+    Optional<Integer> removeReaction(Integer reviewId, Integer userId);
 
-    void addReaction(Integer reviewId, Integer userId, Boolean isPositive);
+    int findMaxReviewId();
 
-    void removeReaction(Integer reviewId, Integer userId);
+    // Исправляет useful отзывов с id в (fromReviewId, toReviewId], разошедшийся с review_likes; возвращает число исправленных
+    int reconcileUseful(int fromReviewId, int toReviewId);
 }
\ No newline at end of file
@@ -5,19 +5,29 @@ import ru.yandex.practicum.filmorate.model.User;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 public interface UserStorage {
     Collection<User> getAllUsers();
 
+    void streamAllUsers(Consumer<User> consumer);
+
+    List<User> getUsersPage(int afterId, int limit);
+
     User create(User user);
 
     User update(User newUser);
 
     Optional<User> getUserById(int id);
 
-    Optional<User> findDuplicateDataUser(String email, String login);
+    boolean existsById(int id);
+
+    // id всех пользователей — для реестра существующих id
+    void streamAllIds(IntConsumer consumer);
 
-    List<Integer> checkUserIds(int[] userIds);
+    // Пользователи одним запросом в порядке переданных id; несуществующие пропускаются
+    List<User> findByIds(int[] ids);
 
     void delete(int id);
 }
@@ -3,17 +3,25 @@ package ru.yandex.practicum.filmorate.dal.dBStorage;
 import lombok.RequiredArgsConstructor;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import ru.yandex.practicum.filmorate.exceptions.exceptions.InternalServerException;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.IntConsumer;
 
 @RequiredArgsConstructor
 public class BaseRepository<T> {
+    // Сколько строк драйвер подтягивает за раз при построчной выгрузке больших таблиц
+    protected static final int STREAM_FETCH_SIZE = 500;
+
     protected final JdbcTemplate jdbc;
     protected final RowMapper<T> mapper;
 
@@ -30,6 +38,18 @@ public class BaseRepository<T> {
         return jdbc.query(query, mapper, params);
     }
 
+    // Результат не собирается в список: строки читаются порциями по STREAM_FETCH_SIZE и сразу отдаются extractor
+    protected <R> R stream(String query, ResultSetExtractor<R> extractor, Object... params) {
+        return jdbc.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            for (int idx = 0; idx < params.length; idx++) {
+                ps.setObject(idx + 1, params[idx]);
+            }
+            return ps;
+        }, extractor);
+    }
+
     protected boolean delete(String query, long id) {
         int rowsDeleted = jdbc.update(query, id);
         return rowsDeleted > 0;
@@ -66,4 +86,41 @@ public class BaseRepository<T> {
             throw new InternalServerException("Неожиданная ошибка: данные не обновились");
         }
     }
-}
\ No newline at end of file
+
+    // Первый столбец каждой строки — без сборки списка и упаковки в Integer
+    protected void streamIds(String query, IntConsumer consumer) {
+        stream(query, rs -> {
+            while (rs.next()) {
+                consumer.accept(rs.getInt(1));
+            }
+            return null;
+        });
+    }
+
+    // Строки отсортированы по первому столбцу, поэтому группа — это непрерывный участок; второй столбец в ней уже упорядочен
+    protected Map<Integer, int[]> groupIds(String query) {
+        Map<Integer, int[]> groups = new HashMap<>();
+        stream(query, rs -> {
+            int currentKey = 0;
+            int[] values = new int[16];
+            int size = 0;
+            while (rs.next()) {
+                int key = rs.getInt(1);
+                if (size > 0 && key != currentKey) {
+                    groups.put(currentKey, Arrays.copyOf(values, size));
+                    size = 0;
+                }
+                currentKey = key;
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = rs.getInt(2);
+            }
+            if (size > 0) {
+                groups.put(currentKey, Arrays.copyOf(values, size));
+            }
+            return null;
+        });
+        return groups;
+    }
+}
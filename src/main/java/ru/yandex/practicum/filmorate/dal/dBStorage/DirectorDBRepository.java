@@ -93,42 +93,6 @@ public class DirectorDBRepository extends BaseRepository<Director> implements Di
         return new HashSet<>(findMany(FIND_FILM_DIRECTORS_QUERY, filmId));
     }
 
-    @Override
-    public Map<Integer, Set<Director>> getFilmDirectorsForFilms(Collection<Integer> filmIds) {
-        if (filmIds == null || filmIds.isEmpty()) {
-            return new HashMap<>();
-        }
-
-        // Создаём строку из нужного количества плейсхолдеров (строка вида '?, ?, ?, ?' по числу элементов в filmIds)
-        String placeholders = filmIds.stream()
-                .map(id -> "?")
-                .collect(Collectors.joining(","));
-
-        // Вставляем плейсхолдеры в запрос
-        String query =
-                "SELECT fd.film_id, d.director_id, d.director_name " +
-                        "FROM director d " +
-                        "JOIN films_directors fd ON d.director_id = fd.director_id " +
-                        "WHERE fd.film_id IN (" + placeholders + ")";
-
-        // Создаем массив параметров
-        Object[] params = filmIds.toArray();
-
-        // Выполняем запрос с параметрами
-        return jdbc.query(query, rs -> {
-            Map<Integer, Set<Director>> result = new HashMap<>();
-            while (rs.next()) {
-                int filmId = rs.getInt("film_id");
-                Director director = Director.builder()
-                        .id(rs.getInt("director_id"))
-                        .name(rs.getString("director_name"))
-                        .build();
-                result.computeIfAbsent(filmId, k -> new HashSet<>()).add(director);
-            }
-            return result;
-        }, params);
-    }
-
     @Override
     public Set<Director> getDirectorsByIds(Collection<Integer> ids) {
         if (ids == null || ids.isEmpty()) {
@@ -8,13 +8,31 @@ import ru.yandex.practicum.filmorate.dal.FeedStorage;
 import ru.yandex.practicum.filmorate.model.Feed;
 
 import java.util.Collection;
+import java.util.List;
 
 @Repository
 @Slf4j
 public class FeedDBRepository extends BaseRepository<Feed> implements FeedStorage {
 
     private static final String FIND_FEED_BY_USER_ID = "SELECT * FROM feeds WHERE user_id = ? " +
-            "ORDER BY create_time";
+            "ORDER BY create_time, event_id";
+
+    private static final String FIND_FEED_PAGE_QUERY = """
+            SELECT * FROM feeds
+            WHERE user_id = ? AND (create_time > ? OR (create_time = ? AND event_id > ?))
+            ORDER BY create_time, event_id
+            LIMIT ?
+            """;
+
+    private static final String FIND_FEED_SINCE_QUERY = """
+            SELECT * FROM feeds
+            WHERE user_id = ? AND event_id > ?
+            ORDER BY event_id
+            LIMIT ?
+            """;
+
+    private static final String FIND_LATEST_FEED_QUERY = "SELECT * FROM feeds WHERE user_id = ? " +
+            "ORDER BY event_id DESC LIMIT ?";
 
     private static final String INSERT_QUERY = "INSERT INTO feeds(create_time, type, operation, user_id, entity_id) " +
             "VALUES (?, ?, ?, ?, ?)";
@@ -28,6 +46,21 @@ public class FeedDBRepository extends BaseRepository<Feed> implements FeedStorag
         return findMany(FIND_FEED_BY_USER_ID, userId);
     }
 
+    @Override
+    public List<Feed> getFeedPage(int userId, long afterTime, int afterEventId, int limit) {
+        return findMany(FIND_FEED_PAGE_QUERY, userId, afterTime, afterTime, afterEventId, limit);
+    }
+
+    @Override
+    public List<Feed> getFeedSince(int userId, long sinceEventId, int limit) {
+        return findMany(FIND_FEED_SINCE_QUERY, userId, sinceEventId, limit);
+    }
+
+    @Override
+    public List<Feed> getLatestFeed(int userId, int limit) {
+        return findMany(FIND_LATEST_FEED_QUERY, userId, limit);
+    }
+
     @Override
     public Feed create(Feed feed) {
         int id = insert(
@@ -42,4 +75,21 @@ public class FeedDBRepository extends BaseRepository<Feed> implements FeedStorag
         feed.setEventId(id);
         return feed;
     }
+
+    // Пакетная вставка без возврата сгенерированных id — для фоновой записи событий
+    @Override
+    public void createAll(List<Feed> feeds) {
+        if (feeds.isEmpty()) {
+            return;
+        }
+
+        jdbc.batchUpdate(INSERT_QUERY, feeds.stream()
+                .map(feed -> new Object[]{
+                        feed.getTimestamp(),
+                        feed.getFeedType().name(),
+                        feed.getFeedOperation().name(),
+                        feed.getUserId(),
+                        feed.getEntityId()})
+                .toList());
+    }
 }
\ No newline at end of file
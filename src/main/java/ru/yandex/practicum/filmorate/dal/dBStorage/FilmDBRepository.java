@@ -1,27 +1,60 @@
 package ru.yandex.practicum.filmorate.dal.dBStorage;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FilmGraphExtractor;
 import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmPopularity;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeChange;
 import ru.yandex.practicum.filmorate.model.SearchBy;
 import ru.yandex.practicum.filmorate.model.SortOrder;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 @Slf4j
 @Repository("FilmDBRepository")
 public class FilmDBRepository extends BaseRepository<Film> implements FilmStorage {
 
 
-    private static final String FIND_ALL_QUERY = """
+    // Списки фильмов читаются одним запросом вместе с рейтингом, жанрами и режиссёрами (см. graphQuery).
+    // Константы ниже — только выборки нужных строк film, остальное к ним присоединяет graphQuery.
+    private static final String FILM_GRAPH_SELECT = """
             SELECT f.film_id, f.film_name, f.description, f.release_date, f.duration,
-                   r.rating_id, r.rating_name
-            FROM film f
+                   r.rating_id, r.rating_name,
+                   g.genre_id, g.genre_name,
+                   d.director_id, d.director_name
+            """;
+
+    private static final String FILM_GRAPH_JOINS = """
             JOIN rating r ON r.rating_id = f.rating_id
+            LEFT JOIN films_genre fg ON fg.film_id = f.film_id
+            LEFT JOIN genre g ON g.genre_id = fg.genre_id
+            LEFT JOIN films_directors fd ON fd.film_id = f.film_id
+            LEFT JOIN director d ON d.director_id = fd.director_id
+            """;
+
+    private static final String FIND_ALL_QUERY = "SELECT * FROM film";
+
+    // Страница по курсору: поиск по первичному ключу вместо OFFSET, глубокие страницы не дороже первой
+    private static final String FIND_PAGE_QUERY = "SELECT * FROM film WHERE film_id > ? ORDER BY film_id LIMIT ?";
+
+    private static final String FIND_BY_IDS_QUERY = "SELECT * FROM film WHERE film_id IN (%s)";
+
+    private static final String FIND_FILMS_POPULARITY_QUERY = """
+            SELECT f.film_id, f.likes_count, EXTRACT(YEAR FROM f.release_date) AS release_year, fg.genre_id
+            FROM film f
+            LEFT JOIN films_genre fg ON fg.film_id = f.film_id
             ORDER BY f.film_id
             """;
 
@@ -37,6 +70,10 @@ public class FilmDBRepository extends BaseRepository<Film> implements FilmStorag
 
     private static final String REMOVE_BY_ID_QUERY = "DELETE FROM film WHERE film_id = ?;";
 
+    private static final String EXISTS_BY_ID_QUERY = "SELECT EXISTS(SELECT 1 FROM film WHERE film_id = ?)";
+
+    private static final String FIND_ALL_IDS_QUERY = "SELECT film_id FROM film";
+
     private static final String UPDATE_QUERY = """
             UPDATE film
             SET film_name = ?,
@@ -47,190 +84,225 @@ public class FilmDBRepository extends BaseRepository<Film> implements FilmStorag
             WHERE film_id = ?
             """;
 
+    // Вставляем лайк только если его ещё нет, чтобы по числу вставленных строк понять, менять ли счётчик.
+    // Два одновременных одинаковых лайка оба могут пройти NOT EXISTS — второй упрётся в первичный ключ (см. insertLike)
     private static final String ADD_LIKE_QUERY = """
-            MERGE INTO likes (film_id, user_id)
-            KEY (film_id, user_id)
-            VALUES (?, ?)
+            INSERT INTO likes (film_id, user_id)
+            SELECT CAST(? AS INTEGER), CAST(? AS INTEGER)
+            WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)
             """;
 
     private static final String REMOVE_LIKE_QUERY = "DELETE FROM likes WHERE film_id = ? AND user_id = ?;";
 
-    private static final String POPULAR_QUERY = """
-            SELECT f.film_id,
-                   f.film_name,
-                   f.description,
-                   f.release_date,
-                   f.duration,
-                   r.rating_id,
-                   r.rating_name,
-                   COUNT(l.user_id) AS likes_count
-              FROM film f
-              JOIN rating r ON r.rating_id = f.rating_id
-              LEFT JOIN likes l ON l.film_id = f.film_id
-             GROUP BY f.film_id,
-                      f.film_name,
-                      f.description,
-                      f.release_date,
-                      f.duration,
-                      r.rating_id,
-                      r.rating_name
-             ORDER BY likes_count DESC,
-                      f.film_id
-             LIMIT ?
-            """;
+    private static final String INCREMENT_LIKES_COUNT_QUERY = "UPDATE film SET likes_count = likes_count + 1 WHERE film_id = ?";
 
-    private static final String FIND_BY_DIRECTOR_ID_QUERY_YEAR = """
-            SELECT f.film_id, f.film_name, f.description, f.release_date, f.duration,
-                   r.rating_id, r.rating_name
-            FROM film f
-            JOIN rating r ON r.rating_id = f.rating_id
-            JOIN films_directors fd ON fd.film_id = f.film_id
-            WHERE fd.director_id = ?
-            ORDER BY f.release_date
+    private static final String DECREMENT_LIKES_COUNT_QUERY = "UPDATE film SET likes_count = likes_count - 1 WHERE film_id = ?";
+
+    private static final String CHANGE_LIKES_COUNT_QUERY = "UPDATE film SET likes_count = likes_count + ? WHERE film_id = ?";
+
+    private static final String FIND_LIKES_BY_USER_QUERY = "SELECT user_id, film_id FROM likes ORDER BY user_id, film_id";
+
+    private static final String FIND_LIKES_BY_FILM_QUERY = "SELECT film_id, user_id FROM likes ORDER BY film_id, user_id";
+
+    private static final String FIND_LIKED_FILM_IDS_QUERY = "SELECT film_id FROM likes WHERE user_id = ?";
+
+    private static final String DECREMENT_LIKES_COUNT_BY_USER_QUERY =
+            "UPDATE film SET likes_count = likes_count - 1 WHERE film_id IN (SELECT film_id FROM likes WHERE user_id = ?)";
+
+    private static final String REMOVE_USER_LIKES_QUERY = "DELETE FROM likes WHERE user_id = ?";
+
+    // Пересчёт денормализованного счётчика по таблице likes (трогаем только разошедшиеся строки)
+    private static final String REBUILD_LIKES_COUNT_QUERY = """
+            UPDATE film f
+               SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)
+             WHERE f.likes_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)
             """;
 
-    private static final String FIND_BY_DIRECTOR_ID_QUERY_LIKES = """
-            SELECT f.film_id, f.film_name, f.description, f.release_date, f.duration,
-                   r.rating_id, r.rating_name,
-                   COUNT(l.user_id) AS likes_count
+    private static final String FIND_BY_DIRECTOR_ID_QUERY = """
+            SELECT f.*
             FROM film f
-            JOIN rating r ON r.rating_id = f.rating_id
             JOIN films_directors fd ON fd.film_id = f.film_id
-            LEFT JOIN likes l ON l.film_id = f.film_id
             WHERE fd.director_id = ?
-            GROUP BY f.film_id, f.film_name, f.description, f.release_date, f.duration, r.rating_id, r.rating_name
-            ORDER BY likes_count DESC, f.film_id
             """;
 
     private static final String GET_FILM_RECOMENDATIONS_BY_USER_ID_QUERY = """
-            SELECT
-                f.film_id,
-                f.film_name,
-                f.description,
-                f.release_date,
-                f.duration,
-                r.rating_id,
-                r.rating_name,
-                COUNT(DISTINCT similar_users.user_id) as recommended_by
-            FROM likes l_other
+            SELECT f.*, rec.recommended_by
+            FROM film f
             JOIN (
-                SELECT l.user_id, COUNT(l.film_id) as common_likes
-                FROM likes l
-                JOIN likes l1 ON l.film_id = l1.film_id AND l1.user_id = ?
-                WHERE l.user_id != ?
-                GROUP BY l.user_id
-                ORDER BY common_likes DESC
-                LIMIT 10
-            ) similar_users ON l_other.user_id = similar_users.user_id
-            JOIN film f ON l_other.film_id = f.film_id
-            JOIN rating r ON f.rating_id = r.rating_id
-            WHERE NOT EXISTS (
-                SELECT 1 FROM likes l2
-                WHERE l2.user_id = ?
-                AND l2.film_id = l_other.film_id
-            )
-            GROUP BY
-                f.film_id,
-                f.film_name,
-                f.description,
-                f.release_date,
-                f.duration,
-                r.rating_id,
-                r.rating_name
-            ORDER BY COUNT(DISTINCT similar_users.user_id) DESC
-            LIMIT 20;
+                SELECT
+                    l_other.film_id,
+                    COUNT(DISTINCT similar_users.user_id) as recommended_by
+                FROM likes l_other
+                JOIN (
+                    SELECT l.user_id, COUNT(l.film_id) as common_likes
+                    FROM likes l
+                    JOIN likes l1 ON l.film_id = l1.film_id AND l1.user_id = ?
+                    WHERE l.user_id != ?
+                    GROUP BY l.user_id
+                    ORDER BY common_likes DESC
+                    LIMIT 10
+                ) similar_users ON l_other.user_id = similar_users.user_id
+                WHERE NOT EXISTS (
+                    SELECT 1 FROM likes l2
+                    WHERE l2.user_id = ?
+                    AND l2.film_id = l_other.film_id
+                )
+                GROUP BY l_other.film_id
+                ORDER BY recommended_by DESC, l_other.film_id
+                LIMIT 20
+            ) rec ON rec.film_id = f.film_id
             """;
 
     private static final String GET_COMMON_FILMS = """
-            SELECT *
-              FROM FILM f
-              JOIN (SELECT f.film_id,
-              			   COUNT(user_id) as total_likes
-              	      FROM FILM f
-              	      JOIN LIKES l USING (film_id)
-              	     GROUP BY f.film_id) USING (film_id)
-              JOIN RATING r ON r.RATING_ID = f.RATING_ID
-             WHERE f.film_id IN (SELECT film_id FROM LIKES WHERE user_id = ?
+            SELECT f.*
+              FROM film f
+             WHERE f.film_id IN (SELECT film_id FROM likes WHERE user_id = ?
                                  INTERSECT
-                                 SELECT film_id FROM LIKES WHERE user_id = ?)
-             ORDER BY total_likes DESC;
+                                 SELECT film_id FROM likes WHERE user_id = ?)
             """;
 
     // Новая константа
     private static final String POPULAR_WITH_FILTERS_QUERY = """
-            SELECT f.film_id,
-                   f.film_name,
-                   f.description,
-                   f.release_date,
-                   f.duration,
-                   r.rating_id,
-                   r.rating_name,
-                   COUNT(l.user_id) AS likes_count
+            SELECT f.*
               FROM film f
-              JOIN rating r ON r.rating_id = f.rating_id
-              LEFT JOIN likes l ON l.film_id = f.film_id
              WHERE (?1 IS NULL OR EXISTS (
                     SELECT 1 FROM films_genre fg
                     WHERE f.film_id = fg.film_id AND fg.genre_id = ?1
                 ))
                AND (?2 IS NULL OR EXTRACT(YEAR FROM f.release_date) = ?2)
-             GROUP BY f.film_id, f.film_name, f.description, f.release_date,
-                      f.duration, r.rating_id, r.rating_name
-             ORDER BY likes_count DESC, f.film_id
+             ORDER BY f.likes_count DESC, f.film_id
              LIMIT ?3
             """;
 
     private static final String SEARCH_BY_TITLE_QUERY = """
-            SELECT f.film_id, f.film_name, f.description, f.release_date, f.duration,
-                   r.rating_id, r.rating_name,
-                   COUNT(l.user_id) AS likes_count
+            SELECT f.*
             FROM film f
-            JOIN rating r ON r.rating_id = f.rating_id
-            LEFT JOIN likes l ON l.film_id = f.film_id
             WHERE LOWER(f.film_name) LIKE LOWER(CONCAT('%', ?, '%'))
-            GROUP BY f.film_id, f.film_name, f.description, f.release_date, f.duration,
-                     r.rating_id, r.rating_name
-            ORDER BY likes_count DESC, f.film_id
             """;
 
+    // EXISTS вместо JOIN, чтобы фильм с несколькими подходящими режиссёрами не дублировался без GROUP BY
     private static final String SEARCH_BY_DIRECTOR_QUERY = """
-            SELECT f.film_id, f.film_name, f.description, f.release_date, f.duration,
-                   r.rating_id, r.rating_name,
-                   COUNT(l.user_id) AS likes_count
+            SELECT f.*
             FROM film f
-            JOIN rating r ON r.rating_id = f.rating_id
-            JOIN films_directors fd ON f.film_id = fd.film_id
-            JOIN director d ON fd.director_id = d.director_id
-            LEFT JOIN likes l ON l.film_id = f.film_id
-            WHERE LOWER(d.director_name) LIKE LOWER(CONCAT('%', ?, '%'))
-            GROUP BY f.film_id, f.film_name, f.description, f.release_date, f.duration,
-                     r.rating_id, r.rating_name
-            ORDER BY likes_count DESC, f.film_id
+            WHERE EXISTS (SELECT 1
+                          FROM films_directors fd
+                          JOIN director d ON fd.director_id = d.director_id
+                          WHERE fd.film_id = f.film_id
+                            AND LOWER(d.director_name) LIKE LOWER(CONCAT('%', ?, '%')))
             """;
 
     private static final String SEARCH_BY_TITLE_AND_DIRECTOR_QUERY = """
-            SELECT f.film_id, f.film_name, f.description, f.release_date, f.duration,
-                   r.rating_id, r.rating_name,
-                   COUNT(l.user_id) AS likes_count
+            SELECT f.*
             FROM film f
-            JOIN rating r ON r.rating_id = f.rating_id
-            LEFT JOIN films_directors fd ON f.film_id = fd.film_id
-            LEFT JOIN director d ON fd.director_id = d.director_id
-            LEFT JOIN likes l ON l.film_id = f.film_id
             WHERE LOWER(f.film_name) LIKE LOWER(CONCAT('%', ?, '%'))
-               OR LOWER(d.director_name) LIKE LOWER(CONCAT('%', ?, '%'))
-            GROUP BY f.film_id, f.film_name, f.description, f.release_date, f.duration,
-                     r.rating_id, r.rating_name
-            ORDER BY likes_count DESC, f.film_id
+               OR EXISTS (SELECT 1
+                          FROM films_directors fd
+                          JOIN director d ON fd.director_id = d.director_id
+                          WHERE fd.film_id = f.film_id
+                            AND LOWER(d.director_name) LIKE LOWER(CONCAT('%', ?, '%')))
             """;
 
-    public FilmDBRepository(JdbcTemplate jdbc, FilmRowMapper filmRowMapper) {
+    private static final String BY_ID = "f.film_id";
+
+    private static final String BY_LIKES = "f.likes_count DESC, f.film_id";
+
+    private static final String BY_RELEASE_DATE = "f.release_date, f.film_id";
+
+    private static final String BY_RECOMMENDATIONS = "f.recommended_by DESC, f.film_id";
+
+    private final ReferenceDataRegistry referenceData;
+    private final boolean rebuildLikesCountOnStartup;
+
+    public FilmDBRepository(JdbcTemplate jdbc, FilmRowMapper filmRowMapper, ReferenceDataRegistry referenceData,
+                            @Value("${filmorate.likes-count.rebuild-on-startup:true}") boolean rebuildLikesCountOnStartup) {
         super(jdbc, filmRowMapper);
+        this.referenceData = referenceData;
+        this.rebuildLikesCountOnStartup = rebuildLikesCountOnStartup;
+    }
+
+    // Выравниваем счётчики до того, как репозиторием начнут пользоваться остальные бины
+    @PostConstruct
+    public void init() {
+        if (rebuildLikesCountOnStartup) {
+            int fixed = rebuildLikesCount();
+            log.info("Счётчики лайков пересчитаны, исправлено фильмов: {}", fixed);
+        }
     }
 
     @Override
     public Collection<Film> findAll() {
-        return findMany(FIND_ALL_QUERY);
+        return findGraph(FIND_ALL_QUERY, BY_ID);
+    }
+
+    // Чтение внутри транзакции нужно, чтобы драйверы вроде PostgreSQL учитывали fetch size
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<Film> consumer) {
+        FilmGraphExtractor extractor = new FilmGraphExtractor(mapper, referenceData);
+        stream(graphQuery(FIND_ALL_QUERY, BY_ID), rs -> {
+            extractor.stream(rs, consumer);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean existsById(int id) {
+        return Boolean.TRUE.equals(jdbc.queryForObject(EXISTS_BY_ID_QUERY, Boolean.class, id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllIds(IntConsumer consumer) {
+        streamIds(FIND_ALL_IDS_QUERY, consumer);
+    }
+
+    @Override
+    public List<Film> findPage(int afterId, int limit) {
+        return findGraph(FIND_PAGE_QUERY, BY_ID, afterId, limit);
+    }
+
+    @Override
+    public List<Film> findByIds(List<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        Map<Integer, Film> filmsById = new HashMap<>();
+        for (Film film : findGraph(String.format(FIND_BY_IDS_QUERY, placeholders), BY_ID, ids.toArray())) {
+            filmsById.put(film.getId(), film);
+        }
+
+        // Возвращаем фильмы в том порядке, в котором были переданы id
+        return ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public Collection<FilmPopularity> getFilmsPopularity() {
+        return jdbc.query(FIND_FILMS_POPULARITY_QUERY, rs -> {
+            Map<Integer, FilmPopularity> result = new LinkedHashMap<>();
+            while (rs.next()) {
+                int filmId = rs.getInt("film_id");
+                FilmPopularity film = result.get(filmId);
+                if (film == null) {
+                    film = FilmPopularity.builder()
+                            .filmId(filmId)
+                            .likesCount(rs.getInt("likes_count"))
+                            .releaseYear(rs.getObject("release_year", Integer.class))
+                            .build();
+                    result.put(filmId, film);
+                }
+
+                int genreId = rs.getInt("genre_id");
+                if (!rs.wasNull()) {
+                    film.getGenreIds().add(genreId);
+                }
+            }
+            return result.values();
+        });
     }
 
     @Override
@@ -276,48 +348,149 @@ public class FilmDBRepository extends BaseRepository<Film> implements FilmStorag
     }
 
     @Override
-    public void addLike(int filmId, int userId) {
-        update(ADD_LIKE_QUERY, filmId, userId);
+    @Transactional
+    public boolean addLike(int filmId, int userId) {
+        // Повторный лайк того же пользователя счётчик не меняет
+        if (!insertLike(filmId, userId)) {
+            return false;
+        }
+
+        update(INCREMENT_LIKES_COUNT_QUERY, filmId);
+        return true;
+    }
+
+    // true — строка вставлена; false — лайк уже был, в том числе если его только что вставил параллельный запрос
+    private boolean insertLike(int filmId, int userId) {
+        try {
+            return jdbc.update(ADD_LIKE_QUERY, filmId, userId, filmId, userId) > 0;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
     }
 
     @Override
+    @Transactional
     public void removeLike(int filmId, int userId) {
         update(REMOVE_LIKE_QUERY, filmId, userId);
+        update(DECREMENT_LIKES_COUNT_QUERY, filmId);
+    }
+
+    // Пачка лайков и снятий одной транзакцией. По числу реально вставленных/удалённых строк
+    // считаем итоговое изменение счётчика каждого фильма и обновляем likes_count одним batch
+    @Override
+    @Transactional
+    public Map<Integer, Integer> applyLikeChanges(Collection<LikeChange> changes) {
+        List<LikeChange> added = changes.stream().filter(LikeChange::isLiked).toList();
+        List<LikeChange> removed = changes.stream().filter(change -> !change.isLiked()).toList();
+
+        Map<Integer, Integer> deltas = new HashMap<>();
+        if (added.size() == 1) {
+            // одиночная запись (в том числе повтор пачки по одному) переживает гонку с параллельным лайком
+            if (insertLike(added.getFirst().getFilmId(), added.getFirst().getUserId())) {
+                deltas.merge(added.getFirst().getFilmId(), 1, Integer::sum);
+            }
+        } else if (!added.isEmpty()) {
+            // при гонке пачка падает целиком, транзакция откатывается, и LikeWriteBehind повторяет её по одному
+            int[] inserted = jdbc.batchUpdate(ADD_LIKE_QUERY, added.stream()
+                    .map(change -> new Object[]{change.getFilmId(), change.getUserId(), change.getFilmId(), change.getUserId()})
+                    .toList());
+            for (int i = 0; i < inserted.length; i++) {
+                if (inserted[i] > 0) {
+                    deltas.merge(added.get(i).getFilmId(), 1, Integer::sum);
+                }
+            }
+        }
+        if (!removed.isEmpty()) {
+            int[] deleted = jdbc.batchUpdate(REMOVE_LIKE_QUERY, removed.stream()
+                    .map(change -> new Object[]{change.getFilmId(), change.getUserId()})
+                    .toList());
+            for (int i = 0; i < deleted.length; i++) {
+                if (deleted[i] > 0) {
+                    deltas.merge(removed.get(i).getFilmId(), -1, Integer::sum);
+                }
+            }
+        }
+
+        deltas.values().removeIf(delta -> delta == 0);
+        if (!deltas.isEmpty()) {
+            jdbc.batchUpdate(CHANGE_LIKES_COUNT_QUERY, deltas.entrySet().stream()
+                    .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                    .toList());
+        }
+        return deltas;
+    }
+
+    @Override
+    public Map<Integer, int[]> getFilmIdsByUser() {
+        return groupIds(FIND_LIKES_BY_USER_QUERY);
+    }
+
+    @Override
+    public Map<Integer, int[]> getUserIdsByFilm() {
+        return groupIds(FIND_LIKES_BY_FILM_QUERY);
+    }
+
+    @Override
+    @Transactional
+    public List<Integer> removeUserLikes(int userId) {
+        List<Integer> filmIds = jdbc.queryForList(FIND_LIKED_FILM_IDS_QUERY, Integer.class, userId);
+
+        jdbc.update(DECREMENT_LIKES_COUNT_BY_USER_QUERY, userId);
+        jdbc.update(REMOVE_USER_LIKES_QUERY, userId);
+        return filmIds;
+    }
+
+    @Override
+    public int rebuildLikesCount() {
+        return jdbc.update(REBUILD_LIKES_COUNT_QUERY);
     }
 
     @Override
     public Collection<Film> findByDirectorId(int directorId, SortOrder sortOrder) {
 
         return switch (sortOrder) {
-            case YEAR -> findMany(FIND_BY_DIRECTOR_ID_QUERY_YEAR, directorId);
-            case LIKES -> findMany(FIND_BY_DIRECTOR_ID_QUERY_LIKES, directorId);
+            case YEAR -> findGraph(FIND_BY_DIRECTOR_ID_QUERY, BY_RELEASE_DATE, directorId);
+            case LIKES -> findGraph(FIND_BY_DIRECTOR_ID_QUERY, BY_LIKES, directorId);
             default -> throw new IllegalArgumentException("Некорректный параметр сортировки: " + sortOrder);
         };
     }
 
     @Override
     public Collection<Film> getRecomendations(int userId) {
-        return findMany(GET_FILM_RECOMENDATIONS_BY_USER_ID_QUERY, userId, userId, userId);
+        return findGraph(GET_FILM_RECOMENDATIONS_BY_USER_ID_QUERY, BY_RECOMMENDATIONS, userId, userId, userId);
     }
 
     @Override
     public Collection<Film> getCommonFilms(int userId, int friendId) {
-        return findMany(GET_COMMON_FILMS, userId, friendId);
+        return findGraph(GET_COMMON_FILMS, BY_LIKES, userId, friendId);
     }
 
     // Новый метод
     @Override
     public Collection<Film> findMostPopular(int count, Integer genreId, Integer year) {
-        return findMany(POPULAR_WITH_FILTERS_QUERY, genreId, year, count);
+        return findGraph(POPULAR_WITH_FILTERS_QUERY, BY_LIKES, genreId, year, count);
     }
 
     @Override
     public Collection<Film> searchFilms(String query, SearchBy searchBy) {
         return switch (searchBy) {
-            case TITLE -> findMany(SEARCH_BY_TITLE_QUERY, query);
-            case DIRECTOR -> findMany(SEARCH_BY_DIRECTOR_QUERY, query);
-            case DIRECTOR_AND_TITLE -> findMany(SEARCH_BY_TITLE_AND_DIRECTOR_QUERY, query, query);
+            case TITLE -> findGraph(SEARCH_BY_TITLE_QUERY, BY_LIKES, query);
+            case DIRECTOR -> findGraph(SEARCH_BY_DIRECTOR_QUERY, BY_LIKES, query);
+            case DIRECTOR_AND_TITLE -> findGraph(SEARCH_BY_TITLE_AND_DIRECTOR_QUERY, BY_LIKES, query, query);
         };
 
     }
+
+    // Один запрос на весь список: выборка фильмов оборачивается соединениями с рейтингом, жанрами и режиссёрами.
+    // Порядок orderBy должен заканчиваться на film_id, чтобы строки одного фильма шли подряд.
+    private List<Film> findGraph(String filmsQuery, String orderBy, Object... params) {
+        return jdbc.query(graphQuery(filmsQuery, orderBy), new FilmGraphExtractor(mapper, referenceData), params);
+    }
+
+    private static String graphQuery(String filmsQuery, String orderBy) {
+        return FILM_GRAPH_SELECT
+                + "FROM (" + filmsQuery + ") f\n"
+                + FILM_GRAPH_JOINS
+                + "ORDER BY " + orderBy + ", g.genre_id, d.director_id";
+    }
 }
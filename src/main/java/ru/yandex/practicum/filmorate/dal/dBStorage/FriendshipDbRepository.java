@@ -8,6 +8,7 @@ import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
+import java.util.Map;
 
 @Repository("FriendshipDbRepository")
 public class FriendshipDbRepository extends BaseRepository<Friendship> implements FriendshipStorage {
@@ -21,6 +22,9 @@ public class FriendshipDbRepository extends BaseRepository<Friendship> implement
     private static final String COMMON_FRIENDS_QUERY = "SELECT u.* FROM friendship f1 JOIN friendship f2 ON " +
             "f1.friend_id = f2.friend_id JOIN users u ON f1.friend_id = u.user_id WHERE f1.user_id = ? AND f2.user_id = ?";
 
+    private static final String FIND_FRIEND_IDS_BY_USER_QUERY = "SELECT user_id, friend_id FROM friendship " +
+            "ORDER BY user_id, friend_id";
+
     private final RowMapper<User> userMapper;
 
     public FriendshipDbRepository(JdbcTemplate jdbc, RowMapper<Friendship> mapper, RowMapper<User> userMapper) {
@@ -56,4 +60,9 @@ public class FriendshipDbRepository extends BaseRepository<Friendship> implement
         return jdbc.query(COMMON_FRIENDS_QUERY, userMapper, userA, userB);
     }
 
+    @Override
+    public Map<Integer, int[]> getFriendIdsByUser() {
+        return groupIds(FIND_FRIEND_IDS_BY_USER_QUERY);
+    }
+
 }
@@ -5,6 +5,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.dal.MpaRatingStorage;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 
 import java.util.List;
@@ -13,20 +14,21 @@ import java.util.Optional;
 @Slf4j
 @Repository
 public class MpaRatingDBRepository extends BaseRepository<MpaRating> implements MpaRatingStorage {
-    private static final String FIND_ALL_QUERY = "SELECT * FROM rating";
-    private static final String FIND_BY_ID_QUERY = "SELECT * FROM rating WHERE rating_id = ?";
+    private final ReferenceDataRegistry referenceData;
 
-    public MpaRatingDBRepository(JdbcTemplate jdbc, RowMapper<MpaRating> mapper) {
+    public MpaRatingDBRepository(JdbcTemplate jdbc, RowMapper<MpaRating> mapper, ReferenceDataRegistry referenceData) {
         super(jdbc, mapper);
+        this.referenceData = referenceData;
     }
 
+    // Справочник рейтингов читается из снимка в памяти, без запроса к базе
     @Override
     public List<MpaRating> findAll() {
-        return findMany(FIND_ALL_QUERY);
+        return referenceData.ratings();
     }
 
     @Override
     public Optional<MpaRating> getMpaRatingById(int id) {
-        return findOne(FIND_BY_ID_QUERY, id);
+        return referenceData.rating(id);
     }
 }
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.dal.dBStorage;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.RecommendationStorage;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+public class RecommendationDBRepository extends BaseRepository<List<Integer>> implements RecommendationStorage {
+    private static final String FIND_BY_USER_QUERY = "SELECT film_ids FROM user_recommendations WHERE user_id = ?";
+
+    // Строка пишется, только если пользователь ещё существует: удалённых пропускаем без ошибки внешнего ключа
+    private static final String MERGE_QUERY = """
+            MERGE INTO user_recommendations (user_id, film_ids, computed_at) KEY (user_id)
+            SELECT user_id, CAST(? AS INTEGER ARRAY), ? FROM users WHERE user_id = ?
+            """;
+
+    private static final RowMapper<List<Integer>> FILM_IDS_MAPPER = (rs, rowNum) -> {
+        Object[] filmIds = (Object[]) rs.getArray("film_ids").getArray();
+        return Arrays.stream(filmIds).map(id -> ((Number) id).intValue()).toList();
+    };
+
+    public RecommendationDBRepository(JdbcTemplate jdbc) {
+        super(jdbc, FILM_IDS_MAPPER);
+    }
+
+    @Override
+    public Optional<List<Integer>> getRecommendations(int userId) {
+        return findOne(FIND_BY_USER_QUERY, userId);
+    }
+
+    @Override
+    @Transactional
+    public void saveRecommendations(Map<Integer, List<Integer>> filmIdsByUser) {
+        if (filmIdsByUser.isEmpty()) {
+            return;
+        }
+
+        long computedAt = System.currentTimeMillis();
+        jdbc.batchUpdate(MERGE_QUERY, filmIdsByUser.entrySet().stream()
+                .map(entry -> new Object[]{entry.getValue().toArray(new Integer[0]), computedAt, entry.getKey()})
+                .toList());
+    }
+}
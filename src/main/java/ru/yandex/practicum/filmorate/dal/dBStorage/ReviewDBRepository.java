@@ -1,26 +1,45 @@
 package ru.yandex.practicum.filmorate.dal.dBStorage;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dal.ReviewStorage;
 import ru.yandex.practicum.filmorate.model.Review;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Slf4j
 @Component
 @Repository("ReviewDBRepository")
 public class ReviewDBRepository extends BaseRepository<Review> implements ReviewStorage {
-    private static final String FIND_ALL_REVIEWS_QUERY = "SELECT * FROM reviews ORDER BY useful DESC LIMIT ?";
+    // Порядок совпадает с индексами reviews_useful_idx и reviews_film_useful_idx, сортировки в запросе нет
+    private static final String FIND_ALL_REVIEWS_QUERY = "SELECT * FROM reviews ORDER BY useful DESC, review_id LIMIT ?";
+
+    // Порядок (useful DESC, review_id): следующая страница начинается строго после последнего отданного отзыва
+    private static final String FIND_REVIEWS_PAGE_QUERY = """
+            SELECT * FROM reviews
+            WHERE useful < ? OR (useful = ? AND review_id > ?)
+            ORDER BY useful DESC, review_id
+            LIMIT ?
+            """;
+
+    private static final String FIND_FILM_REVIEWS_PAGE_QUERY = """
+            SELECT * FROM reviews
+            WHERE film_id = ? AND (useful < ? OR (useful = ? AND review_id > ?))
+            ORDER BY useful DESC, review_id
+            LIMIT ?
+            """;
 
     private static final String FIND_REVIEW_BY_ID_QUERY = "SELECT * FROM reviews WHERE review_id = ?";
 
     private static final String FIND_REVIEW_BY_FILM_ID = "SELECT * FROM reviews WHERE film_id = ? " +
-            "ORDER BY useful DESC LIMIT ?";
+            "ORDER BY useful DESC, review_id LIMIT ?";
 
     private static final String INSERT_QUERY = "INSERT INTO reviews(content, is_positive, user_id, film_id) " +
             "VALUES (?, ?, ?, ?)";
@@ -29,9 +48,36 @@ public class ReviewDBRepository extends BaseRepository<Review> implements Review
 
     private static final String DELETE_REVIEW_QUERY = "DELETE FROM reviews WHERE review_id = ?";
 
-    private static final String UPDATE_USEFUL_REVIEW =
-            "UPDATE reviews SET useful = (SELECT SUM(CASE WHEN is_positive = TRUE THEN 1 ELSE -1 END) useful " +
-                    "FROM review_likes WHERE review_id =?) WHERE review_id = ?";
+    // Оценка пользователя меняется на противоположную
+    private static final String FLIP_REACTION_QUERY =
+            "UPDATE review_likes SET is_positive = ? WHERE review_id = ? AND user_id = ? AND is_positive <> ?";
+
+    private static final String ADD_REACTION_QUERY = """
+            INSERT INTO review_likes (review_id, user_id, is_positive)
+            SELECT CAST(? AS INTEGER), CAST(? AS INTEGER), CAST(? AS BOOLEAN)
+            WHERE NOT EXISTS (SELECT 1 FROM review_likes WHERE review_id = ? AND user_id = ?)
+            """;
+
+    private static final String FIND_REACTION_QUERY = "SELECT is_positive FROM review_likes WHERE review_id = ? AND user_id = ?";
+
+    private static final String REMOVE_REACTION_QUERY =
+            "DELETE FROM review_likes WHERE review_id = ? AND user_id = ? AND is_positive = ?";
+
+    private static final String CHANGE_USEFUL_QUERY = "UPDATE reviews SET useful = COALESCE(useful, 0) + ? WHERE review_id = ?";
+
+    private static final String FIND_USEFUL_QUERY = "SELECT useful FROM reviews WHERE review_id = ?";
+
+    private static final String FIND_MAX_REVIEW_ID_QUERY = "SELECT COALESCE(MAX(review_id), 0) FROM reviews";
+
+    // Сверка useful с review_likes для отзывов с id в (from, to]; трогаем только разошедшиеся строки
+    private static final String RECONCILE_USEFUL_QUERY = """
+            UPDATE reviews r
+               SET useful = (SELECT COALESCE(SUM(CASE WHEN rl.is_positive THEN 1 ELSE -1 END), 0)
+                               FROM review_likes rl WHERE rl.review_id = r.review_id)
+             WHERE r.review_id > ? AND r.review_id <= ?
+               AND COALESCE(r.useful, 0) <> (SELECT COALESCE(SUM(CASE WHEN rl.is_positive THEN 1 ELSE -1 END), 0)
+                                               FROM review_likes rl WHERE rl.review_id = r.review_id)
+            """;
 
     public ReviewDBRepository(JdbcTemplate jdbc, RowMapper<Review> mapper) {
         super(jdbc, mapper);
@@ -42,6 +88,14 @@ public class ReviewDBRepository extends BaseRepository<Review> implements Review
         return findMany(FIND_ALL_REVIEWS_QUERY, count);
     }
 
+    @Override
+    public List<Review> findPage(int filmId, int afterUseful, int afterReviewId, int limit) {
+        if (filmId == 0) {
+            return findMany(FIND_REVIEWS_PAGE_QUERY, afterUseful, afterUseful, afterReviewId, limit);
+        }
+        return findMany(FIND_FILM_REVIEWS_PAGE_QUERY, filmId, afterUseful, afterUseful, afterReviewId, limit);
+    }
+
     @Override
     public Optional<Review> getReviewById(int id) {
         return findOne(FIND_REVIEW_BY_ID_QUERY, id);
@@ -63,6 +117,8 @@ public class ReviewDBRepository extends BaseRepository<Review> implements Review
         );
 
         review.setReviewId(id);
+        // полезность из тела запроса в базу не пишется: у нового отзыва она 0 (DEFAULT в reviews)
+        review.setUseful(0);
         return review;
     }
 
@@ -86,23 +142,61 @@ public class ReviewDBRepository extends BaseRepository<Review> implements Review
         return exists == null || !exists;
     }
 
-    public void updateUseful(int reviewId) {
-        update(UPDATE_USEFUL_REVIEW, reviewId, reviewId);
+    // Полезность меняется на разницу между новой и прежней оценкой пользователя,
+    // по числу реально изменённых строк review_likes, а не пересчётом всех оценок отзыва.
+    // Возвращается новая полезность; пусто, если оценка ничего не изменила
+    @Override
+    @Transactional
+    public Optional<Integer> addReaction(Integer reviewId, Integer userId, Boolean isPositive) {
+        int vote = isPositive ? 1 : -1;
+
+        if (jdbc.update(FLIP_REACTION_QUERY, isPositive, reviewId, userId, isPositive) > 0) {
+            return Optional.of(changeUseful(reviewId, 2 * vote));
+        }
+        // Повторная такая же оценка полезность не меняет
+        if (insertReaction(reviewId, userId, isPositive)) {
+            return Optional.of(changeUseful(reviewId, vote));
+        }
+        return Optional.empty();
+    }
+
+    // Две одинаковые оценки наперегонки обе проходят NOT EXISTS; вторая упирается в первичный ключ и ничего не меняет
+    private boolean insertReaction(int reviewId, int userId, boolean isPositive) {
+        try {
+            return jdbc.update(ADD_REACTION_QUERY, reviewId, userId, isPositive, reviewId, userId) > 0;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
     }
 
     @Override
-    public void addReaction(Integer reviewId, Integer userId, Boolean isPositive) {
-        String mergeReactionQuery = "MERGE INTO review_likes (review_id, user_id, is_positive) VALUES (?, ?, ?)";
+    @Transactional
+    public Optional<Integer> removeReaction(Integer reviewId, Integer userId) {
+        List<Boolean> previous = jdbc.queryForList(FIND_REACTION_QUERY, Boolean.class, reviewId, userId);
+        if (previous.isEmpty()) {
+            return Optional.empty();
+        }
+
+        boolean wasPositive = previous.getFirst();
+        if (jdbc.update(REMOVE_REACTION_QUERY, reviewId, userId, wasPositive) > 0) {
+            return Optional.of(changeUseful(reviewId, wasPositive ? -1 : 1));
+        }
+        return Optional.empty();
+    }
 
-        update(mergeReactionQuery, reviewId, userId, isPositive);
-        updateUseful(reviewId);
+    // Строка отзыва заблокирована нашим UPDATE до конца транзакции, поэтому прочитанное значение точное
+    private int changeUseful(int reviewId, int delta) {
+        update(CHANGE_USEFUL_QUERY, delta, reviewId);
+        return jdbc.queryForObject(FIND_USEFUL_QUERY, Integer.class, reviewId);
     }
 
     @Override
-    public void removeReaction(Integer reviewId, Integer userId) {
-        String deleteReactionQuery = "DELETE FROM review_likes WHERE review_id = ? AND user_id = ?";
+    public int findMaxReviewId() {
+        return jdbc.queryForObject(FIND_MAX_REVIEW_ID_QUERY, Integer.class);
+    }
 
-        delete(deleteReactionQuery, reviewId, userId);
-        updateUseful(reviewId);
+    @Override
+    public int reconcileUseful(int fromReviewId, int toReviewId) {
+        return jdbc.update(RECONCILE_USEFUL_QUERY, fromReviewId, toReviewId);
     }
 }
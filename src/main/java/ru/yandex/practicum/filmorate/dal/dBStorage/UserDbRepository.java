@@ -1,27 +1,39 @@
 package ru.yandex.practicum.filmorate.dal.dBStorage;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dal.UserStorage;
+import ru.yandex.practicum.filmorate.exceptions.exceptions.DuplicatedDataException;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 @Repository("UserDbRepository")
 @Slf4j
 public class UserDbRepository extends BaseRepository<User> implements UserStorage {
     private static final String FIND_ALL_QUERY = "SELECT * FROM users";
 
+    private static final String FIND_PAGE_QUERY = "SELECT * FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?";
+
     private static final String FIND_BY_ID_QUERY = "SELECT * FROM users WHERE user_id = ?";
 
-    private static final String FIND_BY_LOGIN_OR_EMAIL_QUERY = "SELECT * FROM users WHERE login = ? OR email = ?";
+    private static final String FIND_BY_IDS_QUERY = "SELECT * FROM users WHERE user_id IN (%s)";
+
 
     private static final String INSERT_QUERY = "INSERT INTO users(email, login, name, birthday) VALUES (?, ?, ?, ?)";
 
     private static final String UPDATE_QUERY = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ? WHERE user_id = ?";
 
+    private static final String EXISTS_BY_ID_QUERY = "SELECT EXISTS(SELECT 1 FROM users WHERE user_id = ?)";
+
+    private static final String FIND_ALL_IDS_QUERY = "SELECT user_id FROM users";
+
     private static final String REMOVE_BY_ID_QUERY = "DELETE FROM users WHERE user_id = ?;";
 
     public UserDbRepository(JdbcTemplate jdbc, RowMapper<User> mapper) {
@@ -33,6 +45,24 @@ public class UserDbRepository extends BaseRepository<User> implements UserStorag
         return findMany(FIND_ALL_QUERY);
     }
 
+    @Override
+    public List<User> getUsersPage(int afterId, int limit) {
+        return findMany(FIND_PAGE_QUERY, afterId, limit);
+    }
+
+    // Чтение внутри транзакции нужно, чтобы драйверы вроде PostgreSQL учитывали fetch size
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllUsers(Consumer<User> consumer) {
+        stream(FIND_ALL_QUERY, rs -> {
+            int rowNum = 0;
+            while (rs.next()) {
+                consumer.accept(mapper.mapRow(rs, rowNum++));
+            }
+            return null;
+        });
+    }
+
     @Override
     public Optional<User> getUserById(int id) {
 
@@ -40,20 +70,49 @@ public class UserDbRepository extends BaseRepository<User> implements UserStorag
     }
 
     @Override
-    public Optional<User> findDuplicateDataUser(String email, String login) {
+    public boolean existsById(int id) {
+        return Boolean.TRUE.equals(jdbc.queryForObject(EXISTS_BY_ID_QUERY, Boolean.class, id));
+    }
 
-        return findOne(FIND_BY_LOGIN_OR_EMAIL_QUERY, login, email);
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllIds(IntConsumer consumer) {
+        streamIds(FIND_ALL_IDS_QUERY, consumer);
+    }
+
+    @Override
+    public List<User> findByIds(int[] ids) {
+        if (ids.length == 0) {
+            return List.of();
+        }
+
+        String placeholders = String.join(",", Collections.nCopies(ids.length, "?"));
+        Map<Integer, User> usersById = new HashMap<>();
+        for (User user : findMany(String.format(FIND_BY_IDS_QUERY, placeholders), Arrays.stream(ids).boxed().toArray())) {
+            usersById.put(user.getId(), user);
+        }
+
+        return Arrays.stream(ids)
+                .mapToObj(usersById::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
 
+    // Проверка логина и почты идёт по индексу в памяти; UNIQUE в базе ловит только гонку двух регистраций
     @Override
     public User create(User user) {
 
-        int id = insert(
-                INSERT_QUERY,
-                user.getEmail(),
-                user.getLogin(),
-                user.getName(),
-                java.sql.Date.valueOf(user.getBirthday()));
+        int id;
+        try {
+            id = insert(
+                    INSERT_QUERY,
+                    user.getEmail(),
+                    user.getLogin(),
+                    user.getName(),
+                    java.sql.Date.valueOf(user.getBirthday()));
+        } catch (DuplicateKeyException e) {
+            throw new DuplicatedDataException("Пользователь с таким Login или Email уже зарегистрирован");
+        }
 
         user.setId(id);
 
@@ -63,14 +122,18 @@ public class UserDbRepository extends BaseRepository<User> implements UserStorag
     @Override
     public User update(User user) {
 
-        update(
-                UPDATE_QUERY,
-                user.getEmail(),
-                user.getLogin(),
-                user.getName(),
-                user.getBirthday(),
-                user.getId()
-        );
+        try {
+            update(
+                    UPDATE_QUERY,
+                    user.getEmail(),
+                    user.getLogin(),
+                    user.getName(),
+                    user.getBirthday(),
+                    user.getId()
+            );
+        } catch (DuplicateKeyException e) {
+            throw new DuplicatedDataException("Такой Login или Email уже используется");
+        }
         return user;
     }
 
@@ -78,16 +141,5 @@ public class UserDbRepository extends BaseRepository<User> implements UserStorag
         delete(REMOVE_BY_ID_QUERY, id);
     }
 
-    public List<Integer> checkUserIds(int[] userIds) {
-        // получаем строку вида "?", "?", "?" с количеством плейсхолдеров "?" равным длине массива userIds
-        String placeholders = String.join(",", Collections.nCopies(userIds.length, "?"));
-
-        // вставляем нужное количество "?" в запрос
-        String query = "SELECT user_id FROM users WHERE user_id IN (" + placeholders + ")";
-
-        // выполняем запрос, подставляя вместо "?" значения из массива userIds (который предварительно запаковали в Integer)
-        return jdbc.queryForList(query, Integer.class, Arrays.stream(userIds).boxed().toArray());
-    }
-
 
 }
@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.dal.dBStorage.mappers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Собирает фильмы с жанрами и режиссёрами из одного запроса за один проход.
+// Строки одного фильма должны идти подряд (запрос сортируется с film_id в конце ключа сортировки).
+@RequiredArgsConstructor
+public class FilmGraphExtractor implements ResultSetExtractor<List<Film>> {
+    private final RowMapper<Film> filmRowMapper;
+    private final ReferenceDataRegistry referenceData;
+
+    @Override
+    public List<Film> extractData(ResultSet rs) throws SQLException {
+        List<Film> films = new ArrayList<>();
+        stream(rs, films::add);
+        return films;
+    }
+
+    // Отдаёт каждый фильм, как только прочитаны все его строки, — весь список в памяти не держится
+    public void stream(ResultSet rs, Consumer<Film> consumer) throws SQLException {
+        // Жанры — общие экземпляры из справочника, режиссёры — один экземпляр на весь запрос, а не на каждую строку
+        Map<Integer, Director> directors = new HashMap<>();
+
+        Film current = null;
+        int rowNum = 0;
+        while (rs.next()) {
+            int filmId = rs.getInt("film_id");
+            if (current == null || current.getId() != filmId) {
+                if (current != null) {
+                    consumer.accept(current);
+                }
+                current = filmRowMapper.mapRow(rs, rowNum);
+            }
+
+            int genreId = rs.getInt("genre_id");
+            if (!rs.wasNull()) {
+                current.getGenres().add(referenceData.genreOrCreate(genreId, rs.getString("genre_name")));
+            }
+
+            int directorId = rs.getInt("director_id");
+            if (!rs.wasNull()) {
+                Director director = directors.get(directorId);
+                if (director == null) {
+                    director = Director.builder()
+                            .id(directorId)
+                            .name(rs.getString("director_name"))
+                            .build();
+                    directors.put(directorId, director);
+                }
+                current.getDirectors().add(director);
+            }
+
+            rowNum++;
+        }
+
+        if (current != null) {
+            consumer.accept(current);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package ru.yandex.practicum.filmorate.dal.dBStorage.mappers;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 
@@ -10,7 +12,10 @@ import java.sql.SQLException;
 import java.time.LocalDate;
 
 @Component
+@RequiredArgsConstructor
 public class FilmRowMapper implements RowMapper<Film> {
+    private final ReferenceDataRegistry referenceData;
+
     @Override
     public Film mapRow(ResultSet resultSet, int rowNum) throws SQLException {
 
@@ -22,10 +27,8 @@ public class FilmRowMapper implements RowMapper<Film> {
                 .duration(resultSet.getInt("duration"))
                 .build();
 
-        MpaRating mpa = MpaRating.builder()
-                .id(resultSet.getInt("rating_id"))
-                .name(resultSet.getString("rating_name"))
-                .build();
+        // рейтинг — общий экземпляр из справочника
+        MpaRating mpa = referenceData.ratingOrCreate(resultSet.getInt("rating_id"), resultSet.getString("rating_name"));
 
         film.setMpa(mpa);
 
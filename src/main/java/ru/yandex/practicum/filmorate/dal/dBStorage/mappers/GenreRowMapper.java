@@ -1,21 +1,22 @@
 package ru.yandex.practicum.filmorate.dal.dBStorage.mappers;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.model.Genre;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
 @Component
+@RequiredArgsConstructor
 public class GenreRowMapper implements RowMapper<Genre> {
+    private final ReferenceDataRegistry referenceData;
+
     @Override
     public Genre mapRow(ResultSet resultSet, int rowNum) throws SQLException {
-
-        return Genre.builder()
-                .id(resultSet.getInt("genre_id"))
-                .name(resultSet.getString("genre_name"))
-                .build();
-
+        // общий экземпляр жанра из справочника вместо нового объекта на каждую строку
+        return referenceData.genreOrCreate(resultSet.getInt("genre_id"), resultSet.getString("genre_name"));
     }
 }
\ No newline at end of file
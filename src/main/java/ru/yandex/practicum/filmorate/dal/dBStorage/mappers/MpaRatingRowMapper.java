@@ -1,22 +1,22 @@
 package ru.yandex.practicum.filmorate.dal.dBStorage.mappers;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
 @Component
+@RequiredArgsConstructor
 public class MpaRatingRowMapper implements RowMapper<MpaRating> {
+    private final ReferenceDataRegistry referenceData;
 
     @Override
     public MpaRating mapRow(ResultSet resultSet, int rowNum) throws SQLException {
-
-        return MpaRating.builder()
-                .id(resultSet.getInt("rating_id"))
-                .name(resultSet.getString("rating_name"))
-                .build();
-
+        // общий экземпляр рейтинга из справочника вместо нового объекта на каждую строку
+        return referenceData.ratingOrCreate(resultSet.getInt("rating_id"), resultSet.getString("rating_name"));
     }
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class FilmSuggestionDTO {
+    private int id;
+    private String name;
+}
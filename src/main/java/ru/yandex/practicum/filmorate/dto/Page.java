@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Function;
+
+// Страница списка при постраничной выдаче по курсору.
+// nextCursor == null — дальше страниц нет.
+@Data
+@Builder
+public class Page<T> {
+    private List<T> items;
+    private String nextCursor;
+
+    // rows — результат запроса с limit + 1: лишняя строка означает, что есть следующая страница
+    public static <T> Page<T> of(List<T> rows, int limit, Function<T, String> cursorOf) {
+        if (rows.size() <= limit) {
+            return Page.<T>builder()
+                    .items(rows)
+                    .build();
+        }
+
+        List<T> items = rows.subList(0, limit);
+        return Page.<T>builder()
+                .items(items)
+                .nextCursor(cursorOf.apply(items.get(limit - 1)))
+                .build();
+    }
+}
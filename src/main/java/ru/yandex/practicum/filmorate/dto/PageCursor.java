@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import ru.yandex.practicum.filmorate.exceptions.exceptions.ParameterNotValidException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.stream.Collectors;
+
+// Курсор — значения ключа сортировки последней отданной строки.
+// Для клиента это непрозрачная строка, поэтому ключ кодируется в base64.
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class PageCursor {
+
+    public static String encode(long... keys) {
+        String raw = Arrays.stream(keys)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(":"));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static long[] decode(String cursor, int size) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            long[] keys = Arrays.stream(raw.split(":"))
+                    .mapToLong(Long::parseLong)
+                    .toArray();
+            if (keys.length == size) {
+                return keys;
+            }
+        } catch (IllegalArgumentException e) {
+            // обработка ниже: курсор испорчен или от другого списка
+        }
+        throw new ParameterNotValidException("Некорректный курсор: " + cursor);
+    }
+}
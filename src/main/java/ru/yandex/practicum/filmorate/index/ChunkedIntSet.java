@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Неизменяемое отсортированное множество int без повторов, разбитое на куски до MAX_CHUNK элементов.
+// Вставка и удаление создают новое множество, копируя один кусок и массив ссылок на куски,
+// а не все элементы, как copy-on-write одного int[]: для списка в n элементов это O(MAX_CHUNK + n / MAX_CHUNK).
+// Пока в множестве не больше MAX_CHUNK элементов, это один кусок — то же самое, что IntArrays.with/without.
+public final class ChunkedIntSet {
+    static final int MAX_CHUNK = 512;
+
+    public static final ChunkedIntSet EMPTY = new ChunkedIntSet(new int[0][], 0);
+
+    private final int[][] chunks;
+    private final int size;
+    // плоская копия для тех, кому нужен int[]; собирается при первом запросе
+    private volatile int[] flat;
+
+    private ChunkedIntSet(int[][] chunks, int size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    // sorted — отсортированный массив без повторов, не меняется после вызова
+    public static ChunkedIntSet of(int[] sorted) {
+        if (sorted.length == 0) {
+            return EMPTY;
+        }
+
+        int[][] chunks = new int[(sorted.length + MAX_CHUNK - 1) / MAX_CHUNK][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = Arrays.copyOfRange(sorted, i * MAX_CHUNK, Math.min(sorted.length, (i + 1) * MAX_CHUNK));
+        }
+        return new ChunkedIntSet(chunks, sorted.length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int value) {
+        int chunk = chunkFor(value);
+        return chunk >= 0 && Arrays.binarySearch(chunks[chunk], value) >= 0;
+    }
+
+    // Новое множество со вставленным value; если value уже есть — то же множество
+    public ChunkedIntSet with(int value) {
+        if (chunks.length == 0) {
+            return new ChunkedIntSet(new int[][]{{value}}, 1);
+        }
+
+        int index = Math.max(chunkFor(value), 0);
+        int[] chunk = chunks[index];
+        int[] updated = IntArrays.with(chunk, value);
+        if (updated == chunk) {
+            return this;
+        }
+
+        if (updated.length <= MAX_CHUNK) {
+            int[][] spine = chunks.clone();
+            spine[index] = updated;
+            return new ChunkedIntSet(spine, size + 1);
+        }
+
+        // переполненный кусок делится пополам
+        int half = updated.length / 2;
+        int[][] spine = new int[chunks.length + 1][];
+        System.arraycopy(chunks, 0, spine, 0, index);
+        spine[index] = Arrays.copyOfRange(updated, 0, half);
+        spine[index + 1] = Arrays.copyOfRange(updated, half, updated.length);
+        System.arraycopy(chunks, index + 1, spine, index + 2, chunks.length - index - 1);
+        return new ChunkedIntSet(spine, size + 1);
+    }
+
+    // Новое множество без value; если value нет — то же множество
+    public ChunkedIntSet without(int value) {
+        int index = chunkFor(value);
+        if (index < 0) {
+            return this;
+        }
+
+        int[] chunk = chunks[index];
+        int[] updated = IntArrays.without(chunk, value);
+        if (updated == chunk) {
+            return this;
+        }
+        if (size == 1) {
+            return EMPTY;
+        }
+
+        if (updated.length > 0) {
+            int[][] spine = chunks.clone();
+            spine[index] = updated;
+            return new ChunkedIntSet(spine, size - 1);
+        }
+
+        int[][] spine = new int[chunks.length - 1][];
+        System.arraycopy(chunks, 0, spine, 0, index);
+        System.arraycopy(chunks, index + 1, spine, index, chunks.length - index - 1);
+        return new ChunkedIntSet(spine, size - 1);
+    }
+
+    public void forEach(IntConsumer consumer) {
+        for (int[] chunk : chunks) {
+            for (int value : chunk) {
+                consumer.accept(value);
+            }
+        }
+    }
+
+    // Возвращаемый массив нельзя изменять
+    public int[] toArray() {
+        int[] result = flat;
+        if (result == null) {
+            result = chunks.length == 1 ? chunks[0] : new int[size];
+            if (chunks.length > 1) {
+                int offset = 0;
+                for (int[] chunk : chunks) {
+                    System.arraycopy(chunk, 0, result, offset, chunk.length);
+                    offset += chunk.length;
+                }
+            }
+            flat = result;
+        }
+        return result;
+    }
+
+    // Кусок, в чей диапазон попадает value: последний, чей первый элемент не больше value; -1, если value меньше всех
+    private int chunkFor(int value) {
+        int low = 0;
+        int high = chunks.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (chunks[mid][0] <= value) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+}
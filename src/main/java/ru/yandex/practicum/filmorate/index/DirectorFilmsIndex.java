@@ -0,0 +1,224 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.SortOrder;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Фильмы каждого режиссёра в порядке даты выхода (release_date, film_id). Элемент списка — long, в старших
+// 32 битах которого день выхода, в младших id фильма, поэтому список — просто отсортированный long[].
+// Порядок по лайкам (likes_count DESC, film_id) собирается при чтении по счётчикам LikesIndex: фильмов
+// у режиссёра единицы, а своя копия счётчиков потребовала бы блокировки этого индекса на каждом лайке.
+// Списки меняются copy-on-write под одной блокировкой записи только при изменении фильмов,
+// чтение идёт без блокировок.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DirectorFilmsIndex implements MetricsSource {
+    private static final int[] NO_IDS = new int[0];
+    private static final long[] EMPTY = new long[0];
+
+    private final FilmStorage filmRepository;
+    private final LikesIndex likesIndex;
+
+    private final Map<Integer, Integer> releaseDays = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> directorsByFilm = new ConcurrentHashMap<>();
+    private final Map<Integer, long[]> byYear = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    @PostConstruct
+    public void rebuild() {
+        synchronized (writeLock) {
+            releaseDays.clear();
+            directorsByFilm.clear();
+            byYear.clear();
+
+            filmRepository.streamAll(film -> applyPutFilm(film.getId(), releaseDay(film), directorIds(film)));
+        }
+
+        log.info("Фильмы режиссёров в памяти: фильмов {}, режиссёров {}", directorsByFilm.size(), byYear.size());
+    }
+
+    // id фильмов режиссёра в порядке сортировки
+    public List<Integer> filmIds(int directorId, SortOrder sortOrder) {
+        long[] keys = byYear.getOrDefault(directorId, EMPTY);
+        int[] ids = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            ids[i] = (int) keys[i];
+        }
+        if (sortOrder == SortOrder.LIKES) {
+            ids = IntArrays.sortByCountDesc(ids, likesIndex::likesCount);
+        }
+
+        List<Integer> filmIds = new ArrayList<>(ids.length);
+        for (int filmId : ids) {
+            filmIds.add(filmId);
+        }
+        return filmIds;
+    }
+
+    // Создание и обновление фильма: дата выхода и полный список его режиссёров
+    public void putFilm(Film film) {
+        int filmId = film.getId();
+        Integer previousDay;
+        int[] previousDirectors;
+        synchronized (writeLock) {
+            previousDay = releaseDays.get(filmId);
+            previousDirectors = directorsByFilm.getOrDefault(filmId, NO_IDS);
+            applyPutFilm(filmId, releaseDay(film), directorIds(film));
+        }
+
+        TransactionCallbacks.onRollback(() -> restoreFilm(filmId, previousDay, previousDirectors));
+    }
+
+    public void removeFilm(int filmId) {
+        Integer previousDay;
+        int[] previousDirectors;
+        synchronized (writeLock) {
+            previousDay = releaseDays.get(filmId);
+            previousDirectors = directorsByFilm.getOrDefault(filmId, NO_IDS);
+            applyRemoveFilm(filmId);
+        }
+
+        TransactionCallbacks.onRollback(() -> restoreFilm(filmId, previousDay, previousDirectors));
+    }
+
+    // Связи с фильмами в базе удаляются каскадом, здесь — вместе с режиссёром
+    public void removeDirector(int directorId) {
+        int[] previousFilms;
+        synchronized (writeLock) {
+            previousFilms = filmIds(directorId, SortOrder.YEAR).stream().mapToInt(Integer::intValue).toArray();
+            for (int filmId : previousFilms) {
+                unlink(filmId, directorId);
+            }
+        }
+        if (previousFilms.length == 0) {
+            return;
+        }
+
+        TransactionCallbacks.onRollback(() -> {
+            synchronized (writeLock) {
+                for (int filmId : previousFilms) {
+                    if (releaseDays.containsKey(filmId)) {
+                        link(filmId, directorId);
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public String name() {
+        return "directorFilmsIndex";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("films", releaseDays.size());
+        metrics.put("directors", byYear.size());
+        return metrics;
+    }
+
+    private void restoreFilm(int filmId, Integer releaseDay, int[] directorIds) {
+        synchronized (writeLock) {
+            if (releaseDay == null) {
+                applyRemoveFilm(filmId);
+            } else {
+                applyPutFilm(filmId, releaseDay, directorIds);
+            }
+        }
+    }
+
+    // Дальше — только под writeLock
+
+    private void applyPutFilm(int filmId, int releaseDay, int[] directorIds) {
+        applyRemoveFilm(filmId);
+        releaseDays.put(filmId, releaseDay);
+        for (int directorId : directorIds) {
+            link(filmId, directorId);
+        }
+    }
+
+    private void applyRemoveFilm(int filmId) {
+        for (int directorId : directorsByFilm.getOrDefault(filmId, NO_IDS)) {
+            unlink(filmId, directorId);
+        }
+        releaseDays.remove(filmId);
+    }
+
+    private void link(int filmId, int directorId) {
+        directorsByFilm.put(filmId, IntArrays.with(directorsByFilm.getOrDefault(filmId, NO_IDS), directorId));
+        byYear.put(directorId, with(byYear.getOrDefault(directorId, EMPTY), yearKey(filmId, releaseDays.get(filmId))));
+    }
+
+    private void unlink(int filmId, int directorId) {
+        int[] directors = IntArrays.without(directorsByFilm.getOrDefault(filmId, NO_IDS), directorId);
+        if (directors.length == 0) {
+            directorsByFilm.remove(filmId);
+        } else {
+            directorsByFilm.put(filmId, directors);
+        }
+        replace(byYear, directorId, without(byYear.get(directorId), yearKey(filmId, releaseDays.get(filmId))));
+    }
+
+    private static void replace(Map<Integer, long[]> lists, int directorId, long[] keys) {
+        if (keys.length == 0) {
+            lists.remove(directorId);
+        } else {
+            lists.put(directorId, keys);
+        }
+    }
+
+    private static long yearKey(int filmId, int releaseDay) {
+        return ((long) releaseDay << 32) | filmId;
+    }
+
+    private static long[] with(long[] keys, long key) {
+        int index = Arrays.binarySearch(keys, key);
+        if (index >= 0) {
+            return keys;
+        }
+
+        int position = -index - 1;
+        long[] updated = new long[keys.length + 1];
+        System.arraycopy(keys, 0, updated, 0, position);
+        updated[position] = key;
+        System.arraycopy(keys, position, updated, position + 1, keys.length - position);
+        return updated;
+    }
+
+    private static long[] without(long[] keys, long key) {
+        if (keys == null) {
+            return EMPTY;
+        }
+        int index = Arrays.binarySearch(keys, key);
+        if (index < 0) {
+            return keys;
+        }
+
+        long[] updated = new long[keys.length - 1];
+        System.arraycopy(keys, 0, updated, 0, index);
+        System.arraycopy(keys, index + 1, updated, index, keys.length - index - 1);
+        return updated;
+    }
+
+    private static int releaseDay(Film film) {
+        return (int) film.getReleaseDate().toEpochDay();
+    }
+
+    private static int[] directorIds(Film film) {
+        if (film.getDirectors() == null) {
+            return NO_IDS;
+        }
+        return film.getDirectors().stream().mapToInt(Director::getId).distinct().sorted().toArray();
+    }
+}
@@ -0,0 +1,417 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.DirectorStorage;
+import ru.yandex.practicum.filmorate.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.SearchBy;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+
+// Поиск подстроки в названиях фильмов и именах режиссёров по триграммному инвертированному индексу.
+// Для каждой триграммы (три подряд идущих символа строки в нижнем регистре) хранится отсортированный
+// список id, в строках которых она встречается. Кандидаты — пересечение списков всех триграмм запроса;
+// так как триграммы могут стоять в строке не подряд, каждый кандидат проверяется обычным contains.
+// Запросы короче трёх символов проверяются перебором строк в памяти.
+// Списки меняются copy-on-write под одной блокировкой записи: изменения редки, чтение идёт без блокировок.
+// Полная сборка копирования не делает: id собираются в растущие буферы, сортируются и фиксируются один раз.
+// Подписчики узнают id фильмов, у которых изменились название или режиссёры.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmSearchIndex implements MetricsSource {
+    private static final int GRAM = 3;
+    private static final int[] EMPTY = new int[0];
+
+    private final FilmStorage filmRepository;
+    private final DirectorStorage directorRepository;
+    private final LikesIndex likesIndex;
+
+    private final Map<Integer, String> displayTitles = new ConcurrentHashMap<>();
+    private final Map<Integer, String> titles = new ConcurrentHashMap<>();
+    private final Map<Integer, String> directorNames = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> directorsByFilm = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> filmsByDirector = new ConcurrentHashMap<>();
+    private final Map<Long, int[]> titlePostings = new ConcurrentHashMap<>();
+    private final Map<Long, int[]> directorPostings = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private final List<IntConsumer> changeListeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void rebuild() {
+        synchronized (writeLock) {
+            displayTitles.clear();
+            titles.clear();
+            directorNames.clear();
+            directorsByFilm.clear();
+            filmsByDirector.clear();
+            titlePostings.clear();
+            directorPostings.clear();
+
+            Map<Long, IntArrayBuilder> titleBuffers = new HashMap<>();
+            Map<Long, IntArrayBuilder> directorBuffers = new HashMap<>();
+            Map<Integer, IntArrayBuilder> filmBuffers = new HashMap<>();
+            Map<Integer, IntArrayBuilder> directorByFilmBuffers = new HashMap<>();
+
+            for (Director director : directorRepository.findAll()) {
+                String name = normalize(director.getName());
+                directorNames.put(director.getId(), name);
+                collect(directorBuffers, trigrams(name), director.getId());
+            }
+            filmRepository.streamAll(film -> {
+                String title = normalize(film.getName());
+                displayTitles.put(film.getId(), film.getName());
+                titles.put(film.getId(), title);
+                collect(titleBuffers, trigrams(title), film.getId());
+                for (int directorId : directorIds(film.getDirectors())) {
+                    filmBuffers.computeIfAbsent(directorId, k -> new IntArrayBuilder()).add(film.getId());
+                    directorByFilmBuffers.computeIfAbsent(film.getId(), k -> new IntArrayBuilder()).add(directorId);
+                }
+            });
+
+            freeze(titleBuffers, titlePostings);
+            freeze(directorBuffers, directorPostings);
+            freeze(filmBuffers, filmsByDirector);
+            freeze(directorByFilmBuffers, directorsByFilm);
+            titles.keySet().forEach(this::notifyChanged);
+        }
+
+        log.info("Поисковый индекс построен: фильмов {}, режиссёров {}, триграмм {}",
+                titles.size(), directorNames.size(), titlePostings.size() + directorPostings.size());
+    }
+
+    // id найденных фильмов по убыванию числа лайков, при равенстве — по id (как ORDER BY likes_count DESC, film_id)
+    public int[] search(String query, SearchBy searchBy) {
+        String needle = normalize(query);
+        if (needle.isEmpty()) {
+            return EMPTY;
+        }
+
+        int[] filmIds = EMPTY;
+        if (searchBy != SearchBy.DIRECTOR) {
+            filmIds = match(needle, titles, titlePostings);
+        }
+        if (searchBy != SearchBy.TITLE) {
+            for (int directorId : match(needle, directorNames, directorPostings)) {
+                filmIds = IntArrays.union(filmIds, filmsByDirector.getOrDefault(directorId, EMPTY));
+            }
+        }
+        return IntArrays.sortByCountDesc(filmIds, likesIndex::likesCount);
+    }
+
+    // Подходит ли фильм под запрос сейчас — по тем же правилам, что и search
+    public boolean matches(int filmId, String query, SearchBy searchBy) {
+        String needle = normalize(query);
+        if (needle.isEmpty()) {
+            return false;
+        }
+
+        if (searchBy != SearchBy.DIRECTOR) {
+            String title = titles.get(filmId);
+            if (title != null && title.contains(needle)) {
+                return true;
+            }
+        }
+        if (searchBy != SearchBy.TITLE) {
+            for (String name : directorNames(filmId)) {
+                if (name.contains(needle)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Название фильма как оно записано в базе
+    public String title(int filmId) {
+        return displayTitles.get(filmId);
+    }
+
+    // Имена режиссёров фильма в нижнем регистре
+    public List<String> directorNames(int filmId) {
+        int[] directorIds = directorsByFilm.getOrDefault(filmId, EMPTY);
+        List<String> names = new ArrayList<>(directorIds.length);
+        for (int directorId : directorIds) {
+            String name = directorNames.get(directorId);
+            if (name != null) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    public int[] filmIds() {
+        return titles.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    public void addChangeListener(IntConsumer listener) {
+        changeListeners.add(listener);
+    }
+
+    // Создание и обновление фильма: название и полный список его режиссёров
+    public void putFilm(Film film) {
+        int filmId = film.getId();
+        String previousTitle;
+        int[] previousDirectors;
+        synchronized (writeLock) {
+            previousTitle = titles.get(filmId);
+            previousDirectors = directorsByFilm.getOrDefault(filmId, EMPTY);
+            applyPutFilm(filmId, film.getName(), directorIds(film.getDirectors()));
+        }
+
+        TransactionCallbacks.onRollback(() -> restoreFilm(filmId, previousTitle, previousDirectors));
+    }
+
+    public void removeFilm(int filmId) {
+        String previousTitle;
+        int[] previousDirectors;
+        synchronized (writeLock) {
+            previousTitle = titles.get(filmId);
+            previousDirectors = directorsByFilm.getOrDefault(filmId, EMPTY);
+            applyRemoveFilm(filmId);
+        }
+
+        TransactionCallbacks.onRollback(() -> restoreFilm(filmId, previousTitle, previousDirectors));
+    }
+
+    public void putDirector(int directorId, String name) {
+        String previousName;
+        synchronized (writeLock) {
+            previousName = directorNames.get(directorId);
+            applyPutDirector(directorId, name);
+        }
+
+        TransactionCallbacks.onRollback(() -> {
+            synchronized (writeLock) {
+                if (previousName == null) {
+                    applyRemoveDirector(directorId);
+                } else {
+                    applyPutDirector(directorId, previousName);
+                }
+            }
+        });
+    }
+
+    // Связи с фильмами в базе удаляются каскадом, здесь — вместе с режиссёром
+    public void removeDirector(int directorId) {
+        String previousName;
+        int[] previousFilms;
+        synchronized (writeLock) {
+            previousName = directorNames.get(directorId);
+            previousFilms = filmsByDirector.getOrDefault(directorId, EMPTY);
+            applyRemoveDirector(directorId);
+        }
+        if (previousName == null) {
+            return;
+        }
+
+        TransactionCallbacks.onRollback(() -> {
+            synchronized (writeLock) {
+                applyPutDirector(directorId, previousName);
+                for (int filmId : previousFilms) {
+                    link(filmId, directorId);
+                    notifyChanged(filmId);
+                }
+            }
+        });
+    }
+
+    @Override
+    public String name() {
+        return "filmSearchIndex";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("films", titles.size());
+        metrics.put("directors", directorNames.size());
+        metrics.put("titleTrigrams", titlePostings.size());
+        metrics.put("directorTrigrams", directorPostings.size());
+        return metrics;
+    }
+
+    private void restoreFilm(int filmId, String title, int[] directorIds) {
+        synchronized (writeLock) {
+            if (title == null) {
+                applyRemoveFilm(filmId);
+            } else {
+                applyPutFilm(filmId, title, Arrays.stream(directorIds).boxed().toList());
+            }
+        }
+    }
+
+    // Дальше — только под writeLock
+
+    private void applyPutFilm(int filmId, String title, Collection<Integer> directorIds) {
+        displayTitles.put(filmId, title);
+        String normalized = normalize(title);
+        String previous = titles.put(filmId, normalized);
+        if (!normalized.equals(previous)) {
+            if (previous != null) {
+                removePostings(titlePostings, previous, filmId);
+            }
+            addPostings(titlePostings, normalized, filmId);
+        }
+
+        for (int directorId : directorsByFilm.getOrDefault(filmId, EMPTY)) {
+            unlink(filmId, directorId);
+        }
+        for (int directorId : directorIds) {
+            link(filmId, directorId);
+        }
+        notifyChanged(filmId);
+    }
+
+    private void applyRemoveFilm(int filmId) {
+        displayTitles.remove(filmId);
+        String previous = titles.remove(filmId);
+        if (previous != null) {
+            removePostings(titlePostings, previous, filmId);
+        }
+        for (int directorId : directorsByFilm.getOrDefault(filmId, EMPTY)) {
+            unlink(filmId, directorId);
+        }
+        notifyChanged(filmId);
+    }
+
+    private void applyPutDirector(int directorId, String name) {
+        String normalized = normalize(name);
+        String previous = directorNames.put(directorId, normalized);
+        if (!normalized.equals(previous)) {
+            if (previous != null) {
+                removePostings(directorPostings, previous, directorId);
+            }
+            addPostings(directorPostings, normalized, directorId);
+            for (int filmId : filmsByDirector.getOrDefault(directorId, EMPTY)) {
+                notifyChanged(filmId);
+            }
+        }
+    }
+
+    private void applyRemoveDirector(int directorId) {
+        String previous = directorNames.remove(directorId);
+        if (previous != null) {
+            removePostings(directorPostings, previous, directorId);
+        }
+        for (int filmId : filmsByDirector.getOrDefault(directorId, EMPTY)) {
+            unlink(filmId, directorId);
+            notifyChanged(filmId);
+        }
+    }
+
+    private void link(int filmId, int directorId) {
+        directorsByFilm.put(filmId, IntArrays.with(directorsByFilm.getOrDefault(filmId, EMPTY), directorId));
+        filmsByDirector.put(directorId, IntArrays.with(filmsByDirector.getOrDefault(directorId, EMPTY), filmId));
+    }
+
+    private void notifyChanged(int filmId) {
+        for (IntConsumer listener : changeListeners) {
+            listener.accept(filmId);
+        }
+    }
+
+    private void unlink(int filmId, int directorId) {
+        removeFromList(directorsByFilm, filmId, directorId);
+        removeFromList(filmsByDirector, directorId, filmId);
+    }
+
+    private static void collect(Map<Long, IntArrayBuilder> buffers, long[] grams, int id) {
+        for (long gram : grams) {
+            buffers.computeIfAbsent(gram, k -> new IntArrayBuilder()).add(id);
+        }
+    }
+
+    private static <K> void freeze(Map<K, IntArrayBuilder> buffers, Map<K, int[]> lists) {
+        buffers.forEach((key, buffer) -> lists.put(key, buffer.build()));
+    }
+
+    // Одиночные изменения: копия списка на каждый id
+    private static void addPostings(Map<Long, int[]> postings, String text, int id) {
+        for (long gram : trigrams(text)) {
+            postings.put(gram, IntArrays.with(postings.getOrDefault(gram, EMPTY), id));
+        }
+    }
+
+    private static void removePostings(Map<Long, int[]> postings, String text, int id) {
+        for (long gram : trigrams(text)) {
+            removeFromList(postings, gram, id);
+        }
+    }
+
+    private static <K> void removeFromList(Map<K, int[]> lists, K key, int value) {
+        int[] current = lists.get(key);
+        if (current == null) {
+            return;
+        }
+
+        int[] updated = IntArrays.without(current, value);
+        if (updated.length == 0) {
+            lists.remove(key);
+        } else if (updated != current) {
+            lists.put(key, updated);
+        }
+    }
+
+    // Отсортированные id строк, содержащих needle
+    private static int[] match(String needle, Map<Integer, String> texts, Map<Long, int[]> postings) {
+        if (needle.length() < GRAM) {
+            return texts.entrySet().stream()
+                    .filter(entry -> entry.getValue().contains(needle))
+                    .mapToInt(Map.Entry::getKey)
+                    .sorted()
+                    .toArray();
+        }
+
+        long[] grams = trigrams(needle);
+        int[][] lists = new int[grams.length][];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = postings.get(grams[i]);
+            if (lists[i] == null) {
+                return EMPTY;
+            }
+        }
+        // пересекаем начиная с самых коротких списков
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.length));
+        int[] candidates = lists[0];
+        for (int i = 1; i < lists.length && candidates.length > 0; i++) {
+            candidates = IntArrays.intersect(candidates, lists[i]);
+        }
+
+        return Arrays.stream(candidates)
+                .filter(id -> {
+                    String text = texts.get(id);
+                    return text != null && text.contains(needle);
+                })
+                .toArray();
+    }
+
+    // Различные триграммы строки; символ занимает 16 бит, триграмма — младшие 48 бит long
+    private static long[] trigrams(String text) {
+        if (text.length() < GRAM) {
+            return new long[0];
+        }
+
+        long[] grams = new long[text.length() - GRAM + 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        return Arrays.stream(grams).distinct().toArray();
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static List<Integer> directorIds(Set<Director> directors) {
+        return directors == null ? List.of() : directors.stream().map(Director::getId).toList();
+    }
+}
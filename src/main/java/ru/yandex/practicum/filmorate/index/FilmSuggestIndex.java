@@ -0,0 +1,366 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntUnaryOperator;
+
+// Подсказки при наборе по префиксному дереву над названиями фильмов и именами режиссёров (нижний регистр,
+// пробелы схлопнуты). Ключи фильма берутся с начала каждого слова: "тёмный рыцарь" и "рыцарь", — поэтому
+// подсказка находится по началу любого слова. Каждый узел хранит заранее отобранные top-K id фильмов по лайкам,
+// узлы на глубине max-depth — все фильмы ниже себя (их там единицы), так что глубина дерева ограничена.
+// Дерево неизменяемое и лежит в плоских массивах; в фоне оно пересобирается, если менялись фильмы или режиссёры.
+// Между сборками кандидаты проверяются по живым данным FilmSearchIndex, а фильмы, изменённые после сборки,
+// добавляются к кандидатам — новые, переименованные и удалённые фильмы видны сразу.
+// Фильмы, у которых изменилось число лайков, тоже добавляются к кандидатам и ранжируются по текущим лайкам,
+// поэтому лайки сами по себе пересобирают дерево редко: раз в likes-refresh-interval или когда таких фильмов
+// набралось max-liked-films. До этого фильм, потерявший лайки, может ненадолго удержать место в top-K узла.
+@Slf4j
+@Component
+public class FilmSuggestIndex implements MetricsSource {
+    private static final int[] EMPTY = new int[0];
+
+    private final FilmSearchIndex filmSearchIndex;
+    private final LikesIndex likesIndex;
+
+    private final int topK;
+    private final int maxDepth;
+    private final long refreshIntervalMillis;
+    private final long likesRefreshIntervalNanos;
+    private final int maxLikedFilms;
+
+    // изменены после начала последней сборки; изменены до неё, но сборка ещё не опубликована
+    private final Set<Integer> changedFilms = ConcurrentHashMap.newKeySet();
+    // у этих фильмов после начала последней сборки изменилось число лайков
+    private final Set<Integer> likedFilms = ConcurrentHashMap.newKeySet();
+    private volatile Set<Integer> rebuildingFilms = Set.of();
+    private volatile long lastRebuildStartedNanos;
+    private volatile Trie trie = Trie.EMPTY;
+
+    private final LongAdder rebuilds = new LongAdder();
+    private volatile long lastRebuildMillis;
+
+    private ScheduledExecutorService scheduler;
+
+    public FilmSuggestIndex(FilmSearchIndex filmSearchIndex,
+                            LikesIndex likesIndex,
+                            @Value("${filmorate.suggest.top-k:10}") int topK,
+                            @Value("${filmorate.suggest.max-depth:24}") int maxDepth,
+                            @Value("${filmorate.suggest.refresh-interval:5s}") Duration refreshInterval,
+                            @Value("${filmorate.suggest.likes-refresh-interval:5m}") Duration likesRefreshInterval,
+                            @Value("${filmorate.suggest.max-liked-films:1024}") int maxLikedFilms) {
+        this.filmSearchIndex = filmSearchIndex;
+        this.likesIndex = likesIndex;
+        this.topK = topK;
+        this.maxDepth = maxDepth;
+        this.refreshIntervalMillis = refreshInterval.toMillis();
+        this.likesRefreshIntervalNanos = likesRefreshInterval.toNanos();
+        this.maxLikedFilms = maxLikedFilms;
+    }
+
+    @PostConstruct
+    public void start() {
+        filmSearchIndex.addChangeListener(changedFilms::add);
+        likesIndex.addFilmChangeListener(likedFilms::add);
+        rebuild();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "suggest-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::rebuildIfChanged, refreshIntervalMillis, refreshIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    // До limit (не больше top-k) фильмов, у которых название или имя режиссёра содержит слово, начинающееся с prefix
+    public List<Integer> suggest(String prefix, int limit) {
+        String needle = normalize(prefix);
+        if (needle.isEmpty()) {
+            return List.of();
+        }
+
+        Trie current = trie;
+        int node = current.find(needle);
+        int[] candidates = node < 0 ? EMPTY : current.films(node);
+        Set<Integer> rebuilding = rebuildingFilms;
+        if (!changedFilms.isEmpty() || !likedFilms.isEmpty() || !rebuilding.isEmpty()) {
+            int[] changed = IntArrays.union(
+                    IntArrays.union(sortedIds(changedFilms), sortedIds(likedFilms)), sortedIds(rebuilding));
+            candidates = IntArrays.union(Arrays.stream(candidates).sorted().toArray(), changed);
+        }
+
+        int[] matched = Arrays.stream(candidates).filter(filmId -> matches(filmId, needle)).toArray();
+        int[] ordered = IntArrays.sortByCountDesc(matched, likesIndex::likesCount);
+
+        List<Integer> filmIds = new ArrayList<>(Math.min(limit, topK));
+        for (int i = 0; i < ordered.length && i < Math.min(limit, topK); i++) {
+            filmIds.add(ordered[i]);
+        }
+        return filmIds;
+    }
+
+    public int topK() {
+        return topK;
+    }
+
+    public String title(int filmId) {
+        return filmSearchIndex.title(filmId);
+    }
+
+    public synchronized void rebuild() {
+        long started = System.nanoTime();
+        // Изменения до этого момента войдут в сборку, более поздние снова попадут в changedFilms.
+        // Пока новое дерево не опубликовано, уже забранные фильмы проверяются отдельно
+        Set<Integer> rebuilding = new HashSet<>();
+        drainInto(changedFilms, rebuilding);
+        Set<Integer> liked = new HashSet<>();
+        drainInto(likedFilms, liked);
+        Set<Integer> pending = new HashSet<>(rebuilding);
+        pending.addAll(liked);
+        rebuildingFilms = pending;
+        lastRebuildStartedNanos = System.nanoTime();
+
+        try {
+            Builder builder = new Builder(maxDepth);
+            for (int filmId : filmSearchIndex.filmIds()) {
+                for (String text : texts(filmId)) {
+                    for (int start = 0; start < text.length(); start++) {
+                        if (start == 0 || text.charAt(start - 1) == ' ') {
+                            builder.insert(text, start, filmId);
+                        }
+                    }
+                }
+            }
+            trie = builder.freeze(topK, likesIndex::likesCount);
+        } catch (RuntimeException e) {
+            changedFilms.addAll(rebuilding);
+            likedFilms.addAll(liked);
+            throw e;
+        } finally {
+            rebuildingFilms = Set.of();
+        }
+
+        rebuilds.increment();
+        lastRebuildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        log.debug("Дерево подсказок собрано: узлов {}, {} мс", trie.size(), lastRebuildMillis);
+    }
+
+    @Override
+    public String name() {
+        return "filmSuggestIndex";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("nodes", trie.size());
+        metrics.put("storedFilmIds", trie.storedFilmIds());
+        metrics.put("changedSinceRebuild", changedFilms.size());
+        metrics.put("likedSinceRebuild", likedFilms.size());
+        metrics.put("rebuilds", rebuilds.sum());
+        metrics.put("lastRebuildMillis", lastRebuildMillis);
+        return metrics;
+    }
+
+    // Фильмы и режиссёры — на ближайшем тике; одни лайки — когда их накопилось много или прошёл likes-refresh-interval
+    private void rebuildIfChanged() {
+        boolean likesDue = !likedFilms.isEmpty()
+                && (likedFilms.size() >= maxLikedFilms
+                || System.nanoTime() - lastRebuildStartedNanos >= likesRefreshIntervalNanos);
+        if (changedFilms.isEmpty() && !likesDue) {
+            return;
+        }
+
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Дерево подсказок не пересобрано: {}", e.getMessage());
+        }
+    }
+
+    // Проверка по текущим названию и режиссёрам фильма: начинается ли с needle какое-нибудь слово
+    private boolean matches(int filmId, String needle) {
+        for (String text : texts(filmId)) {
+            for (int start = 0; start + needle.length() <= text.length(); start++) {
+                if ((start == 0 || text.charAt(start - 1) == ' ') && text.startsWith(needle, start)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private List<String> texts(int filmId) {
+        String title = filmSearchIndex.title(filmId);
+        if (title == null) {
+            return List.of();
+        }
+
+        List<String> texts = new ArrayList<>();
+        texts.add(normalize(title));
+        for (String directorName : filmSearchIndex.directorNames(filmId)) {
+            texts.add(normalize(directorName));
+        }
+        return texts;
+    }
+
+    private static void drainInto(Set<Integer> source, Set<Integer> target) {
+        for (Iterator<Integer> it = source.iterator(); it.hasNext(); ) {
+            target.add(it.next());
+            it.remove();
+        }
+    }
+
+    private static int[] sortedIds(Set<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT).trim().replaceAll("\\s+", " ");
+    }
+
+    // Изменяемое дерево только на время сборки
+    private static final class Builder {
+        private final int maxDepth;
+        private final BuilderNode root = new BuilderNode();
+
+        private Builder(int maxDepth) {
+            this.maxDepth = maxDepth;
+        }
+
+        private void insert(String text, int start, int filmId) {
+            BuilderNode node = root;
+            int end = Math.min(text.length(), start + maxDepth);
+            for (int i = start; i < end; i++) {
+                node = node.children.computeIfAbsent(text.charAt(i), c -> new BuilderNode());
+            }
+            node.addFilm(filmId);
+        }
+
+        // Узлы раскладываются в порядке обхода в ширину: дети узла идут подряд и по возрастанию символа
+        private Trie freeze(int topK, IntUnaryOperator likesCount) {
+            List<BuilderNode> order = new ArrayList<>();
+            List<Integer> depths = new ArrayList<>();
+            order.add(root);
+            depths.add(0);
+            for (int i = 0; i < order.size(); i++) {
+                for (BuilderNode child : order.get(i).children.values()) {
+                    order.add(child);
+                    depths.add(depths.get(i) + 1);
+                }
+            }
+
+            int size = order.size();
+            char[] labels = new char[size];
+            int[] firstChild = new int[size];
+            int[] childCount = new int[size];
+            int[][] films = new int[size][];
+
+            int next = 1;
+            for (int i = 0; i < size; i++) {
+                BuilderNode node = order.get(i);
+                firstChild[i] = next;
+                childCount[i] = node.children.size();
+                for (char label : node.children.keySet()) {
+                    labels[next++] = label;
+                }
+            }
+
+            // снизу вверх: дети собраны раньше родителя
+            for (int i = size - 1; i >= 0; i--) {
+                int[] subtree = Arrays.copyOf(order.get(i).films, order.get(i).filmCount);
+                for (int c = firstChild[i]; c < firstChild[i] + childCount[i]; c++) {
+                    subtree = concat(subtree, films[c]);
+                }
+                int[] ranked = IntArrays.sortByCountDesc(Arrays.stream(subtree).distinct().toArray(), likesCount);
+                films[i] = depths.get(i) < maxDepth && ranked.length > topK ? Arrays.copyOf(ranked, topK) : ranked;
+            }
+
+            int[] filmOffsets = new int[size + 1];
+            for (int i = 0; i < size; i++) {
+                filmOffsets[i + 1] = filmOffsets[i] + films[i].length;
+            }
+            int[] filmIds = new int[filmOffsets[size]];
+            for (int i = 0; i < size; i++) {
+                System.arraycopy(films[i], 0, filmIds, filmOffsets[i], films[i].length);
+            }
+            return new Trie(labels, firstChild, childCount, filmOffsets, filmIds);
+        }
+
+        private static int[] concat(int[] a, int[] b) {
+            int[] result = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, result, a.length, b.length);
+            return result;
+        }
+    }
+
+    private static final class BuilderNode {
+        private final Map<Character, BuilderNode> children = new TreeMap<>();
+        private int[] films = EMPTY;
+        private int filmCount;
+
+        private void addFilm(int filmId) {
+            if (filmCount == films.length) {
+                films = Arrays.copyOf(films, Math.max(4, filmCount * 2));
+            }
+            films[filmCount++] = filmId;
+        }
+    }
+
+    // Узел i: символ ребра labels[i], дети — отрезок [firstChild[i], firstChild[i] + childCount[i]),
+    // его фильмы — filmIds[filmOffsets[i] .. filmOffsets[i + 1]) по убыванию лайков на момент сборки
+    private record Trie(char[] labels, int[] firstChild, int[] childCount, int[] filmOffsets, int[] filmIds) {
+        private static final Trie EMPTY = new Trie(new char[1], new int[1], new int[1], new int[2], new int[0]);
+
+        // Узел префикса или -1; если префикс глубже дерева — последний узел на его пути
+        private int find(String prefix) {
+            int node = 0;
+            for (int i = 0; i < prefix.length(); i++) {
+                int from = firstChild[node];
+                int to = from + childCount[node];
+                if (from == to) {
+                    // лист: либо дерево здесь обрезано по глубине, либо продолжения нет — решит проверка кандидатов
+                    return node;
+                }
+                int child = Arrays.binarySearch(labels, from, to, prefix.charAt(i));
+                if (child < 0) {
+                    return -1;
+                }
+                node = child;
+            }
+            return node;
+        }
+
+        private int[] films(int node) {
+            return Arrays.copyOfRange(filmIds, filmOffsets[node], filmOffsets[node + 1]);
+        }
+
+        private int size() {
+            return labels.length;
+        }
+
+        private int storedFilmIds() {
+            return filmIds.length;
+        }
+    }
+}
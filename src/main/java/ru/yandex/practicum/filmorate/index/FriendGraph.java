@@ -0,0 +1,218 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FriendshipStorage;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+
+// Таблица friendship в памяти: дружба направленная, поэтому хранятся оба направления —
+// кого пользователь добавил в друзья (friends) и кто добавил его (followers).
+// Списки — отсортированные int[], меняются copy-on-write, чтение идёт без блокировок. Связь меняется в обоих
+// направлениях под блокировками полос обоих пользователей, взятыми по возрастанию номера полосы, — параллельные
+// добавление и удаление одной связи не разводят friends и followers.
+// Подписчики узнают id пользователей, чей список друзей изменился.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FriendGraph implements MetricsSource {
+    private static final int LOCK_STRIPES = 64;
+    private static final int[] EMPTY = new int[0];
+    // Оценка памяти: заголовок массива и запись ConcurrentHashMap с ключом Integer
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int MAP_ENTRY_BYTES = 48;
+
+    private final FriendshipStorage friendshipRepository;
+
+    private final Map<Integer, int[]> friendsByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> followersByUser = new ConcurrentHashMap<>();
+    private final Object[] locks = createLocks();
+    private final List<IntConsumer> changeListeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void rebuild() {
+        Map<Integer, int[]> friends = friendshipRepository.getFriendIdsByUser();
+
+        // обратные списки собираем из прямых: счётчики, затем заполнение — id идут по возрастанию владельцев
+        Map<Integer, Integer> followerCounts = new HashMap<>();
+        friends.values().forEach(ids -> {
+            for (int friendId : ids) {
+                followerCounts.merge(friendId, 1, Integer::sum);
+            }
+        });
+        Map<Integer, int[]> followers = new HashMap<>();
+        followerCounts.forEach((userId, count) -> followers.put(userId, new int[count]));
+        Map<Integer, Integer> filled = new HashMap<>();
+        friends.keySet().stream().sorted().forEach(userId -> {
+            for (int friendId : friends.get(userId)) {
+                followers.get(friendId)[filled.merge(friendId, 1, Integer::sum) - 1] = userId;
+            }
+        });
+
+        friendsByUser.clear();
+        followersByUser.clear();
+        friendsByUser.putAll(friends);
+        followersByUser.putAll(followers);
+
+        log.info("Граф дружбы построен: пользователей {}, связей {}", friendsByUser.size(), edges());
+    }
+
+    // Возвращаемые массивы нельзя изменять
+    public int[] friendsOf(int userId) {
+        return friendsByUser.getOrDefault(userId, EMPTY);
+    }
+
+    public int[] followersOf(int userId) {
+        return followersByUser.getOrDefault(userId, EMPTY);
+    }
+
+    // Общие друзья — слияние двух отсортированных списков
+    public int[] commonFriends(int userId, int otherUserId) {
+        return IntArrays.intersect(friendsOf(userId), friendsOf(otherUserId));
+    }
+
+    public void addChangeListener(IntConsumer listener) {
+        changeListeners.add(listener);
+    }
+
+    public void addFriend(int userId, int friendId) {
+        link(userId, friendId);
+
+        TransactionCallbacks.onRollback(() -> unlink(userId, friendId));
+    }
+
+    public void removeFriend(int userId, int friendId) {
+        unlink(userId, friendId);
+
+        TransactionCallbacks.onRollback(() -> link(userId, friendId));
+    }
+
+    // Связи удалённого пользователя в базе удаляются каскадом, здесь — обе стороны явно
+    public void removeUser(int userId) {
+        int[] friends = friendsOf(userId);
+        int[] followers = followersOf(userId);
+        if (friends.length == 0 && followers.length == 0) {
+            return;
+        }
+
+        for (int friendId : friends) {
+            unlinkEdge(userId, friendId);
+        }
+        for (int followerId : followers) {
+            unlinkEdge(followerId, userId);
+            notifyChanged(followerId);
+        }
+        notifyChanged(userId);
+
+        TransactionCallbacks.onRollback(() -> {
+            for (int friendId : friends) {
+                link(userId, friendId);
+            }
+            for (int followerId : followers) {
+                link(followerId, userId);
+            }
+        });
+    }
+
+    @Override
+    public String name() {
+        return "friendGraph";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("users", friendsByUser.size());
+        metrics.put("edges", edges());
+        metrics.put("estimatedBytes", estimatedBytes(friendsByUser) + estimatedBytes(followersByUser));
+        return metrics;
+    }
+
+    private void link(int userId, int friendId) {
+        synchronized (firstLock(userId, friendId)) {
+            synchronized (secondLock(userId, friendId)) {
+                friendsByUser.put(userId, IntArrays.with(friendsByUser.getOrDefault(userId, EMPTY), friendId));
+                followersByUser.put(friendId, IntArrays.with(followersByUser.getOrDefault(friendId, EMPTY), userId));
+            }
+        }
+        notifyChanged(userId);
+    }
+
+    private void unlink(int userId, int friendId) {
+        unlinkEdge(userId, friendId);
+        notifyChanged(userId);
+    }
+
+    private void unlinkEdge(int userId, int friendId) {
+        synchronized (firstLock(userId, friendId)) {
+            synchronized (secondLock(userId, friendId)) {
+                remove(friendsByUser, userId, friendId);
+                remove(followersByUser, friendId, userId);
+            }
+        }
+    }
+
+    // Полосы пары берутся по возрастанию номера; у пары из одной полосы второй захват — повторный вход
+    private Object firstLock(int userId, int friendId) {
+        return locks[Math.min(stripe(userId), stripe(friendId))];
+    }
+
+    private Object secondLock(int userId, int friendId) {
+        return locks[Math.max(stripe(userId), stripe(friendId))];
+    }
+
+    private void notifyChanged(int userId) {
+        for (IntConsumer listener : changeListeners) {
+            listener.accept(userId);
+        }
+    }
+
+    private long edges() {
+        return friendsByUser.values().stream().mapToLong(ids -> ids.length).sum();
+    }
+
+    private static long estimatedBytes(Map<Integer, int[]> lists) {
+        long bytes = 0;
+        for (int[] ids : lists.values()) {
+            // размер массива выравнивается до 8 байт
+            bytes += MAP_ENTRY_BYTES + ((ARRAY_HEADER_BYTES + 4L * ids.length + 7) & ~7L);
+        }
+        return bytes;
+    }
+
+    // Вызывается под блокировками полос связи
+    private static void remove(Map<Integer, int[]> lists, int key, int value) {
+        int[] current = lists.get(key);
+        if (current == null) {
+            return;
+        }
+
+        int[] updated = IntArrays.without(current, value);
+        if (updated.length == 0) {
+            lists.remove(key);
+        } else if (updated != current) {
+            lists.put(key, updated);
+        }
+    }
+
+    private static int stripe(int id) {
+        return Math.floorMod(id, LOCK_STRIPES);
+    }
+
+    private static Object[] createLocks() {
+        Object[] stripes = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+        return stripes;
+    }
+}
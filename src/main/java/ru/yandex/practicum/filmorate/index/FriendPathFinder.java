@@ -0,0 +1,237 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+// Кратчайшая цепочка дружбы между двумя пользователями: двусторонний поиск в ширину по FriendGraph.
+// Дружба направленная, поэтому от первого пользователя идём по его друзьям, а от второго — по тем,
+// у кого он в друзьях. Каждый шаг раскрывает тот фронт, у которого меньше исходящих связей;
+// поиск останавливается, когда фронты встретились или длина цепочки превысила бы max-depth.
+// Отметки посещения и родители хранятся в int[] по id пользователя с номером поиска вместо очистки:
+// ячейка считается занятой, только если в ней номер текущего поиска. Массивы переиспользуются через пул.
+@Component
+public class FriendPathFinder implements MetricsSource {
+    private static final int[] EMPTY = new int[0];
+
+    private final FriendGraph friendGraph;
+    private final int maxDepth;
+
+    private final Queue<SearchState> pool = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder found = new LongAdder();
+    private final LongAdder visited = new LongAdder();
+
+    public FriendPathFinder(FriendGraph friendGraph,
+                            @Value("${filmorate.friends.path.max-depth:6}") int maxDepth) {
+        this.friendGraph = friendGraph;
+        this.maxDepth = maxDepth;
+    }
+
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    // id пользователей цепочки от fromId до toId включительно; пустой массив — цепочки не длиннее depth связей нет
+    public int[] findPath(int fromId, int toId, int depth) {
+        searches.increment();
+        if (fromId == toId) {
+            found.increment();
+            return new int[]{fromId};
+        }
+
+        SearchState state = pool.poll();
+        if (state == null) {
+            state = new SearchState();
+        }
+        try {
+            int[] path = search(state, fromId, toId, Math.min(depth, maxDepth));
+            if (path.length > 0) {
+                found.increment();
+            }
+            return path;
+        } finally {
+            pool.offer(state);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "friendPathFinder";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("maxDepth", maxDepth);
+        metrics.put("searches", searches.sum());
+        metrics.put("found", found.sum());
+        metrics.put("visited", visited.sum());
+        metrics.put("pooledStates", pool.size());
+        return metrics;
+    }
+
+    private int[] search(SearchState state, int fromId, int toId, int depth) {
+        state.begin();
+        Side forward = state.forward;
+        Side backward = state.backward;
+        forward.start(fromId, state.stamp);
+        backward.start(toId, state.stamp);
+
+        int forwardDepth = 0;
+        int backwardDepth = 0;
+        try {
+            while (forwardDepth + backwardDepth < depth && forward.size > 0 && backward.size > 0) {
+                boolean expandForward = outDegree(forward, true) <= outDegree(backward, false);
+                int meeting = expandForward
+                        ? expand(forward, backward, true, state.stamp)
+                        : expand(backward, forward, false, state.stamp);
+                if (expandForward) {
+                    forwardDepth++;
+                } else {
+                    backwardDepth++;
+                }
+                if (meeting != 0) {
+                    return path(forward, backward, meeting, forwardDepth + backwardDepth);
+                }
+            }
+            return EMPTY;
+        } finally {
+            visited.add(forward.visited + backward.visited);
+        }
+    }
+
+    // Раскрывает один уровень фронта side; возвращает id пользователя, где фронты встретились, или 0
+    private int expand(Side side, Side other, boolean byFriends, int stamp) {
+        side.nextSize = 0;
+        int meeting = 0;
+        for (int i = 0; i < side.size && meeting == 0; i++) {
+            int userId = side.frontier[i];
+            for (int neighbourId : byFriends ? friendGraph.friendsOf(userId) : friendGraph.followersOf(userId)) {
+                if (side.isVisited(neighbourId, stamp)) {
+                    continue;
+                }
+                side.visit(neighbourId, userId, stamp);
+                if (other.isVisited(neighbourId, stamp)) {
+                    meeting = neighbourId;
+                    break;
+                }
+                side.push(neighbourId);
+            }
+        }
+        side.swapFrontier();
+        return meeting;
+    }
+
+    private long outDegree(Side side, boolean byFriends) {
+        long degree = 0;
+        for (int i = 0; i < side.size; i++) {
+            int userId = side.frontier[i];
+            degree += (byFriends ? friendGraph.friendsOf(userId) : friendGraph.followersOf(userId)).length;
+        }
+        return degree;
+    }
+
+    private static int[] path(Side forward, Side backward, int meeting, int length) {
+        int[] path = new int[length + 1];
+        // от точки встречи назад к началу по родителям прямого поиска
+        int position = 0;
+        for (int userId = meeting; ; userId = forward.parent[userId]) {
+            path[position++] = userId;
+            if (forward.parent[userId] == userId) {
+                break;
+            }
+        }
+        reverse(path, position);
+        // и вперёд к концу по родителям обратного поиска
+        for (int userId = meeting; backward.parent[userId] != userId; ) {
+            userId = backward.parent[userId];
+            path[position++] = userId;
+        }
+        return Arrays.copyOf(path, position);
+    }
+
+    private static void reverse(int[] array, int length) {
+        for (int i = 0, j = length - 1; i < j; i++, j--) {
+            int swap = array[i];
+            array[i] = array[j];
+            array[j] = swap;
+        }
+    }
+
+    // Массивы одного поиска: используются одним потоком за раз
+    private static final class SearchState {
+        private final Side forward = new Side();
+        private final Side backward = new Side();
+        private int stamp;
+
+        private void begin() {
+            if (stamp == Integer.MAX_VALUE) {
+                // номера поиска кончились — очищаем отметки и начинаем сначала
+                forward.clear();
+                backward.clear();
+                stamp = 0;
+            }
+            stamp++;
+        }
+    }
+
+    private static final class Side {
+        private int[] stamps = new int[1024];
+        private int[] parent = new int[1024];
+        private int[] frontier = new int[64];
+        private int[] next = new int[64];
+        private int size;
+        private int nextSize;
+        private int visited;
+
+        private void start(int userId, int stamp) {
+            visited = 0;
+            size = 0;
+            visit(userId, userId, stamp);
+            frontier[size++] = userId;
+        }
+
+        private boolean isVisited(int userId, int stamp) {
+            return userId < stamps.length && stamps[userId] == stamp;
+        }
+
+        private void visit(int userId, int parentId, int stamp) {
+            if (userId >= stamps.length) {
+                int capacity = Math.max(userId + 1, stamps.length * 2);
+                stamps = Arrays.copyOf(stamps, capacity);
+                parent = Arrays.copyOf(parent, capacity);
+            }
+            stamps[userId] = stamp;
+            parent[userId] = parentId;
+            visited++;
+        }
+
+        private void push(int userId) {
+            if (nextSize == next.length) {
+                next = Arrays.copyOf(next, nextSize * 2);
+            }
+            next[nextSize++] = userId;
+        }
+
+        private void swapFrontier() {
+            int[] swap = frontier;
+            frontier = next;
+            next = swap;
+            size = nextSize;
+            nextSize = 0;
+        }
+
+        private void clear() {
+            Arrays.fill(stamps, 0);
+        }
+    }
+}
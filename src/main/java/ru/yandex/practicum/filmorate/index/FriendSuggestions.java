@@ -0,0 +1,205 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Кого добавить в друзья: друзья друзей пользователя по числу общих друзей (при равенстве — по id).
+// Обход графа дружбы на два шага: у пользователя и у каждого его друга смотрим не больше max-fan-out друзей,
+// поэтому у «звёзд» с тысячами друзей запрос остаётся ограниченным (выдача тогда приблизительная).
+// Счётчики — IntIntHashMap, лучшие max-results кандидатов отбираются кучей без сортировки всех.
+// Выдача кэшируется по пользователю (вытесняется давно не читанный). Изменение друзей пользователя X
+// сбрасывает выдачу самого X и тех, у кого X в друзьях: для них меняются друзья друзей.
+@Component
+public class FriendSuggestions implements MetricsSource {
+    private static final int[] EMPTY = new int[0];
+
+    private final FriendGraph friendGraph;
+    private final int maxFanOut;
+    private final int maxResults;
+    private final int cacheSize;
+
+    // accessOrder = true: первой вытесняется самая старая выдача
+    private final LinkedHashMap<Integer, int[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    // Растёт при каждой инвалидации: выдачу, посчитанную до неё, в кэш уже не кладём
+    private long invalidations;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder truncated = new LongAdder();
+    private final LongAdder invalidated = new LongAdder();
+
+    public FriendSuggestions(FriendGraph friendGraph,
+                             @Value("${filmorate.friends.suggestions.max-fan-out:200}") int maxFanOut,
+                             @Value("${filmorate.friends.suggestions.max-results:100}") int maxResults,
+                             @Value("${filmorate.friends.suggestions.cache-size:10000}") int cacheSize) {
+        this.friendGraph = friendGraph;
+        this.maxFanOut = maxFanOut;
+        this.maxResults = maxResults;
+        this.cacheSize = cacheSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        friendGraph.addChangeListener(this::invalidateNeighbourhood);
+    }
+
+    // id предлагаемых пользователей, лучшие первыми, не больше count
+    public int[] suggest(int userId, int count) {
+        int[] cached;
+        long computedAt;
+        synchronized (this) {
+            cached = cache.get(userId);
+            computedAt = invalidations;
+        }
+        if (cached != null) {
+            hits.increment();
+            return Arrays.copyOf(cached, Math.min(count, cached.length));
+        }
+
+        misses.increment();
+        int[] suggestions = compute(userId);
+        synchronized (this) {
+            if (computedAt == invalidations) {
+                cache.put(userId, suggestions);
+                evictOverflow();
+            }
+        }
+        return Arrays.copyOf(suggestions, Math.min(count, suggestions.length));
+    }
+
+    @Override
+    public String name() {
+        return "friendSuggestions";
+    }
+
+    @Override
+    public synchronized Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("cached", cache.size());
+        metrics.put("hits", hits.sum());
+        metrics.put("misses", misses.sum());
+        metrics.put("truncated", truncated.sum());
+        metrics.put("invalidated", invalidated.sum());
+        return metrics;
+    }
+
+    private int[] compute(int userId) {
+        int[] friends = friendGraph.friendsOf(userId);
+        int direct = Math.min(friends.length, maxFanOut);
+        boolean capped = direct < friends.length;
+
+        IntIntHashMap mutualCounts = new IntIntHashMap(16);
+        for (int i = 0; i < direct; i++) {
+            int[] friendsOfFriend = friendGraph.friendsOf(friends[i]);
+            int second = Math.min(friendsOfFriend.length, maxFanOut);
+            capped |= second < friendsOfFriend.length;
+            for (int j = 0; j < second; j++) {
+                int candidate = friendsOfFriend[j];
+                if (candidate != userId && Arrays.binarySearch(friends, candidate) < 0) {
+                    mutualCounts.addTo(candidate, 1);
+                }
+            }
+        }
+        if (capped) {
+            truncated.increment();
+        }
+
+        return top(mutualCounts, maxResults);
+    }
+
+    // Минимальная куча из limit лучших ключей: в корне худший из отобранных, его и вытесняет лучший кандидат
+    private static int[] top(IntIntHashMap counts, int limit) {
+        if (counts.size() == 0 || limit <= 0) {
+            return EMPTY;
+        }
+
+        long[] heap = new long[Math.min(limit, counts.size())];
+        int[] size = {0};
+        counts.forEach((candidate, mutual) -> {
+            long key = rank(candidate, mutual);
+            if (size[0] < heap.length) {
+                heap[size[0]] = key;
+                siftUp(heap, size[0]++);
+            } else if (key > heap[0]) {
+                heap[0] = key;
+                siftDown(heap, size[0]);
+            }
+        });
+
+        // по возрастанию ключа и с конца — лучшие первыми
+        Arrays.sort(heap, 0, size[0]);
+        int[] ids = new int[size[0]];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = Integer.MAX_VALUE - (int) heap[size[0] - 1 - i];
+        }
+        return ids;
+    }
+
+    // Больше общих друзей — больше ключ, при равенстве больше ключ у меньшего id
+    private static long rank(int userId, int mutual) {
+        return ((long) mutual << 32) | (Integer.MAX_VALUE - userId);
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        long key = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] <= key) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = key;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        long key = heap[0];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= key) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = key;
+    }
+
+    private synchronized void invalidateNeighbourhood(int userId) {
+        invalidations++;
+        drop(userId);
+        for (int followerId : friendGraph.followersOf(userId)) {
+            drop(followerId);
+        }
+    }
+
+    private void drop(int userId) {
+        if (cache.remove(userId) != null) {
+            invalidated.increment();
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Integer> eldest = cache.keySet().iterator();
+        while (cache.size() > cacheSize && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+}
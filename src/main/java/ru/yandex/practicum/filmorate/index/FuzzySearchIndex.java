@@ -0,0 +1,369 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+import ru.yandex.practicum.filmorate.model.SearchBy;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Нечёткий поиск с опечатками: BK-дерево по словам названий фильмов и имён режиссёров.
+// Для каждого слова запроса дерево находит слова словаря на расстоянии Левенштейна не больше допустимого,
+// а списки фильмов этих слов дают кандидатов. Фильм должен найтись по каждому слову запроса;
+// его расстояние — сумма лучших расстояний по словам. Точные совпадения подстроки (FilmSearchIndex)
+// идут первыми с расстоянием 0. Порядок — по расстоянию, затем по лайкам.
+// Допустимое расстояние растёт с длиной слова и ограничено max-distance: короткие слова с опечаткой
+// совпали бы почти со всем словарём. Выдача ограничена max-results.
+// Словарь и списки фильмов обновляются по уведомлениям FilmSearchIndex. Удалить слово из BK-дерева нельзя,
+// поэтому слова без фильмов остаются в нём до пересборки дерева, которая запускается, когда таких слов
+// становится больше, чем живых. Число живых слов ведётся счётчиком при каждом изменении словаря.
+// При старте словарь и списки собираются целиком, а дерево строится один раз.
+@Slf4j
+@Component
+public class FuzzySearchIndex implements MetricsSource {
+    private static final String[] NO_TOKENS = new String[0];
+    private static final int[] EMPTY = new int[0];
+
+    private final FilmSearchIndex filmSearchIndex;
+    private final LikesIndex likesIndex;
+    private final int maxDistance;
+    private final int maxResults;
+
+    private final Map<Integer, String[]> titleTokensByFilm = new ConcurrentHashMap<>();
+    private final Map<Integer, String[]> directorTokensByFilm = new ConcurrentHashMap<>();
+    private final Map<String, int[]> titlePostings = new ConcurrentHashMap<>();
+    private final Map<String, int[]> directorPostings = new ConcurrentHashMap<>();
+
+    // дерево читается под read lock, меняется под write lock
+    private final ReadWriteLock treeLock = new ReentrantReadWriteLock();
+    private BkNode root;
+    private int treeSize;
+    private int treeRebuilds;
+    // слова, у которых есть хотя бы один фильм — в названиях или у режиссёров
+    private int liveTokens;
+
+    public FuzzySearchIndex(FilmSearchIndex filmSearchIndex,
+                            LikesIndex likesIndex,
+                            @Value("${filmorate.search.fuzzy.max-distance:2}") int maxDistance,
+                            @Value("${filmorate.search.fuzzy.max-results:100}") int maxResults) {
+        this.filmSearchIndex = filmSearchIndex;
+        this.likesIndex = likesIndex;
+        this.maxDistance = maxDistance;
+        this.maxResults = maxResults;
+    }
+
+    @PostConstruct
+    public void start() {
+        filmSearchIndex.addChangeListener(this::refreshFilm);
+
+        treeLock.writeLock().lock();
+        try {
+            Map<String, IntArrayBuilder> titleBuffers = new HashMap<>();
+            Map<String, IntArrayBuilder> directorBuffers = new HashMap<>();
+            for (int filmId : filmSearchIndex.filmIds()) {
+                String title = filmSearchIndex.title(filmId);
+                if (title == null) {
+                    continue;
+                }
+                collectTokens(titleTokensByFilm, titleBuffers, filmId, tokenize(title));
+                collectTokens(directorTokensByFilm, directorBuffers, filmId,
+                        tokenize(String.join(" ", filmSearchIndex.directorNames(filmId))));
+            }
+            titleBuffers.forEach((token, buffer) -> titlePostings.put(token, buffer.build()));
+            directorBuffers.forEach((token, buffer) -> directorPostings.put(token, buffer.build()));
+
+            Set<String> tokens = new TreeSet<>(titlePostings.keySet());
+            tokens.addAll(directorPostings.keySet());
+            liveTokens = tokens.size();
+            buildTree(tokens);
+        } finally {
+            treeLock.writeLock().unlock();
+        }
+        log.info("Индекс нечёткого поиска построен: слов {}", treeSize);
+    }
+
+    public int[] search(String query, SearchBy searchBy) {
+        String[] queryTokens = tokenize(query);
+        if (queryTokens.length == 0) {
+            return EMPTY;
+        }
+
+        Map<Integer, Integer> distances = new HashMap<>();
+        for (int filmId : filmSearchIndex.search(query, searchBy)) {
+            distances.put(filmId, 0);
+        }
+
+        // лучшее расстояние до каждого слова запроса; фильм без совпадения хотя бы по одному слову отпадает
+        Map<Integer, Integer> total = null;
+        for (String queryToken : queryTokens) {
+            Map<Integer, Integer> best = new HashMap<>();
+            for (Match match : findTokens(queryToken, allowedDistance(queryToken))) {
+                if (searchBy != SearchBy.DIRECTOR) {
+                    addFilms(best, titlePostings.get(match.token()), match.distance());
+                }
+                if (searchBy != SearchBy.TITLE) {
+                    addFilms(best, directorPostings.get(match.token()), match.distance());
+                }
+            }
+
+            if (total == null) {
+                total = best;
+            } else {
+                Map<Integer, Integer> previous = total;
+                total = new HashMap<>();
+                for (Map.Entry<Integer, Integer> entry : best.entrySet()) {
+                    Integer sum = previous.get(entry.getKey());
+                    if (sum != null) {
+                        total.put(entry.getKey(), sum + entry.getValue());
+                    }
+                }
+            }
+        }
+        total.forEach((filmId, distance) -> distances.merge(filmId, distance, Math::min));
+
+        return distances.entrySet().stream()
+                .sorted(Comparator.<Map.Entry<Integer, Integer>>comparingInt(Map.Entry::getValue)
+                        .thenComparing(entry -> likesIndex.likesCount(entry.getKey()), Comparator.reverseOrder())
+                        .thenComparingInt(Map.Entry::getKey))
+                .limit(maxResults)
+                .mapToInt(Map.Entry::getKey)
+                .toArray();
+    }
+
+    @Override
+    public String name() {
+        return "fuzzySearchIndex";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        treeLock.readLock().lock();
+        try {
+            metrics.put("treeTokens", treeSize);
+            metrics.put("liveTokens", liveTokens);
+            metrics.put("treeRebuilds", treeRebuilds);
+        } finally {
+            treeLock.readLock().unlock();
+        }
+        metrics.put("titleTokens", titlePostings.size());
+        metrics.put("directorTokens", directorPostings.size());
+        return metrics;
+    }
+
+    // Перечитывает слова фильма из FilmSearchIndex (удалённый фильм слов не имеет)
+    private void refreshFilm(int filmId) {
+        String title = filmSearchIndex.title(filmId);
+        String[] titleTokens = title == null ? NO_TOKENS : tokenize(title);
+        String[] directorTokens = title == null ? NO_TOKENS : tokenize(String.join(" ", filmSearchIndex.directorNames(filmId)));
+
+        treeLock.writeLock().lock();
+        try {
+            replaceTokens(titleTokensByFilm, titlePostings, filmId, titleTokens);
+            replaceTokens(directorTokensByFilm, directorPostings, filmId, directorTokens);
+
+            if (treeSize > 2 * liveTokens + 64) {
+                rebuildTree();
+            }
+        } finally {
+            treeLock.writeLock().unlock();
+        }
+    }
+
+    // Дальше — только под write lock
+
+    private void replaceTokens(Map<Integer, String[]> tokensByFilm, Map<String, int[]> postings,
+                               int filmId, String[] tokens) {
+        String[] previous = tokensByFilm.getOrDefault(filmId, NO_TOKENS);
+        for (String token : previous) {
+            int[] current = postings.get(token);
+            if (current != null) {
+                int[] updated = IntArrays.without(current, filmId);
+                if (updated.length == 0) {
+                    postings.remove(token);
+                    if (!titlePostings.containsKey(token) && !directorPostings.containsKey(token)) {
+                        liveTokens--;
+                    }
+                } else {
+                    postings.put(token, updated);
+                }
+            }
+        }
+
+        for (String token : tokens) {
+            int[] current = postings.get(token);
+            if (current == null && !titlePostings.containsKey(token) && !directorPostings.containsKey(token)) {
+                insertIntoTree(token);
+                liveTokens++;
+            }
+            postings.put(token, IntArrays.with(current == null ? EMPTY : current, filmId));
+        }
+
+        if (tokens.length == 0) {
+            tokensByFilm.remove(filmId);
+        } else {
+            tokensByFilm.put(filmId, tokens);
+        }
+    }
+
+    private static void collectTokens(Map<Integer, String[]> tokensByFilm, Map<String, IntArrayBuilder> buffers,
+                                      int filmId, String[] tokens) {
+        if (tokens.length == 0) {
+            return;
+        }
+        tokensByFilm.put(filmId, tokens);
+        for (String token : tokens) {
+            buffers.computeIfAbsent(token, k -> new IntArrayBuilder()).add(filmId);
+        }
+    }
+
+    private void rebuildTree() {
+        Set<String> tokens = new TreeSet<>(titlePostings.keySet());
+        tokens.addAll(directorPostings.keySet());
+        buildTree(tokens);
+        treeRebuilds++;
+    }
+
+    private void buildTree(Set<String> tokens) {
+        root = null;
+        treeSize = 0;
+        for (String token : tokens) {
+            insertIntoTree(token);
+        }
+    }
+
+    private void insertIntoTree(String token) {
+        if (root == null) {
+            root = new BkNode(token);
+            treeSize++;
+            return;
+        }
+
+        BkNode node = root;
+        while (true) {
+            int distance = levenshtein(token, node.token);
+            if (distance == 0) {
+                return;
+            }
+            BkNode child = node.child(distance);
+            if (child == null) {
+                node.addChild(distance, new BkNode(token));
+                treeSize++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    // Слова словаря на расстоянии не больше limit; поддеревья, которые по неравенству треугольника
+    // не могут содержать такие слова, не обходятся
+    private List<Match> findTokens(String token, int limit) {
+        List<Match> matches = new ArrayList<>();
+        treeLock.readLock().lock();
+        try {
+            if (root == null) {
+                return matches;
+            }
+
+            Deque<BkNode> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                BkNode node = stack.pop();
+                int distance = levenshtein(token, node.token);
+                if (distance <= limit && (titlePostings.containsKey(node.token) || directorPostings.containsKey(node.token))) {
+                    matches.add(new Match(node.token, distance));
+                }
+                for (int i = 0; i < node.childCount; i++) {
+                    if (Math.abs(node.childDistances[i] - distance) <= limit) {
+                        stack.push(node.children[i]);
+                    }
+                }
+            }
+        } finally {
+            treeLock.readLock().unlock();
+        }
+        return matches;
+    }
+
+    // Слова до 3 символов — без опечаток, до 6 — одна, длиннее — max-distance
+    private int allowedDistance(String token) {
+        int byLength = token.length() <= 3 ? 0 : token.length() <= 6 ? 1 : 2;
+        return Math.min(byLength, maxDistance);
+    }
+
+    private static void addFilms(Map<Integer, Integer> best, int[] filmIds, int distance) {
+        if (filmIds == null) {
+            return;
+        }
+        for (int filmId : filmIds) {
+            best.merge(filmId, distance, Math::min);
+        }
+    }
+
+    private static String[] tokenize(String text) {
+        if (text == null) {
+            return NO_TOKENS;
+        }
+        return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> !token.isEmpty())
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private record Match(String token, int distance) {
+    }
+
+    // Узел BK-дерева: у детей разное расстояние до слова узла
+    private static final class BkNode {
+        private final String token;
+        private int[] childDistances = EMPTY;
+        private BkNode[] children = new BkNode[0];
+        private int childCount;
+
+        private BkNode(String token) {
+            this.token = token;
+        }
+
+        private BkNode child(int distance) {
+            for (int i = 0; i < childCount; i++) {
+                if (childDistances[i] == distance) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private void addChild(int distance, BkNode child) {
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, Math.max(2, childCount * 2));
+                childDistances = Arrays.copyOf(childDistances, children.length);
+            }
+            childDistances[childCount] = distance;
+            children[childCount++] = child;
+        }
+    }
+}
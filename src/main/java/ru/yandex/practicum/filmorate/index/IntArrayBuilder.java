@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Arrays;
+
+// Растущий буфер int для сборки индексов целиком: значения дописываются в конец за амортизированное O(1),
+// а отсортированный массив без повторов (как у IntArrays) получается один раз в build. Не потокобезопасен.
+public class IntArrayBuilder {
+    private int[] values = new int[4];
+    private int size;
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public int[] build() {
+        int[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
+    }
+}
@@ -0,0 +1,148 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+// Операции над множествами id, записанными как отсортированные int[] без повторов (так их хранит LikesIndex)
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class IntArrays {
+    // Во сколько раз один массив должен быть длиннее другого, чтобы вместо слияния искать двоичным поиском
+    private static final int GALLOP_RATIO = 16;
+
+    // Новый массив со вставленным value; если value уже есть — тот же массив
+    public static int[] with(int[] array, int value) {
+        int pos = Arrays.binarySearch(array, value);
+        if (pos >= 0) {
+            return array;
+        }
+
+        int insertAt = -pos - 1;
+        int[] updated = new int[array.length + 1];
+        System.arraycopy(array, 0, updated, 0, insertAt);
+        updated[insertAt] = value;
+        System.arraycopy(array, insertAt, updated, insertAt + 1, array.length - insertAt);
+        return updated;
+    }
+
+    // Новый массив без value; если value нет — тот же массив
+    public static int[] without(int[] array, int value) {
+        int pos = Arrays.binarySearch(array, value);
+        if (pos < 0) {
+            return array;
+        }
+
+        int[] updated = new int[array.length - 1];
+        System.arraycopy(array, 0, updated, 0, pos);
+        System.arraycopy(array, pos + 1, updated, pos, array.length - pos - 1);
+        return updated;
+    }
+
+    public static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                result[size++] = a[i++];
+            } else if (i == a.length || a[i] > b[j]) {
+                result[size++] = b[j++];
+            } else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    public static int[] intersect(int[] a, int[] b) {
+        if (a.length > b.length) {
+            return intersect(b, a);
+        }
+        int[] result = new int[a.length];
+        int size = 0;
+
+        if ((long) a.length * GALLOP_RATIO < b.length) {
+            // короткий массив против длинного: каждый элемент ищем в ещё не просмотренной части длинного
+            int from = 0;
+            for (int value : a) {
+                int pos = Arrays.binarySearch(b, from, b.length, value);
+                if (pos >= 0) {
+                    result[size++] = value;
+                    from = pos + 1;
+                } else {
+                    from = -pos - 1;
+                }
+                if (from == b.length) {
+                    break;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    result[size++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    // Элементы a, которых нет в b
+    public static int[] difference(int[] a, int[] b) {
+        int[] result = new int[a.length];
+        int size = 0;
+        int j = 0;
+        for (int value : a) {
+            while (j < b.length && b[j] < value) {
+                j++;
+            }
+            if (j == b.length || b[j] != value) {
+                result[size++] = value;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    // По убыванию count, при равенстве — по возрастанию id. Пара упаковывается в long так,
+    // что обычная сортировка по возрастанию даёт нужный порядок (id и count неотрицательны)
+    public static int[] sortByCountDesc(int[] ids, IntUnaryOperator count) {
+        long[] packed = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            packed[i] = pack(ids[i], count.applyAsInt(ids[i]));
+        }
+        return unpack(packed, ids.length);
+    }
+
+    // То же по счётчикам из IntIntHashMap, но не больше limit первых ключей
+    public static int[] topByCount(IntIntHashMap counts, int limit) {
+        long[] packed = new long[counts.size()];
+        int[] size = {0};
+        counts.forEach((key, count) -> packed[size[0]++] = pack(key, count));
+        return unpack(packed, limit);
+    }
+
+    private static long pack(int id, int count) {
+        return ((long) (Integer.MAX_VALUE - count) << 32) | id;
+    }
+
+    private static int[] unpack(long[] packed, int limit) {
+        Arrays.sort(packed);
+        int[] ids = new int[Math.min(limit, packed.length)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (int) packed[i];
+        }
+        return ids;
+    }
+}
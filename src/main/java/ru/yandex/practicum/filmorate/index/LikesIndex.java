@@ -0,0 +1,207 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FilmStorage;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+
+// Таблица likes в памяти в двух направлениях: пользователь -> фильмы и фильм -> пользователи.
+// Списки никогда не меняются на месте: изменение создаёт новый список (copy-on-write), поэтому читатели
+// работают без блокировок. Фильмы пользователя — отсортированный int[] (их немного), пользователи фильма —
+// ChunkedIntSet: у популярного фильма лайк копирует один кусок списка, а не весь список.
+// Пара (фильм, пользователь) меняется в обоих направлениях под блокировками полос пользователя и фильма,
+// взятыми всегда в этом порядке, поэтому лайк и снятие лайка одной пары не разводят стороны.
+// Подписчики узнают id пользователей, чьи лайки изменились (в том числе при откате),
+// а подписчики на фильмы — id фильмов, у которых изменилось число лайков.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikesIndex {
+    private static final int LOCK_STRIPES = 64;
+    private static final int[] EMPTY = new int[0];
+
+    private final FilmStorage filmRepository;
+
+    private final Map<Integer, int[]> filmsByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, ChunkedIntSet> usersByFilm = new ConcurrentHashMap<>();
+    private final Object[] userLocks = createLocks();
+    private final Object[] filmLocks = createLocks();
+    private final List<IntConsumer> changeListeners = new CopyOnWriteArrayList<>();
+    private final List<IntConsumer> filmChangeListeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void rebuild() {
+        filmsByUser.clear();
+        usersByFilm.clear();
+        filmsByUser.putAll(filmRepository.getFilmIdsByUser());
+        filmRepository.getUserIdsByFilm()
+                .forEach((filmId, userIds) -> usersByFilm.put(filmId, ChunkedIntSet.of(userIds)));
+
+        log.info("Индекс лайков построен: пользователей {}, фильмов {}", filmsByUser.size(), usersByFilm.size());
+    }
+
+    // Возвращаемые массивы нельзя изменять
+    public int[] filmsOf(int userId) {
+        return filmsByUser.getOrDefault(userId, EMPTY);
+    }
+
+    public int[] usersOf(int filmId) {
+        return usersByFilm.getOrDefault(filmId, ChunkedIntSet.EMPTY).toArray();
+    }
+
+    // Пользователи фильма без сборки плоского массива
+    public void forEachUserOf(int filmId, IntConsumer consumer) {
+        usersByFilm.getOrDefault(filmId, ChunkedIntSet.EMPTY).forEach(consumer);
+    }
+
+    public boolean isLiked(int filmId, int userId) {
+        return Arrays.binarySearch(filmsOf(userId), filmId) >= 0;
+    }
+
+    public int likesCount(int filmId) {
+        return usersByFilm.getOrDefault(filmId, ChunkedIntSet.EMPTY).size();
+    }
+
+    // Фильмы, которые лайкнули оба пользователя, по числу лайков (как сортировка по likes_count DESC, film_id)
+    public int[] commonFilms(int userId, int otherUserId) {
+        int[] common = IntArrays.intersect(filmsOf(userId), filmsOf(otherUserId));
+        return IntArrays.sortByCountDesc(common, this::likesCount);
+    }
+
+    // Пользователи, у которых есть хотя бы один лайк, по возрастанию id
+    public int[] userIds() {
+        return filmsByUser.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    public void addChangeListener(IntConsumer listener) {
+        changeListeners.add(listener);
+    }
+
+    public void addFilmChangeListener(IntConsumer listener) {
+        filmChangeListeners.add(listener);
+    }
+
+    public void addLike(int filmId, int userId) {
+        link(filmId, userId);
+
+        TransactionCallbacks.onRollback(() -> unlink(filmId, userId));
+    }
+
+    public void removeLike(int filmId, int userId) {
+        unlink(filmId, userId);
+
+        TransactionCallbacks.onRollback(() -> link(filmId, userId));
+    }
+
+    // Пары снимаются по одной теми же блокировками, что и лайки, так что параллельный лайк не оставит полпары
+    public void removeUser(int userId) {
+        int[] filmIds = filmsOf(userId);
+        if (filmIds.length == 0) {
+            return;
+        }
+        for (int filmId : filmIds) {
+            unlinkPair(filmId, userId);
+            notifyFilmChanged(filmId);
+        }
+        notifyChanged(userId);
+
+        TransactionCallbacks.onRollback(() -> {
+            for (int filmId : filmIds) {
+                link(filmId, userId);
+            }
+        });
+    }
+
+    public void removeFilm(int filmId) {
+        int[] userIds = usersOf(filmId);
+        if (userIds.length == 0) {
+            return;
+        }
+        for (int userId : userIds) {
+            unlinkPair(filmId, userId);
+            notifyChanged(userId);
+        }
+        notifyFilmChanged(filmId);
+
+        TransactionCallbacks.onRollback(() -> {
+            for (int userId : userIds) {
+                link(filmId, userId);
+            }
+        });
+    }
+
+    private void link(int filmId, int userId) {
+        synchronized (userLocks[stripe(userId)]) {
+            synchronized (filmLocks[stripe(filmId)]) {
+                filmsByUser.put(userId, IntArrays.with(filmsByUser.getOrDefault(userId, EMPTY), filmId));
+                usersByFilm.put(filmId, usersByFilm.getOrDefault(filmId, ChunkedIntSet.EMPTY).with(userId));
+            }
+        }
+        notifyChanged(userId);
+        notifyFilmChanged(filmId);
+    }
+
+    private void unlink(int filmId, int userId) {
+        unlinkPair(filmId, userId);
+        notifyChanged(userId);
+        notifyFilmChanged(filmId);
+    }
+
+    private void unlinkPair(int filmId, int userId) {
+        synchronized (userLocks[stripe(userId)]) {
+            synchronized (filmLocks[stripe(filmId)]) {
+                int[] filmIds = filmsByUser.get(userId);
+                if (filmIds != null) {
+                    int[] updated = IntArrays.without(filmIds, filmId);
+                    if (updated.length == 0) {
+                        filmsByUser.remove(userId);
+                    } else if (updated != filmIds) {
+                        filmsByUser.put(userId, updated);
+                    }
+                }
+
+                ChunkedIntSet userIds = usersByFilm.get(filmId);
+                if (userIds != null) {
+                    ChunkedIntSet updated = userIds.without(userId);
+                    if (updated.size() == 0) {
+                        usersByFilm.remove(filmId);
+                    } else if (updated != userIds) {
+                        usersByFilm.put(filmId, updated);
+                    }
+                }
+            }
+        }
+    }
+
+    private void notifyChanged(int userId) {
+        for (IntConsumer listener : changeListeners) {
+            listener.accept(userId);
+        }
+    }
+
+    private void notifyFilmChanged(int filmId) {
+        for (IntConsumer listener : filmChangeListeners) {
+            listener.accept(filmId);
+        }
+    }
+
+    private static int stripe(int id) {
+        return Math.floorMod(id, LOCK_STRIPES);
+    }
+
+    private static Object[] createLocks() {
+        Object[] stripes = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+        return stripes;
+    }
+}
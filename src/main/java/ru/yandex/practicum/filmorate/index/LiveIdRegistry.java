@@ -0,0 +1,162 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.dal.UserStorage;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+
+// Какие id пользователей и фильмов сейчас есть в базе: по биту на id (SERIAL, идут подряд),
+// миллион id — 125 КБ. Проверки существования перед записью идут по битам без запроса к базе.
+// Биты ставятся при создании и снимаются при удалении (с откатом вместе с транзакцией).
+// Если бита нет, один раз спрашиваем базу: строку могли добавить в обход сервиса — тогда бит ставится.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LiveIdRegistry implements MetricsSource {
+    private final UserStorage userRepository;
+    private final FilmStorage filmRepository;
+
+    private final GrowableBitSet users = new GrowableBitSet();
+    private final GrowableBitSet films = new GrowableBitSet();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder healed = new LongAdder();
+
+    @PostConstruct
+    public void rebuild() {
+        users.clear();
+        films.clear();
+        userRepository.streamAllIds(users::set);
+        filmRepository.streamAllIds(films::set);
+
+        log.info("Реестр id построен: пользователей {}, фильмов {}", users.cardinality(), films.cardinality());
+    }
+
+    public boolean userExists(int userId) {
+        return exists(users, userId, userRepository::existsById);
+    }
+
+    public boolean filmExists(int filmId) {
+        return exists(films, filmId, filmRepository::existsById);
+    }
+
+    public void userCreated(int userId) {
+        users.set(userId);
+        TransactionCallbacks.onRollback(() -> users.clear(userId));
+    }
+
+    public void userDeleted(int userId) {
+        users.clear(userId);
+        TransactionCallbacks.onRollback(() -> users.set(userId));
+    }
+
+    public void filmCreated(int filmId) {
+        films.set(filmId);
+        TransactionCallbacks.onRollback(() -> films.clear(filmId));
+    }
+
+    public void filmDeleted(int filmId) {
+        films.clear(filmId);
+        TransactionCallbacks.onRollback(() -> films.set(filmId));
+    }
+
+    @Override
+    public String name() {
+        return "liveIdRegistry";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("users", users.cardinality());
+        metrics.put("films", films.cardinality());
+        metrics.put("bytes", users.bytes() + films.bytes());
+        metrics.put("hits", hits.sum());
+        metrics.put("fallbacks", fallbacks.sum());
+        metrics.put("healed", healed.sum());
+        return metrics;
+    }
+
+    private boolean exists(GrowableBitSet ids, int id, IntPredicate existsInDb) {
+        if (ids.get(id)) {
+            hits.increment();
+            return true;
+        }
+
+        fallbacks.increment();
+        if (id > 0 && existsInDb.test(id)) {
+            ids.set(id);
+            healed.increment();
+            return true;
+        }
+        return false;
+    }
+
+    // Биты в AtomicLongArray: чтение без блокировок, запись и рост массива — под блокировкой
+    private static final class GrowableBitSet {
+        private volatile AtomicLongArray words = new AtomicLongArray(64);
+
+        private boolean get(int id) {
+            if (id < 0) {
+                return false;
+            }
+            AtomicLongArray current = words;
+            int index = id >>> 6;
+            return index < current.length() && (current.get(index) & (1L << id)) != 0;
+        }
+
+        private synchronized void set(int id) {
+            if (id < 0) {
+                return;
+            }
+            int index = id >>> 6;
+            if (index >= words.length()) {
+                grow(index);
+            }
+            words.getAndUpdate(index, word -> word | (1L << id));
+        }
+
+        private synchronized void clear(int id) {
+            int index = id >>> 6;
+            if (id >= 0 && index < words.length()) {
+                words.getAndUpdate(index, word -> word & ~(1L << id));
+            }
+        }
+
+        private synchronized void clear() {
+            words = new AtomicLongArray(64);
+        }
+
+        private int cardinality() {
+            AtomicLongArray current = words;
+            int count = 0;
+            for (int i = 0; i < current.length(); i++) {
+                count += Long.bitCount(current.get(i));
+            }
+            return count;
+        }
+
+        private long bytes() {
+            return 8L * words.length();
+        }
+
+        private void grow(int index) {
+            AtomicLongArray current = words;
+            AtomicLongArray grown = new AtomicLongArray(Math.max(index + 1, current.length() * 2));
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            words = grown;
+        }
+    }
+}
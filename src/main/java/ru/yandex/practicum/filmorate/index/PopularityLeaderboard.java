@@ -0,0 +1,269 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmPopularity;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Collectors;
+
+// Рейтинг популярности фильмов в памяти: общий, по жанрам, по годам выпуска и по паре (жанр, год).
+// Каждый разрез — упорядоченное множество, поэтому топ-N читается без запросов к базе и без фильтрации.
+// Изменения одного фильма сериализуются блокировкой его полосы. Перестановка фильма (вставить новую запись,
+// убрать старую) публикуется в каждом разрезе отдельно: перестановки разных фильмов друг друга не ждут.
+// Чтение топа идёт оптимистично и повторяется, если за время обхода в разрезе что-то переставлялось;
+// не хватило попыток — разрез ненадолго закрывается для перестановок, и обход идёт без пропусков и повторов.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PopularityLeaderboard {
+    private static final int LOCK_STRIPES = 64;
+    private static final int OPTIMISTIC_READS = 3;
+
+    // Порядок как в SQL: больше лайков — выше, при равенстве меньший id раньше
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt(Entry::likes).reversed()
+            .thenComparingInt(Entry::filmId);
+
+    private final FilmStorage filmRepository;
+
+    private final Map<Integer, FilmState> films = new ConcurrentHashMap<>();
+    private final Partition global = new Partition();
+    private final Map<Integer, Partition> byGenre = new ConcurrentHashMap<>();
+    private final Map<Integer, Partition> byYear = new ConcurrentHashMap<>();
+    private final Map<Long, Partition> byGenreAndYear = new ConcurrentHashMap<>();
+    private final Object[] locks = createLocks();
+
+    @PostConstruct
+    public void rebuild() {
+        films.clear();
+        global.entries.clear();
+        byGenre.clear();
+        byYear.clear();
+        byGenreAndYear.clear();
+
+        // likes_count к этому моменту уже сверен с таблицей likes (см. FilmDBRepository.init)
+        Collection<FilmPopularity> popularity = filmRepository.getFilmsPopularity();
+        for (FilmPopularity film : popularity) {
+            FilmState state = new FilmState(film.getLikesCount(), Set.copyOf(film.getGenreIds()), film.getReleaseYear());
+            films.put(film.getFilmId(), state);
+            replace(film.getFilmId(), null, state);
+        }
+
+        log.info("Рейтинг популярности построен, фильмов: {}", films.size());
+    }
+
+    public List<Integer> top(int count, Integer genreId, Integer year) {
+        Partition source;
+        if (genreId != null && year != null) {
+            source = byGenreAndYear.get(genreAndYear(genreId, year));
+        } else if (genreId != null) {
+            source = byGenre.get(genreId);
+        } else if (year != null) {
+            source = byYear.get(year);
+        } else {
+            source = global;
+        }
+        return source == null ? List.of() : source.top(count);
+    }
+
+    public void addFilm(Film film) {
+        int filmId = film.getId();
+        synchronized (lockFor(filmId)) {
+            replace(filmId, films.get(filmId), new FilmState(0, genreIdsOf(film), yearOf(film)));
+        }
+
+        TransactionCallbacks.onRollback(() -> restoreMetadata(filmId, null));
+    }
+
+    public void updateFilm(Film film) {
+        int filmId = film.getId();
+        FilmState oldState;
+        synchronized (lockFor(filmId)) {
+            oldState = films.get(filmId);
+            int likes = oldState == null ? 0 : oldState.likes();
+            replace(filmId, oldState, new FilmState(likes, genreIdsOf(film), yearOf(film)));
+        }
+
+        TransactionCallbacks.onRollback(() -> restoreMetadata(filmId, oldState));
+    }
+
+    public void removeFilm(int filmId) {
+        FilmState oldState;
+        synchronized (lockFor(filmId)) {
+            oldState = films.get(filmId);
+            replace(filmId, oldState, null);
+        }
+
+        TransactionCallbacks.onRollback(() -> restoreMetadata(filmId, oldState));
+    }
+
+    public void changeLikes(int filmId, int delta) {
+        applyLikesDelta(filmId, delta);
+
+        TransactionCallbacks.onRollback(() -> applyLikesDelta(filmId, -delta));
+    }
+
+    private void applyLikesDelta(int filmId, int delta) {
+        synchronized (lockFor(filmId)) {
+            FilmState oldState = films.get(filmId);
+            if (oldState == null) {
+                return;
+            }
+            replace(filmId, oldState, new FilmState(oldState.likes() + delta, oldState.genreIds(), oldState.year()));
+        }
+    }
+
+    // Возвращает жанры и год фильма к прежним значениям, сохраняя текущее число лайков
+    private void restoreMetadata(int filmId, FilmState previous) {
+        synchronized (lockFor(filmId)) {
+            FilmState current = films.get(filmId);
+            if (previous == null) {
+                replace(filmId, current, null);
+                return;
+            }
+
+            int likes = current == null ? previous.likes() : current.likes();
+            replace(filmId, current, new FilmState(likes, previous.genreIds(), previous.year()));
+        }
+    }
+
+    // Вызывается только под блокировкой полосы фильма. В разрезах, где фильм был и остаётся, запись переставляется
+    private void replace(int filmId, FilmState oldState, FilmState newState) {
+        Entry oldEntry = oldState == null ? null : new Entry(filmId, oldState.likes());
+        Entry newEntry = newState == null ? null : new Entry(filmId, newState.likes());
+        List<Partition> oldPartitions = oldState == null ? List.of() : partitionsOf(oldState);
+        List<Partition> newPartitions = newState == null ? List.of() : partitionsOf(newState);
+
+        if (newState == null) {
+            films.remove(filmId);
+        } else {
+            films.put(filmId, newState);
+        }
+        for (Partition partition : newPartitions) {
+            partition.move(oldPartitions.contains(partition) ? oldEntry : null, newEntry);
+        }
+        for (Partition partition : oldPartitions) {
+            if (!newPartitions.contains(partition)) {
+                partition.move(oldEntry, null);
+            }
+        }
+    }
+
+    private List<Partition> partitionsOf(FilmState state) {
+        List<Partition> partitions = new ArrayList<>();
+        partitions.add(global);
+        for (Integer genreId : state.genreIds()) {
+            partitions.add(byGenre.computeIfAbsent(genreId, k -> new Partition()));
+        }
+        if (state.year() != null) {
+            partitions.add(byYear.computeIfAbsent(state.year(), k -> new Partition()));
+            for (Integer genreId : state.genreIds()) {
+                partitions.add(byGenreAndYear.computeIfAbsent(genreAndYear(genreId, state.year()), k -> new Partition()));
+            }
+        }
+        return partitions;
+    }
+
+    private static long genreAndYear(int genreId, int year) {
+        return ((long) genreId << 32) | (year & 0xFFFFFFFFL);
+    }
+
+    private Object lockFor(int filmId) {
+        return locks[Math.floorMod(filmId, LOCK_STRIPES)];
+    }
+
+    private static Object[] createLocks() {
+        Object[] stripes = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+        return stripes;
+    }
+
+    private static Set<Integer> genreIdsOf(Film film) {
+        if (film.getGenres() == null) {
+            return Set.of();
+        }
+        return film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private static Integer yearOf(Film film) {
+        return film.getReleaseDate() == null ? null : film.getReleaseDate().getYear();
+    }
+
+    private record Entry(int filmId, int likes) {
+    }
+
+    private record FilmState(int likes, Set<Integer> genreIds, Integer year) {
+    }
+
+    // Один разрез рейтинга. Перестановки держат moves совместно и друг друга не ждут; счётчики начатых
+    // и законченных перестановок позволяют чтению без блокировки проверить, что за обход ничего не менялось.
+    // Исключительно moves берёт только чтение, которому не хватило оптимистичных попыток
+    private static final class Partition {
+        private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>(ORDER);
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicLong finished = new AtomicLong();
+        private final StampedLock moves = new StampedLock();
+
+        void move(Entry oldEntry, Entry newEntry) {
+            long stamp = moves.readLock();
+            started.incrementAndGet();
+            try {
+                if (newEntry != null) {
+                    entries.add(newEntry);
+                }
+                if (oldEntry != null && !oldEntry.equals(newEntry)) {
+                    entries.remove(oldEntry);
+                }
+            } finally {
+                finished.incrementAndGet();
+                moves.unlockRead(stamp);
+            }
+        }
+
+        List<Integer> top(int count) {
+            for (int attempt = 0; attempt < OPTIMISTIC_READS; attempt++) {
+                // сначала законченные, потом начатые: перестановка, идущая в этот момент, даст расхождение
+                long done = finished.get();
+                long begun = started.get();
+                if (begun == done) {
+                    List<Integer> result = collect(count);
+                    if (started.get() == begun) {
+                        return result;
+                    }
+                }
+                Thread.onSpinWait();
+            }
+
+            long stamp = moves.writeLock();
+            try {
+                return collect(count);
+            } finally {
+                moves.unlockWrite(stamp);
+            }
+        }
+
+        private List<Integer> collect(int count) {
+            List<Integer> result = new ArrayList<>(Math.min(count, 1024));
+            for (Entry entry : entries) {
+                if (result.size() >= count) {
+                    break;
+                }
+                result.add(entry.filmId());
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Рекомендации по индексу лайков в памяти, с той же логикой, что и запрос
+// GET_FILM_RECOMENDATIONS_BY_USER_ID_QUERY в FilmDBRepository:
+// 1. похожие — до 10 других пользователей с наибольшим числом общих лайков (хотя бы одним);
+// 2. кандидаты — фильмы похожих пользователей, которые пользователь ещё не лайкнул;
+// 3. до 20 кандидатов по числу рекомендовавших похожих пользователей, при равенстве — по film_id.
+// Порядок похожих с одинаковым числом общих лайков в SQL не задан; здесь — по user_id.
+@Component
+@RequiredArgsConstructor
+public class RecommendationEngine {
+    static final int SIMILAR_USERS_LIMIT = 10;
+    static final int RECOMMENDATIONS_LIMIT = 20;
+
+    private final LikesIndex likesIndex;
+
+    public List<Integer> recommend(int userId) {
+        int[] liked = likesIndex.filmsOf(userId);
+        if (liked.length == 0) {
+            return List.of();
+        }
+
+        // число общих лайков с каждым, кто лайкал те же фильмы
+        IntIntHashMap overlaps = new IntIntHashMap(liked.length * 4);
+        for (int filmId : liked) {
+            likesIndex.forEachUserOf(filmId, otherId -> {
+                if (otherId != userId) {
+                    overlaps.addTo(otherId, 1);
+                }
+            });
+        }
+        if (overlaps.size() == 0) {
+            return List.of();
+        }
+
+        IntIntHashMap candidates = new IntIntHashMap(RECOMMENDATIONS_LIMIT * 4);
+        for (int similarId : IntArrays.topByCount(overlaps, SIMILAR_USERS_LIMIT)) {
+            // фильмы похожего пользователя, которых нет у самого пользователя
+            for (int filmId : IntArrays.difference(likesIndex.filmsOf(similarId), liked)) {
+                candidates.addTo(filmId, 1);
+            }
+        }
+
+        List<Integer> filmIds = new ArrayList<>(RECOMMENDATIONS_LIMIT);
+        for (int filmId : IntArrays.topByCount(candidates, RECOMMENDATIONS_LIMIT)) {
+            filmIds.add(filmId);
+        }
+        return filmIds;
+    }
+}
@@ -0,0 +1,239 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.RecommendationStorage;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Рекомендации заранее считаются в фоне и лежат в user_recommendations, запрос — чтение одной строки по ключу.
+// Каждый проход сначала пересчитывает пользователей, чьи лайки изменились с прошлого прохода,
+// а раз в full-refresh-interval — всех, у кого есть лайки (их рекомендации меняются и от чужих лайков).
+// Расчёт идёт параллельно в ForkJoinPool, запись — пачками.
+// Пока у пользователя нет строки или его строка ещё не пересчитана после изменения лайков,
+// рекомендации считаются синхронно по индексу в памяти. Так же и со строкой, где есть уже удалённый фильм:
+// удаление меняет рекомендации не только тем, кто его лайкал, а искать такие строки по таблице дорого —
+// строка сверяется с реестром id при чтении и уходит на пересчёт.
+@Slf4j
+@Component
+public class RecommendationRefresher implements MetricsSource {
+    private final RecommendationEngine recommendationEngine;
+    private final LikesIndex likesIndex;
+    private final RecommendationStorage recommendationRepository;
+    private final LiveIdRegistry liveIdRegistry;
+
+    private final boolean enabled;
+    private final long intervalMillis;
+    private final long fullRefreshIntervalNanos;
+    private final int batchSize;
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    // изменились и ждут прохода; взяты в текущий проход, но ещё не записаны
+    private final Set<Integer> dirtyUsers = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> inFlightUsers = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder fullPasses = new LongAdder();
+    private final LongAdder recomputed = new LongAdder();
+    private final LongAdder materializedReads = new LongAdder();
+    private final LongAdder synchronousReads = new LongAdder();
+    private final LongAdder staleReads = new LongAdder();
+    private final LongAdder failedPasses = new LongAdder();
+    private volatile long lastPassMillis;
+
+    // меняются только потоком обновления
+    private boolean fullRefreshDone;
+    private long lastFullRefreshNanos;
+
+    private ScheduledExecutorService scheduler;
+
+    public RecommendationRefresher(RecommendationEngine recommendationEngine,
+                                   LikesIndex likesIndex,
+                                   RecommendationStorage recommendationRepository,
+                                   LiveIdRegistry liveIdRegistry,
+                                   @Value("${filmorate.recommendations.refresh.enabled:true}") boolean enabled,
+                                   @Value("${filmorate.recommendations.refresh.interval:1s}") Duration interval,
+                                   @Value("${filmorate.recommendations.refresh.full-refresh-interval:10m}") Duration fullRefreshInterval,
+                                   @Value("${filmorate.recommendations.refresh.batch-size:500}") int batchSize,
+                                   @Value("${filmorate.recommendations.refresh.parallelism:0}") int parallelism) {
+        this.recommendationEngine = recommendationEngine;
+        this.likesIndex = likesIndex;
+        this.recommendationRepository = recommendationRepository;
+        this.liveIdRegistry = liveIdRegistry;
+        this.enabled = enabled;
+        this.intervalMillis = interval.toMillis();
+        this.fullRefreshIntervalNanos = fullRefreshInterval.toNanos();
+        this.batchSize = batchSize;
+        // 0 — по числу ядер
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(this.parallelism);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        likesIndex.addChangeListener(dirtyUsers::add);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "recommendations-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // до первого прохода всем отвечает синхронный расчёт
+        scheduler.scheduleWithFixedDelay(this::runPass, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Фоновый расчёт рекомендаций включён: интервал {} мс, потоков {}", intervalMillis, parallelism);
+    }
+
+    // Поток не прерываем (прерывание посреди записи закрывает файл базы H2), а ждём конца текущего прохода
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            scheduler = null;
+        }
+        pool.shutdown();
+    }
+
+    public List<Integer> recommend(int userId) {
+        if (!enabled || dirtyUsers.contains(userId) || inFlightUsers.contains(userId)) {
+            synchronousReads.increment();
+            return recommendationEngine.recommend(userId);
+        }
+
+        Optional<List<Integer>> stored = recommendationRepository.getRecommendations(userId);
+        if (stored.isPresent() && stored.get().stream().allMatch(liveIdRegistry::filmExists)) {
+            materializedReads.increment();
+            return stored.get();
+        }
+        if (stored.isPresent()) {
+            // строка посчитана до удаления одного из фильмов
+            staleReads.increment();
+        }
+
+        // строки ещё нет или она устарела: отвечаем сразу, а запишет её следующий проход
+        synchronousReads.increment();
+        dirtyUsers.add(userId);
+        return recommendationEngine.recommend(userId);
+    }
+
+    // Один проход обновления; вызывается по расписанию, а в тестах — напрямую
+    public void refresh() {
+        long started = System.nanoTime();
+        boolean full = !fullRefreshDone || started - lastFullRefreshNanos >= fullRefreshIntervalNanos;
+
+        // Сначала изменившиеся. В inFlight пользователь попадает раньше, чем уходит из dirty,
+        // поэтому чтение не застанет момент, когда он не числится нигде, а строка ещё старая
+        Set<Integer> users = new LinkedHashSet<>();
+        for (Iterator<Integer> it = dirtyUsers.iterator(); it.hasNext(); ) {
+            Integer userId = it.next();
+            inFlightUsers.add(userId);
+            it.remove();
+            users.add(userId);
+        }
+        if (full) {
+            for (int userId : likesIndex.userIds()) {
+                users.add(userId);
+            }
+        }
+
+        int[] userIds = users.stream().mapToInt(Integer::intValue).toArray();
+        try {
+            for (int from = 0; from < userIds.length; from += batchSize) {
+                int to = Math.min(from + batchSize, userIds.length);
+                Map<Integer, List<Integer>> batch = new ConcurrentHashMap<>();
+                pool.invoke(new ComputeTask(userIds, from, to, batch));
+                recommendationRepository.saveRecommendations(batch);
+                recomputed.add(batch.size());
+                batch.keySet().forEach(inFlightUsers::remove);
+            }
+        } catch (RuntimeException e) {
+            // не записанные в этом проходе пересчитаем в следующем
+            for (int userId : userIds) {
+                if (inFlightUsers.remove(userId)) {
+                    dirtyUsers.add(userId);
+                }
+            }
+            throw e;
+        }
+
+        if (full) {
+            fullRefreshDone = true;
+            lastFullRefreshNanos = started;
+            fullPasses.increment();
+        }
+        passes.increment();
+        lastPassMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+
+    @Override
+    public String name() {
+        return "recommendations";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("dirtyUsers", dirtyUsers.size());
+        metrics.put("passes", passes.sum());
+        metrics.put("fullPasses", fullPasses.sum());
+        metrics.put("recomputed", recomputed.sum());
+        metrics.put("lastPassMillis", lastPassMillis);
+        metrics.put("materializedReads", materializedReads.sum());
+        metrics.put("synchronousReads", synchronousReads.sum());
+        metrics.put("staleReads", staleReads.sum());
+        metrics.put("failedPasses", failedPasses.sum());
+        return metrics;
+    }
+
+    private void runPass() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // исключение из задачи отменило бы все следующие запуски
+            failedPasses.increment();
+            log.warn("Проход расчёта рекомендаций не завершён: {}", e.getMessage());
+        }
+    }
+
+    // Делит отрезок пользователей пополам, пока он не станет достаточно мал для расчёта в одном потоке
+    private final class ComputeTask extends RecursiveAction {
+        private static final int THRESHOLD = 32;
+
+        private final int[] userIds;
+        private final int from;
+        private final int to;
+        private final Map<Integer, List<Integer>> results;
+
+        private ComputeTask(int[] userIds, int from, int to, Map<Integer, List<Integer>> results) {
+            this.userIds = userIds;
+            this.from = from;
+            this.to = to;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    results.put(userIds[i], recommendationEngine.recommend(userIds[i]));
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ComputeTask(userIds, from, middle, results), new ComputeTask(userIds, middle, to, results));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+
+import java.util.List;
+import java.util.Optional;
+
+// Справочники жанров и рейтингов MPA в памяти. Таблицы genre и rating меняются только скриптами,
+// поэтому читаются один раз при старте в неизменяемый снимок: массивы, где индекс — id.
+// Маперы и хранилища берут отсюда общие экземпляры вместо создания нового объекта на каждую строку;
+// Genre и MpaRating неизменяемые, поэтому общий экземпляр нельзя испортить у всех остальных.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReferenceDataRegistry {
+    private static final String FIND_GENRES_QUERY = "SELECT genre_id, genre_name FROM genre ORDER BY genre_id";
+
+    private static final String FIND_RATINGS_QUERY = "SELECT rating_id, rating_name FROM rating ORDER BY rating_id";
+
+    private final JdbcTemplate jdbc;
+
+    private volatile Snapshot snapshot = new Snapshot(new Genre[0], List.of(), new MpaRating[0], List.of());
+
+    @PostConstruct
+    public void reload() {
+        List<Genre> genres = jdbc.query(FIND_GENRES_QUERY, (rs, rowNum) -> Genre.builder()
+                .id(rs.getInt("genre_id"))
+                .name(rs.getString("genre_name"))
+                .build());
+        List<MpaRating> ratings = jdbc.query(FIND_RATINGS_QUERY, (rs, rowNum) -> MpaRating.builder()
+                .id(rs.getInt("rating_id"))
+                .name(rs.getString("rating_name"))
+                .build());
+
+        Genre[] genresById = new Genre[maxId(genres.stream().map(Genre::getId).toList()) + 1];
+        genres.forEach(genre -> genresById[genre.getId()] = genre);
+
+        MpaRating[] ratingsById = new MpaRating[maxId(ratings.stream().map(MpaRating::getId).toList()) + 1];
+        ratings.forEach(rating -> ratingsById[rating.getId()] = rating);
+
+        snapshot = new Snapshot(genresById, List.copyOf(genres), ratingsById, List.copyOf(ratings));
+        log.info("Справочники загружены: жанров {}, рейтингов {}", genres.size(), ratings.size());
+    }
+
+    public List<Genre> genres() {
+        return snapshot.genres();
+    }
+
+    public Optional<Genre> genre(int id) {
+        Genre[] genresById = snapshot.genresById();
+        return id >= 0 && id < genresById.length ? Optional.ofNullable(genresById[id]) : Optional.empty();
+    }
+
+    public List<MpaRating> ratings() {
+        return snapshot.ratings();
+    }
+
+    public Optional<MpaRating> rating(int id) {
+        MpaRating[] ratingsById = snapshot.ratingsById();
+        return id >= 0 && id < ratingsById.length ? Optional.ofNullable(ratingsById[id]) : Optional.empty();
+    }
+
+    // Для маперов: общий экземпляр, а если строки почему-то нет в снимке — объект из самой строки
+    public Genre genreOrCreate(int id, String name) {
+        return genre(id).orElseGet(() -> Genre.builder().id(id).name(name).build());
+    }
+
+    public MpaRating ratingOrCreate(int id, String name) {
+        return rating(id).orElseGet(() -> MpaRating.builder().id(id).name(name).build());
+    }
+
+    private static int maxId(List<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+
+    private record Snapshot(Genre[] genresById, List<Genre> genres, MpaRating[] ratingsById, List<MpaRating> ratings) {
+    }
+}
@@ -0,0 +1,194 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.ReviewStorage;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+import ru.yandex.practicum.filmorate.model.Review;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Лучшие отзывы по (useful DESC, review_id) для общего списка /reviews: не больше capacity штук в памяти.
+// Инвариант: любой отзыв в наборе стоит выше любого отзыва вне набора. Оценки, создание, правка
+// и удаление отзыва поддерживают его; отзыв, опустившийся ниже худшего в наборе, из набора уходит —
+// снаружи могут быть отзывы лучше него. Если для ответа отзывов в наборе не хватает, он перечитывается
+// из базы; запросы больше capacity идут в базу. При откате транзакции набор перечитывается при следующем запросе.
+@Slf4j
+@Component
+public class ReviewTopK implements MetricsSource {
+    private final ReviewStorage reviewRepository;
+    private final int capacity;
+
+    private final TreeMap<Key, Review> top = new TreeMap<>();
+    private final Map<Integer, Key> keys = new HashMap<>();
+    // в наборе все отзывы, что есть в базе
+    private boolean holdsAll;
+    private boolean loaded;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+
+    public ReviewTopK(ReviewStorage reviewRepository,
+                      @Value("${filmorate.reviews.top-k:100}") int capacity) {
+        this.reviewRepository = reviewRepository;
+        this.capacity = capacity;
+    }
+
+    public Collection<Review> findAll(int count) {
+        if (count > capacity) {
+            misses.increment();
+            return reviewRepository.findAll(count);
+        }
+
+        synchronized (this) {
+            if (!loaded || (top.size() < count && !holdsAll)) {
+                reload();
+            }
+            hits.increment();
+            return top.values().stream().limit(count).map(ReviewTopK::copyOf).toList();
+        }
+    }
+
+    public synchronized void reviewCreated(Review review) {
+        if (loaded) {
+            offer(review);
+        }
+        TransactionCallbacks.onRollback(this::invalidate);
+    }
+
+    public synchronized void reviewUpdated(Review review) {
+        Key key = keys.get(review.getReviewId());
+        if (key != null) {
+            Review stored = top.get(key);
+            stored.setContent(review.getContent());
+            stored.setIsPositive(review.getIsPositive());
+        }
+        TransactionCallbacks.onRollback(this::invalidate);
+    }
+
+    // Отзыв вне набора стоит ниже всех в наборе, его удаление инвариант не нарушает
+    public synchronized void reviewDeleted(int reviewId) {
+        Key key = keys.remove(reviewId);
+        if (key != null) {
+            top.remove(key);
+        }
+        TransactionCallbacks.onRollback(this::invalidate);
+    }
+
+    // Вызывается внутри транзакции оценки, пока строка отзыва заблокирована, — изменения одного отзыва приходят по порядку
+    public synchronized void usefulChanged(int reviewId, int useful) {
+        TransactionCallbacks.onRollback(this::invalidate);
+        if (!loaded) {
+            return;
+        }
+
+        Key key = keys.remove(reviewId);
+        if (key != null) {
+            Review review = top.remove(key);
+            review.setUseful(useful);
+            offer(review);
+            return;
+        }
+        if (holdsAll) {
+            // отзыва нет в наборе, хотя там должны быть все — набор разошёлся с базой
+            invalidate();
+            return;
+        }
+
+        Key candidate = new Key(useful, reviewId);
+        if (!top.isEmpty() && candidate.compareTo(top.lastKey()) < 0) {
+            reviewRepository.getReviewById(reviewId).ifPresent(this::offer);
+        }
+    }
+
+    // Отзывы фильма или пользователя удалены каскадом в базе, какие именно — неизвестно, поэтому набор сбрасывается.
+    // Повторно — после завершения транзакции: параллельное чтение могло загрузить набор до коммита удаления
+    public void reviewsCascaded() {
+        invalidate();
+        TransactionCallbacks.afterCompletion(this::invalidate);
+    }
+
+    public synchronized void invalidate() {
+        loaded = false;
+        top.clear();
+        keys.clear();
+    }
+
+    @Override
+    public String name() {
+        return "reviewTopK";
+    }
+
+    @Override
+    public synchronized Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", top.size());
+        metrics.put("capacity", capacity);
+        metrics.put("holdsAll", holdsAll);
+        metrics.put("hits", hits.sum());
+        metrics.put("misses", misses.sum());
+        metrics.put("reloads", reloads.sum());
+        return metrics;
+    }
+
+    // Дальше — только под блокировкой
+
+    private void reload() {
+        top.clear();
+        keys.clear();
+        Collection<Review> reviews = reviewRepository.findAll(capacity + 1);
+        for (Review review : reviews) {
+            put(review);
+        }
+        holdsAll = reviews.size() <= capacity;
+        trim();
+        loaded = true;
+        reloads.increment();
+    }
+
+    // Отзыв входит в набор, если стоит выше худшего в нём (или в наборе все отзывы)
+    private void offer(Review review) {
+        Key key = new Key(review.getUseful(), review.getReviewId());
+        if (holdsAll || (!top.isEmpty() && key.compareTo(top.lastKey()) < 0)) {
+            put(review);
+            trim();
+        }
+    }
+
+    private void put(Review review) {
+        Key key = new Key(review.getUseful(), review.getReviewId());
+        top.put(key, copyOf(review));
+        keys.put(review.getReviewId(), key);
+    }
+
+    private void trim() {
+        while (top.size() > capacity) {
+            Map.Entry<Key, Review> worst = top.pollLastEntry();
+            keys.remove(worst.getValue().getReviewId());
+            holdsAll = false;
+        }
+    }
+
+    private static Review copyOf(Review review) {
+        return Review.builder()
+                .reviewId(review.getReviewId())
+                .content(review.getContent())
+                .isPositive(review.getIsPositive())
+                .userId(review.getUserId())
+                .filmId(review.getFilmId())
+                .useful(review.getUseful())
+                .build();
+    }
+
+    // Выше — больше useful, при равенстве — меньше id
+    private record Key(int useful, int reviewId) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            int byUseful = Integer.compare(other.useful, useful);
+            return byUseful != 0 ? byUseful : Integer.compare(reviewId, other.reviewId);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Индексы в памяти меняются сразу (изменения видны внутри текущей транзакции),
+// а если транзакция, в которой работал сервис, откатилась — изменения отменяются переданным действием.
+// Поэтому методы сервисов, меняющие и базу, и индексы, помечены @Transactional: без транзакции откатывать нечего
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class TransactionCallbacks {
+
+    public static void onRollback(Runnable undo) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    undo.run();
+                }
+            }
+        });
+    }
+
+    // Действие после завершения транзакции, чем бы она ни закончилась; вне транзакции не нужно — вызывающий уже всё сделал
+    public static void afterCompletion(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.run();
+            }
+        });
+    }
+
+    // Действие после коммита; вне транзакции выполняется сразу
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.UserStorage;
+import ru.yandex.practicum.filmorate.exceptions.exceptions.DuplicatedDataException;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Занятые логины и почты: нормализованное значение (без пробелов по краям, в нижнем регистре) -> id пользователя.
+// Проверка перед созданием и обновлением идёт по хеш-таблицам без запроса к базе, поэтому регистрация —
+// это одна запись. UNIQUE в таблице users остаётся страховкой от гонок двух регистраций одновременно.
+// При совпадении хозяин значения перечитывается из базы: запись могли изменить в обход сервиса —
+// тогда устаревшее значение убирается из индекса.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserUniquenessIndex implements MetricsSource {
+    private final UserStorage userRepository;
+
+    private final Map<String, Integer> logins = new ConcurrentHashMap<>();
+    private final Map<String, Integer> emails = new ConcurrentHashMap<>();
+    private final Map<Integer, Keys> keysByUser = new ConcurrentHashMap<>();
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder healed = new LongAdder();
+
+    @PostConstruct
+    public synchronized void rebuild() {
+        logins.clear();
+        emails.clear();
+        keysByUser.clear();
+        userRepository.streamAllUsers(this::put);
+
+        log.info("Индекс логинов и почт построен: пользователей {}", keysByUser.size());
+    }
+
+    // Логин и почта свободны или заняты самим пользователем userId (0 — новый пользователь)
+    public void checkAvailable(int userId, String login, String email) {
+        checks.increment();
+        boolean loginTaken = isTaken(logins, normalize(login), userId, true);
+        boolean emailTaken = isTaken(emails, normalize(email), userId, false);
+        if (!loginTaken && !emailTaken) {
+            return;
+        }
+
+        conflicts.increment();
+        if (userId != 0) {
+            throw new DuplicatedDataException("Такой Login или Email уже используется");
+        } else if (loginTaken && emailTaken) {
+            throw new DuplicatedDataException("Пользователь с таким Login и Email уже зарегистрирован");
+        } else if (loginTaken) {
+            throw new DuplicatedDataException("Пользователь с таким Login уже зарегистрирован");
+        }
+        throw new DuplicatedDataException("Пользователь с таким Email уже зарегистрирован");
+    }
+
+    // Пользователь создан или обновлён: старые логин и почта освобождаются, новые занимаются
+    public void userSaved(User user) {
+        Keys previous = put(user);
+        TransactionCallbacks.onRollback(() -> restore(user.getId(), previous));
+    }
+
+    public void userDeleted(int userId) {
+        Keys previous = remove(userId);
+        TransactionCallbacks.onRollback(() -> restore(userId, previous));
+    }
+
+    @Override
+    public String name() {
+        return "userUniquenessIndex";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("users", keysByUser.size());
+        metrics.put("logins", logins.size());
+        metrics.put("emails", emails.size());
+        metrics.put("checks", checks.sum());
+        metrics.put("conflicts", conflicts.sum());
+        metrics.put("healed", healed.sum());
+        return metrics;
+    }
+
+    private boolean isTaken(Map<String, Integer> index, String key, int userId, boolean byLogin) {
+        Integer ownerId = index.get(key);
+        if (ownerId == null || ownerId == userId) {
+            return false;
+        }
+
+        Optional<User> owner = userRepository.getUserById(ownerId);
+        String actual = owner.map(user -> normalize(byLogin ? user.getLogin() : user.getEmail())).orElse(null);
+        if (key.equals(actual)) {
+            return true;
+        }
+
+        // значение у хозяина уже другое или его самого нет — индекс отстал от базы
+        synchronized (this) {
+            remove(ownerId);
+            owner.ifPresent(this::put);
+        }
+        healed.increment();
+        return false;
+    }
+
+    private synchronized Keys put(User user) {
+        Keys previous = remove(user.getId());
+        Keys keys = new Keys(normalize(user.getLogin()), normalize(user.getEmail()));
+        logins.put(keys.login(), user.getId());
+        emails.put(keys.email(), user.getId());
+        keysByUser.put(user.getId(), keys);
+        return previous;
+    }
+
+    private synchronized Keys remove(int userId) {
+        Keys keys = keysByUser.remove(userId);
+        if (keys != null) {
+            logins.remove(keys.login(), userId);
+            emails.remove(keys.email(), userId);
+        }
+        return keys;
+    }
+
+    private synchronized void restore(int userId, Keys previous) {
+        remove(userId);
+        if (previous != null) {
+            logins.put(previous.login(), userId);
+            emails.put(previous.email(), userId);
+            keysByUser.put(userId, previous);
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Keys(String login, String email) {
+    }
+}
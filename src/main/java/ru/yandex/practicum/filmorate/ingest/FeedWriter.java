@@ -0,0 +1,273 @@
+package ru.yandex.practicum.filmorate.ingest;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.cache.FeedTailCache;
+import ru.yandex.practicum.filmorate.dal.FeedStorage;
+import ru.yandex.practicum.filmorate.index.TransactionCallbacks;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Асинхронная запись событий ленты (включается filmorate.feed.async.enabled).
+// Событие попадает в ограниченную очередь после коммита транзакции, в которой оно возникло;
+// фоновый поток забирает пачку (до batch-size штук или flush-interval ожидания) и пишет её
+// одной транзакцией через batchUpdate, без возврата сгенерированных id.
+// Если очередь полна, запись ждёт offer-timeout и затем пишет событие сама, синхронно.
+// С read-your-writes чтение ленты пользователя ждёт (не дольше read-timeout), пока запишутся его события из очереди.
+@Slf4j
+@Component
+public class FeedWriter implements MetricsSource {
+    private final FeedStorage feedRepository;
+    private final FeedTailCache feedTailCache;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+    private final long flushIntervalNanos;
+    private final int batchSize;
+    private final long offerTimeoutNanos;
+    private final boolean readYourWrites;
+    private final long readTimeoutNanos;
+    private final BlockingQueue<Feed> queue;
+
+    // события пользователя в очереди или в незаписанной пачке; меняется под блокировкой pending
+    private final Map<Integer, Integer> pending = new HashMap<>();
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder readWaits = new LongAdder();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public FeedWriter(FeedStorage feedRepository,
+                      FeedTailCache feedTailCache,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${filmorate.feed.async.enabled:false}") boolean enabled,
+                      @Value("${filmorate.feed.async.flush-interval:100ms}") Duration flushInterval,
+                      @Value("${filmorate.feed.async.batch-size:500}") int batchSize,
+                      @Value("${filmorate.feed.async.queue-capacity:10000}") int queueCapacity,
+                      @Value("${filmorate.feed.async.offer-timeout:50ms}") Duration offerTimeout,
+                      @Value("${filmorate.feed.async.read-your-writes:true}") boolean readYourWrites,
+                      @Value("${filmorate.feed.async.read-timeout:1s}") Duration readTimeout) {
+        this.feedRepository = feedRepository;
+        this.feedTailCache = feedTailCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.batchSize = batchSize;
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+        this.readYourWrites = readYourWrites;
+        this.readTimeoutNanos = readTimeout.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        running = true;
+        flusher = new Thread(this::run, "feed-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Асинхронная запись ленты включена: пачка до {}, интервал {} мс, очередь {}",
+                batchSize, TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos), queue.remainingCapacity());
+    }
+
+    // При остановке приложения дописываем всё, что осталось в очереди.
+    // Поток не прерываем: прерывание посреди записи закрывает файл базы H2 — ждём, пока он сам разберёт очередь
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+
+        running = false;
+        flusher.join();
+        flusher = null;
+
+        // события, успевшие попасть в очередь уже после выхода потока
+        List<Feed> rest = new ArrayList<>();
+        while (queue.drainTo(rest, batchSize) > 0) {
+            flush(rest);
+            rest.clear();
+        }
+    }
+
+    // В выключенном режиме событие пишется сразу, в текущей транзакции — как раньше
+    public void write(Feed feed) {
+        if (!running) {
+            feedRepository.create(feed);
+            TransactionCallbacks.afterCommit(() -> feedTailCache.append(feed));
+            return;
+        }
+
+        // откатившееся действие не должно попасть в ленту
+        TransactionCallbacks.afterCommit(() -> enqueue(feed));
+    }
+
+    // Ждёт, пока запишутся события пользователя из очереди; без read-your-writes не ждёт
+    public void awaitWritten(int userId) {
+        if (!running || !readYourWrites) {
+            return;
+        }
+
+        synchronized (pending) {
+            if (!pending.containsKey(userId)) {
+                return;
+            }
+            readWaits.increment();
+
+            long deadline = System.nanoTime() + readTimeoutNanos;
+            try {
+                while (pending.containsKey(userId)) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(pending, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "feedWriter";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("readYourWrites", readYourWrites);
+        metrics.put("queued", queue.size());
+        metrics.put("accepted", accepted.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("batches", batches.sum());
+        metrics.put("failed", failed.sum());
+        metrics.put("readWaits", readWaits.sum());
+        return metrics;
+    }
+
+    private void enqueue(Feed feed) {
+        // учитываем до постановки в очередь, иначе поток может записать и «снять» событие раньше, чем оно учтено
+        changePending(feed.getUserId(), 1);
+        try {
+            if (queue.offer(feed, offerTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                accepted.increment();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        rejected.increment();
+        try {
+            feedRepository.create(feed);
+            feedTailCache.append(feed);
+        } finally {
+            changePending(feed.getUserId(), -1);
+        }
+    }
+
+    private void run() {
+        List<Feed> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                // флаг прерывания не восстанавливаем, иначе poll будет бросать снова и очередь не дописать
+                running = false;
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Ждём первое событие, затем добираем пачку, пока она не заполнится или не выйдет интервал
+    private void collect(List<Feed> batch) throws InterruptedException {
+        Feed first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            Feed next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<Feed> batch) {
+        try {
+            writeBatch(batch);
+        } catch (RuntimeException e) {
+            // Одно битое событие (например, пользователь уже удалён) не должно терять всю пачку
+            log.warn("Пачка событий ленты не записана ({} шт.), пишем по одному: {}", batch.size(), e.getMessage());
+            for (Feed feed : batch) {
+                try {
+                    writeBatch(List.of(feed));
+                } catch (RuntimeException single) {
+                    failed.increment();
+                    log.warn("Событие ленты пользователя {} не записано: {}", feed.getUserId(), single.getMessage());
+                }
+            }
+        } finally {
+            for (Feed feed : batch) {
+                changePending(feed.getUserId(), -1);
+            }
+        }
+    }
+
+    private void writeBatch(List<Feed> batch) {
+        transactionTemplate.executeWithoutResult(status -> feedRepository.createAll(batch));
+        // id событий пачки неизвестны — хвосты ленты этих пользователей перечитаются
+        for (Feed feed : batch) {
+            feedTailCache.invalidate(feed.getUserId());
+        }
+        batches.increment();
+    }
+
+    private void changePending(int userId, int delta) {
+        synchronized (pending) {
+            if (pending.merge(userId, delta, Integer::sum) == 0) {
+                pending.remove(userId);
+                pending.notifyAll();
+            }
+        }
+    }
+}
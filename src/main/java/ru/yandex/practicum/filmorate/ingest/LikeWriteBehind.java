@@ -0,0 +1,287 @@
+package ru.yandex.practicum.filmorate.ingest;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.cache.FeedTailCache;
+import ru.yandex.practicum.filmorate.dal.FeedStorage;
+import ru.yandex.practicum.filmorate.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.exceptions.exceptions.InternalServerException;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Отложенная пакетная запись лайков и их событий ленты (включается filmorate.likes.write-behind.enabled).
+// Нажатия копятся в ограниченной очереди; фоновый поток забирает пачку (до batch-size штук или
+// flush-interval ожидания), схлопывает повторные нажатия одной пары (фильм, пользователь) до итогового
+// состояния и пишет likes, likes_count и feeds одной транзакцией через batchUpdate.
+// События ленты не схлопываются: лента — история действий, каждое нажатие в ней остаётся.
+// Если очередь полна, offer ждёт места: синхронная запись в обход очереди могла бы обогнать
+// ещё не записанные нажатия той же пары и оставить в базе не последнее действие пользователя.
+// Итог последнего ещё не записанного нажатия пары виден через isLiked — сервис проверяет по нему снятие лайка.
+@Slf4j
+@Component
+public class LikeWriteBehind implements MetricsSource {
+    private final FilmStorage filmRepository;
+    private final FeedStorage feedRepository;
+    private final FeedTailCache feedTailCache;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final LikesIndex likesIndex;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+    private final long flushIntervalNanos;
+    private final int batchSize;
+    private final BlockingQueue<LikeCommand> queue;
+    // последнее ещё не записанное нажатие каждой пары
+    private final Map<Long, LikeCommand> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public LikeWriteBehind(FilmStorage filmRepository,
+                           FeedStorage feedRepository,
+                           FeedTailCache feedTailCache,
+                           PopularityLeaderboard popularityLeaderboard,
+                           LikesIndex likesIndex,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                           @Value("${filmorate.likes.write-behind.flush-interval:200ms}") Duration flushInterval,
+                           @Value("${filmorate.likes.write-behind.batch-size:500}") int batchSize,
+                           @Value("${filmorate.likes.write-behind.queue-capacity:10000}") int queueCapacity) {
+        this.filmRepository = filmRepository;
+        this.feedRepository = feedRepository;
+        this.feedTailCache = feedTailCache;
+        this.popularityLeaderboard = popularityLeaderboard;
+        this.likesIndex = likesIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        running = true;
+        flusher = new Thread(this::run, "likes-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Отложенная запись лайков включена: пачка до {}, интервал {} мс, очередь {}",
+                batchSize, TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos), queue.remainingCapacity());
+    }
+
+    // При остановке приложения дописываем всё, что осталось в очереди.
+    // Поток не прерываем: прерывание посреди записи закрывает файл базы H2 — ждём, пока он сам разберёт очередь
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+
+        running = false;
+        flusher.join();
+        flusher = null;
+
+        // нажатия, успевшие попасть в очередь уже после выхода потока
+        List<LikeCommand> rest = new ArrayList<>();
+        while (queue.drainTo(rest, batchSize) > 0) {
+            flush(rest);
+            rest.clear();
+        }
+    }
+
+    // false — режим выключен или остановлен: лайк нужно записать синхронно
+    public boolean offer(int filmId, int userId, boolean liked, Feed feed) {
+        if (!running) {
+            return false;
+        }
+
+        LikeCommand command = new LikeCommand(filmId, userId, liked, feed);
+        pending.put(pairKey(filmId, userId), command);
+        try {
+            if (!queue.offer(command)) {
+                blocked.increment();
+                queue.put(command);
+            }
+        } catch (InterruptedException e) {
+            forget(command);
+            Thread.currentThread().interrupt();
+            throw new InternalServerException("Лайк не записан: ожидание очереди прервано");
+        }
+
+        accepted.increment();
+        return true;
+    }
+
+    // Стоит ли лайк с учётом нажатий, которые ещё ждут записи в очереди
+    public boolean isLiked(int filmId, int userId) {
+        LikeCommand queued = pending.get(pairKey(filmId, userId));
+        return queued != null ? queued.liked() : likesIndex.isLiked(filmId, userId);
+    }
+
+    @Override
+    public String name() {
+        return "likesWriteBehind";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("queued", queue.size());
+        metrics.put("accepted", accepted.sum());
+        metrics.put("pendingPairs", pending.size());
+        metrics.put("blocked", blocked.sum());
+        metrics.put("coalesced", coalesced.sum());
+        metrics.put("batches", batches.sum());
+        metrics.put("failed", failed.sum());
+        return metrics;
+    }
+
+    private void run() {
+        List<LikeCommand> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                // флаг прерывания не восстанавливаем, иначе poll будет бросать снова и очередь не дописать
+                running = false;
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Ждём первое нажатие, затем добираем пачку, пока она не заполнится или не выйдет интервал
+    private void collect(List<LikeCommand> batch) throws InterruptedException {
+        LikeCommand first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            LikeCommand next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<LikeCommand> batch) {
+        try {
+            write(batch);
+        } catch (RuntimeException e) {
+            // Одна битая запись (например, фильм или пользователь уже удалены) не должна терять всю пачку
+            log.warn("Пачка лайков не записана ({} шт.), пишем по одному: {}", batch.size(), e.getMessage());
+            for (LikeCommand command : batch) {
+                try {
+                    write(List.of(command));
+                } catch (RuntimeException single) {
+                    failed.increment();
+                    log.warn("Лайк фильма {} пользователем {} не записан: {}",
+                            command.filmId(), command.userId(), single.getMessage());
+                }
+            }
+        } finally {
+            // индекс лайков уже знает итог пары; более позднее нажатие той же пары остаётся ждать своей пачки
+            for (LikeCommand command : batch) {
+                forget(command);
+            }
+        }
+    }
+
+    private void write(List<LikeCommand> batch) {
+        // Итоговое состояние каждой пары в порядке первого появления
+        Map<Long, LikeChange> changes = new LinkedHashMap<>();
+        List<Feed> feeds = new ArrayList<>(batch.size());
+        for (LikeCommand command : batch) {
+            LikeChange previous = changes.put(pairKey(command.filmId(), command.userId()), LikeChange.builder()
+                    .filmId(command.filmId())
+                    .userId(command.userId())
+                    .liked(command.liked())
+                    .build());
+            if (previous != null) {
+                coalesced.increment();
+            }
+            feeds.add(command.feed());
+        }
+
+        Map<Integer, Integer> deltas = transactionTemplate.execute(status -> {
+            Map<Integer, Integer> applied = filmRepository.applyLikeChanges(changes.values());
+            feedRepository.createAll(feeds);
+            return applied;
+        });
+
+        // Рейтинг и индекс лайков в памяти меняем только после коммита.
+        // Итог пары в базе совпадает с liked, а операции индекса идемпотентны — повтор или пустое снятие ничего не меняют
+        if (deltas != null) {
+            deltas.forEach(popularityLeaderboard::changeLikes);
+        }
+        for (LikeChange change : changes.values()) {
+            if (change.isLiked()) {
+                likesIndex.addLike(change.getFilmId(), change.getUserId());
+            } else {
+                likesIndex.removeLike(change.getFilmId(), change.getUserId());
+            }
+        }
+        // события ленты записаны пачкой без id
+        for (Feed feed : feeds) {
+            feedTailCache.invalidate(feed.getUserId());
+        }
+        batches.increment();
+    }
+
+    // Снимаем из ожидающих именно это нажатие. remove(key, value) сравнивает записи по equals,
+    // и уже записанное нажатие сняло бы равное ему более позднее, которое ещё стоит в очереди
+    private void forget(LikeCommand command) {
+        pending.computeIfPresent(pairKey(command.filmId(), command.userId()),
+                (key, queued) -> queued == command ? null : queued);
+    }
+
+    private static long pairKey(int filmId, int userId) {
+        return ((long) filmId << 32) | (userId & 0xFFFFFFFFL);
+    }
+
+    private record LikeCommand(int filmId, int userId, boolean liked, Feed feed) {
+    }
+}
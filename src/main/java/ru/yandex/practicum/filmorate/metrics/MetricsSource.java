@@ -0,0 +1,10 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import java.util.Map;
+
+// Компонент, чьи счётчики отдаются на /metrics под именем name()
+public interface MetricsSource {
+    String name();
+
+    Map<String, Object> metrics();
+}
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// Облегчённое представление фильма для построения рейтингов в памяти
+@Data
+@Builder
+public class FilmPopularity {
+    private int filmId;
+    private int likesCount;
+    private Integer releaseYear;
+
+    @Builder.Default
+    private Set<Integer> genreIds = new HashSet<>();
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+// Итоговое состояние лайка пары (фильм, пользователь) после схлопывания нажатий в пачке
+@Data
+@Builder
+public class LikeChange {
+    private int filmId;
+    private int userId;
+    private boolean liked;
+}
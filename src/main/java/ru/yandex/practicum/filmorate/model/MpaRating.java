@@ -2,13 +2,16 @@ package ru.yandex.practicum.filmorate.model;
 
 import jakarta.validation.constraints.NotBlank;
 import lombok.Builder;
-import lombok.Data;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
 
-@Data
+// Неизменяемый: справочник раздаёт общие экземпляры (см. ReferenceDataRegistry)
+@Value
 @Builder
+@Jacksonized
 public class MpaRating {
-    private Integer id;
+    Integer id;
 
     @NotBlank
-    private String name;
+    String name;
 }
\ No newline at end of file
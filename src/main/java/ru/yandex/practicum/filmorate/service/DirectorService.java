@@ -2,9 +2,13 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
 import ru.yandex.practicum.filmorate.dal.DirectorStorage;
 import ru.yandex.practicum.filmorate.exceptions.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.index.DirectorFilmsIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.model.Director;
 
 import java.util.Collection;
@@ -14,6 +18,9 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class DirectorService {
     private final DirectorStorage directorRepository;
+    private final FilmCache filmCache;
+    private final FilmSearchIndex filmSearchIndex;
+    private final DirectorFilmsIndex directorFilmsIndex;
 
     public Collection<Director> findAll() {
         return directorRepository.findAll();
@@ -24,22 +31,34 @@ public class DirectorService {
                 .orElseThrow(() -> new NotFoundException("Режиссёр с id = " + id + " не найден"));
     }
 
+    @Transactional
     public Director create(Director director) {
-        return directorRepository.create(director);
+        Director createdDirector = directorRepository.create(director);
+        filmSearchIndex.putDirector(createdDirector.getId(), createdDirector.getName());
+        return createdDirector;
     }
 
+    @Transactional
     public Director update(Director newDirector) {
         directorRepository.getDirectorById(newDirector.getId())
                 .orElseThrow(() -> new NotFoundException("Данные не обновлены. Режиссёр с id=" + newDirector.getId() + " не найден"));
 
-        return directorRepository.update(newDirector);
+        Director updatedDirector = directorRepository.update(newDirector);
+        // имя режиссёра входит в закэшированные карточки его фильмов
+        filmCache.invalidateDirector(updatedDirector.getId());
+        filmSearchIndex.putDirector(updatedDirector.getId(), updatedDirector.getName());
+        return updatedDirector;
     }
 
+    @Transactional
     public void delete(int id) {
         directorRepository.getDirectorById(id)
                 .orElseThrow(() -> new NotFoundException("Данные не удалены. Режиссёр с id=" + id + " не найден"));
 
         directorRepository.delete(id);
+        filmCache.invalidateDirector(id);
+        filmSearchIndex.removeDirector(id);
+        directorFilmsIndex.removeDirector(id);
     }
 
 }
@@ -4,27 +4,65 @@ import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
-import ru.yandex.practicum.filmorate.dal.UserStorage;
+import ru.yandex.practicum.filmorate.cache.FeedTailCache;
 import ru.yandex.practicum.filmorate.dal.dBStorage.FeedDBRepository;
+import ru.yandex.practicum.filmorate.dto.Page;
+import ru.yandex.practicum.filmorate.dto.PageCursor;
 import ru.yandex.practicum.filmorate.exceptions.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.index.LiveIdRegistry;
+import ru.yandex.practicum.filmorate.ingest.FeedWriter;
 import ru.yandex.practicum.filmorate.model.Feed;
 
 import java.util.Collection;
+import java.util.List;
 
 @Validated
 @RequiredArgsConstructor
 @Service
 public class FeedService {
     private final FeedDBRepository feedRepository;
-    private final UserStorage userRepository;
+    private final LiveIdRegistry liveIdRegistry;
+    private final FeedWriter feedWriter;
+    private final FeedTailCache feedTailCache;
 
     public Collection<Feed> findFeeds(@NotNull Integer userId) {
-        userRepository.getUserById(userId)
-                .orElseThrow(() -> new NotFoundException("Операция не выполнена. Пользователь с id=" + userId + " не найден"));
+        validateUser(userId);
+        // события пользователя, ещё стоящие в очереди записи, должны попасть в ответ
+        feedWriter.awaitWritten(userId);
         return feedRepository.getAllFeedById(userId);
     }
 
+    public Page<Feed> findFeedPage(@NotNull Integer userId, String after, int limit) {
+        validateUser(userId);
+
+        long afterTime = Long.MIN_VALUE;
+        int afterEventId = 0;
+        if (after != null) {
+            long[] keys = PageCursor.decode(after, 2);
+            afterTime = keys[0];
+            afterEventId = (int) keys[1];
+        }
+
+        feedWriter.awaitWritten(userId);
+        List<Feed> rows = feedRepository.getFeedPage(userId, afterTime, afterEventId, limit + 1);
+        return Page.of(rows, limit, feed -> PageCursor.encode(feed.getTimestamp(), feed.getEventId()));
+    }
+
+    // Новые события после since (event_id последнего полученного); свежий хвост ленты отдаётся из памяти
+    public List<Feed> findFeedSince(@NotNull Integer userId, long since, int limit) {
+        validateUser(userId);
+
+        feedWriter.awaitWritten(userId);
+        return feedTailCache.findSince(userId, since, limit);
+    }
+
     public Feed create(Feed feed) {
         return feedRepository.create(feed);
     }
+
+    private void validateUser(int userId) {
+        if (!liveIdRegistry.userExists(userId)) {
+            throw new NotFoundException("Операция не выполнена. Пользователь с id=" + userId + " не найден");
+        }
+    }
 }
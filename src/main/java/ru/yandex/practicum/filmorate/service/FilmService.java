@@ -3,14 +3,33 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
+import ru.yandex.practicum.filmorate.cache.SearchResultCache;
 import ru.yandex.practicum.filmorate.dal.*;
+import ru.yandex.practicum.filmorate.dto.FilmSuggestionDTO;
+import ru.yandex.practicum.filmorate.dto.Page;
+import ru.yandex.practicum.filmorate.dto.PageCursor;
 import ru.yandex.practicum.filmorate.exceptions.exceptions.ConditionsNotMetException;
 import ru.yandex.practicum.filmorate.exceptions.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.index.DirectorFilmsIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.index.FuzzySearchIndex;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.LiveIdRegistry;
+import ru.yandex.practicum.filmorate.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.index.RecommendationRefresher;
+import ru.yandex.practicum.filmorate.index.ReviewTopK;
+import ru.yandex.practicum.filmorate.ingest.FeedWriter;
+import ru.yandex.practicum.filmorate.ingest.LikeWriteBehind;
 import ru.yandex.practicum.filmorate.model.*;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static ru.yandex.practicum.filmorate.model.FeedOperation.ADD;
@@ -27,19 +46,36 @@ public class FilmService {
     private final MpaRatingStorage mpaRatingRepository;
     private final GenreStorage genreRepository;
     private final DirectorStorage directorRepository;
-    private final FeedStorage feedRepository;
-
+    private final FeedWriter feedWriter;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final FilmCache filmCache;
+    private final LikeWriteBehind likeWriteBehind;
+    private final LikesIndex likesIndex;
+    private final RecommendationRefresher recommendationRefresher;
+    private final FilmSearchIndex filmSearchIndex;
+    private final FilmSuggestIndex filmSuggestIndex;
+    private final FuzzySearchIndex fuzzySearchIndex;
+    private final SearchResultCache searchResultCache;
+    private final DirectorFilmsIndex directorFilmsIndex;
+    private final LiveIdRegistry liveIdRegistry;
+    private final ReviewTopK reviewTopK;
+
+    // Списки фильмов хранилище отдаёт уже с жанрами и режиссёрами (один запрос на список)
     public Collection<Film> findAll() {
-        Collection<Film> films = filmRepository.findAll();
+        return filmRepository.findAll();
+    }
 
-        // Подгружаем жанры для всех фильмов
-        loadGenresForFilms(films);
+    public Page<Film> findPage(String after, int limit) {
+        int afterId = after == null ? 0 : (int) PageCursor.decode(after, 1)[0];
+        List<Film> rows = filmRepository.findPage(afterId, limit + 1);
+        return Page.of(rows, limit, film -> PageCursor.encode(film.getId()));
+    }
 
-        // Подгружаем режиссёров для всех фильмов
-        loadDirectorsForFilms(films);
-        return films;
+    public void streamAll(Consumer<Film> consumer) {
+        filmRepository.streamAll(consumer);
     }
 
+    @Transactional
     public Film create(Film newFilm) {
         // Приходит film без id, в поле mpa только id
         MpaRating rating = mpaRatingRepository.getMpaRatingById(newFilm.getMpa().getId())
@@ -56,6 +92,7 @@ public class FilmService {
 
         // сохраняем фильм в базу, получаем его id
         Film film = filmRepository.create(newFilm);
+        liveIdRegistry.filmCreated(film.getId());
 
         // сохраняем все связи жанров с фильмом
         if (newFilm.getGenres() == null) {
@@ -75,12 +112,18 @@ public class FilmService {
             directorRepository.saveFilmDirectors(film.getId(), film.getDirectors());
         }
 
+        popularityLeaderboard.addFilm(film);
+        filmSearchIndex.putFilm(film);
+        directorFilmsIndex.putFilm(film);
+
         return film;
     }
 
+    @Transactional
     public Film update(Film newFilm) {
-        filmRepository.getFilmById(newFilm.getId())
-                .orElseThrow(() -> new NotFoundException("Данные не обновлены. Фильм с id=" + newFilm.getId() + " не найден"));
+        if (!liveIdRegistry.filmExists(newFilm.getId())) {
+            throw new NotFoundException("Данные не обновлены. Фильм с id=" + newFilm.getId() + " не найден");
+        }
 
         // проверяем жанры фильма на существование в базе
         validateGenres(newFilm.getGenres());
@@ -93,6 +136,8 @@ public class FilmService {
             newFilm.setGenres(new HashSet<>());
         } else {
             genreRepository.saveFilmGenres(newFilm.getId(), newFilm.getGenres());
+            // жанры уже записаны: карточка в кэше устарела, даже если дальше обновление сорвётся
+            filmCache.invalidate(newFilm.getId());
         }
 
         // сохраняем все связи режиссеров с фильмом
@@ -103,43 +148,47 @@ public class FilmService {
             directorRepository.saveFilmDirectors(newFilm.getId(), newFilm.getDirectors());
         }
 
-        return filmRepository.update(newFilm);
+        Film updatedFilm = filmRepository.update(newFilm);
+        popularityLeaderboard.updateFilm(updatedFilm);
+        filmSearchIndex.putFilm(updatedFilm);
+        directorFilmsIndex.putFilm(updatedFilm);
+        // сброс после сохранения жанров, режиссёров и самого фильма
+        filmCache.invalidate(updatedFilm.getId());
+
+        return updatedFilm;
     }
 
+    @Transactional
     public void delete(int id) {
-        filmRepository.getFilmById(id)
-                .orElseThrow(() -> new NotFoundException("Данные не удалены. Фильм с id=" + id + " не найден"));
+        if (!liveIdRegistry.filmExists(id)) {
+            throw new NotFoundException("Данные не удалены. Фильм с id=" + id + " не найден");
+        }
 
         filmRepository.delete(id);
+        liveIdRegistry.filmDeleted(id);
+        popularityLeaderboard.removeFilm(id);
+        likesIndex.removeFilm(id);
+        filmSearchIndex.removeFilm(id);
+        directorFilmsIndex.removeFilm(id);
+        filmCache.invalidate(id);
+        // отзывы фильма удалены каскадом
+        reviewTopK.reviewsCascaded();
     }
 
+    // Карточка фильма читается через кэш; при промахе фильм с жанрами и режиссёрами загружается одним запросом
     public Film getFilmById(int id) {
-        Film film = filmRepository.getFilmById(id).orElseThrow(() -> new NotFoundException("Фильм с id = " + id + " не найден"));
-
-        // Загружаем жанры
-        Set<Genre> genres = new HashSet<>(genreRepository.getFilmGenresByFilmId(id));
-        film.setGenres(genres);
-
-        // Загружаем режиссеров
-        Set<Director> directors = new HashSet<>(directorRepository.getFilmDirectorsByFilmId(id));
-        film.setDirectors(directors);
-
-        return film;
+        return filmCache.get(id, () -> filmRepository.findByIds(List.of(id)).stream()
+                .findFirst()
+                .orElseThrow(() -> new NotFoundException("Фильм с id = " + id + " не найден")));
     }
 
     public Collection<Film> getCommonFilms(int userId, int friendId) {
         validateUser(userId);
         validateUser(friendId);
 
-        Collection<Film> commonFilms = filmRepository.getCommonFilms(userId, friendId);
-
-        // Подгружаем жанры для всех фильмов
-        loadGenresForFilms(commonFilms);
-
-        // Подгружаем режиссёров для всех фильмов
-        loadDirectorsForFilms(commonFilms);
-
-        return commonFilms;
+        // пересечение лайков и порядок — по индексу в памяти, из базы читаются только сами фильмы
+        List<Integer> filmIds = Arrays.stream(likesIndex.commonFilms(userId, friendId)).boxed().toList();
+        return filmRepository.findByIds(filmIds);
     }
 
     public Collection<Film> findMostPopularFilms(int count, Integer genreId, Integer year) {
@@ -149,19 +198,16 @@ public class FilmService {
                     .orElseThrow(() -> new NotFoundException("Жанр с id=" + genreId + " не найден"));
         }
 
-        // Получаем фильмы с фильтрацией
-        Collection<Film> films = filmRepository.findMostPopular(count, genreId, year);
-
-        // Загружаем жанры и режиссеров
-        loadGenresForFilms(films);
-        loadDirectorsForFilms(films);
-
-        return films;
+        // Порядок берём из рейтинга в памяти, из базы только читаем найденные фильмы по id
+        List<Integer> filmIds = popularityLeaderboard.top(count, genreId, year);
+        return filmRepository.findByIds(filmIds);
     }
 
+    // Без общей транзакции: в режиме отложенной записи offer может ждать места в очереди, и держать
+    // всё это время соединение нельзя — фоновому потоку оно нужно, чтобы очередь разобрать.
+    // Синхронная запись лайка и счётчика — одна транзакция внутри FilmStorage.addLike, индексы меняются после неё
     public void addLike(int filmId, int userId) {
         validateLikeFilmData(filmId, userId);
-        filmRepository.addLike(filmId, userId);
 
         Feed createdFeed = Feed.builder()
                 .timestamp(Instant.now().toEpochMilli())
@@ -171,12 +217,26 @@ public class FilmService {
                 .entityId(filmId)
                 .build();
 
-        feedRepository.create(createdFeed);
+        // в режиме отложенной записи лайк и событие уходят в очередь и пишутся пачкой
+        if (likeWriteBehind.offer(filmId, userId, true, createdFeed)) {
+            return;
+        }
+
+        if (filmRepository.addLike(filmId, userId)) {
+            popularityLeaderboard.changeLikes(filmId, 1);
+            likesIndex.addLike(filmId, userId);
+        }
+        feedWriter.write(createdFeed);
     }
 
+    // Без общей транзакции — см. addLike
     public void removeLike(int filmId, int userId) {
         validateLikeFilmData(filmId, userId);
-        filmRepository.removeLike(filmId, userId);
+
+        // снять можно только поставленный лайк — в обоих режимах записи, с учётом нажатий, ещё ждущих в очереди
+        if (!likeWriteBehind.isLiked(filmId, userId)) {
+            throw new NotFoundException("Лайк фильму с id = " + filmId + " от пользователя с id = " + userId + " не найден");
+        }
 
         Feed createdFeed = Feed.builder()
                 .timestamp(Instant.now().toEpochMilli())
@@ -186,7 +246,23 @@ public class FilmService {
                 .entityId(filmId)
                 .build();
 
-        feedRepository.create(createdFeed);
+        if (likeWriteBehind.offer(filmId, userId, false, createdFeed)) {
+            return;
+        }
+
+        filmRepository.removeLike(filmId, userId);
+        popularityLeaderboard.changeLikes(filmId, -1);
+        likesIndex.removeLike(filmId, userId);
+        feedWriter.write(createdFeed);
+    }
+
+    // Снимает все лайки пользователя перед его удалением, чтобы счётчики фильмов остались верными
+    @Transactional
+    public void removeUserLikes(int userId) {
+        for (int filmId : filmRepository.removeUserLikes(userId)) {
+            popularityLeaderboard.changeLikes(filmId, -1);
+        }
+        likesIndex.removeUser(userId);
     }
 
     public Collection<Film> findByDirectorId(int directorId, SortOrder sortOrder) {
@@ -195,32 +271,22 @@ public class FilmService {
         directorRepository.getDirectorById(directorId)
                 .orElseThrow(() -> new NotFoundException("Режиссер с id = " + directorId + " не найден"));
 
-        // Получаем фильмы с сортировкой
-        Collection<Film> films = filmRepository.findByDirectorId(
-                directorId,
-                sortOrder
-        );
-
-        // Загружаем жанры и режиссеров для найденных фильмов
-        loadGenresForFilms(films);
-        loadDirectorsForFilms(films);
-
-        return films;
+        // Порядок фильмов готов в памяти, из базы читаются только сами фильмы
+        return filmRepository.findByIds(directorFilmsIndex.filmIds(directorId, sortOrder));
     }
 
+    // id рекомендованных фильмов заранее посчитаны в фоне (или считаются по индексу в памяти), из базы читаются только сами фильмы
     public Collection<Film> getRecommendations(int userId) {
-        Collection<Film> recomendations = filmRepository.getRecomendations(userId);
-        loadGenresForFilms(recomendations);
-        loadDirectorsForFilms(recomendations);
-
-        return recomendations;
+        return filmRepository.findByIds(recommendationRefresher.recommend(userId));
     }
 
+    // Существование проверяется по реестру id в памяти, без чтения строк
     private void validateLikeFilmData(int filmId, int userId) {
         validateUser(userId);
 
-        filmRepository.getFilmById(filmId)
-                .orElseThrow(() -> new NotFoundException("Фильм с id = " + filmId + " не найден"));
+        if (!liveIdRegistry.filmExists(filmId)) {
+            throw new NotFoundException("Фильм с id = " + filmId + " не найден");
+        }
     }
 
     private void validateGenres(Set<Genre> genres) {
@@ -228,12 +294,9 @@ public class FilmService {
             return;
         }
 
-        Set<Integer> existingGenreIds = genreRepository.findAll().stream()
-                .map(Genre::getId)
-                .collect(Collectors.toSet());
-
+        // справочник жанров в памяти — проверка без запросов к базе
         for (Genre genre : genres) {
-            if (!existingGenreIds.contains(genre.getId())) {
+            if (genre.getId() == null || genreRepository.getGenreById(genre.getId()).isEmpty()) {
                 throw new ConditionsNotMetException("Жанр с id = " + genre.getId() + " не найден");
             }
         }
@@ -263,65 +326,42 @@ public class FilmService {
         }
     }
 
-    private void loadDirectorsForFilms(Collection<Film> films) {
-        if (films == null || films.isEmpty()) {
-            return;
-        }
-
-        // Получаем ID всех фильмов
-        Set<Integer> filmIds = films.stream()
-                .map(Film::getId)
-                .collect(Collectors.toSet());
-
-        // Пакетный запрос (один запрос сразу для всех требуемых фильмов, чтобы не в цикле перебирать)
-        Map<Integer, Set<Director>> directorsByFilmId = directorRepository.getFilmDirectorsForFilms(filmIds);
-
-        // Перебираем фильмы и назначаем режиссёров
-        for (Film film : films) {
-            Set<Director> directors = directorsByFilmId.getOrDefault(film.getId(), new HashSet<>());
-            film.setDirectors(directors);
+    private void validateUser(int userId) {
+        if (!liveIdRegistry.userExists(userId)) {
+            throw new NotFoundException("Пользователь с id=" + userId + " не найден");
         }
     }
 
-    private void loadGenresForFilms(Collection<Film> films) {
-        if (films == null || films.isEmpty()) {
-            return;
-        }
-
-        // Получаем ID всех фильмов
-        Set<Integer> filmIds = films.stream()
-                .map(Film::getId)
-                .collect(Collectors.toSet());
-
-        // Пакетный запрос (один запрос сразу для всех требуемых фильмов)
-        Map<Integer, Set<Genre>> genresByFilmId = genreRepository.getFilmGenresForFilms(filmIds);
-
-        // Перебираем фильмы и назначаем жанры
-        for (Film film : films) {
-            Set<Genre> genres = genresByFilmId.getOrDefault(film.getId(), new TreeSet<>(Comparator.comparing(Genre::getId)));
-
-            Set<Genre> sortedGenres = new TreeSet<>(Comparator.comparing(Genre::getId)); // для кривых тестов
-            sortedGenres.addAll(genres);
-            film.setGenres(sortedGenres);
-
+    // Поиск и порядок по лайкам — по индексу в памяти, из базы читаются только найденные фильмы.
+    // С fuzzy найдутся и слова с опечатками: сначала точные совпадения, дальше по числу правок
+    public Collection<Film> searchFilms(String query, SearchBy searchBy, boolean fuzzy) {
+        if (query == null || query.isBlank()) {
+            return List.of();
         }
-    }
 
-    private User validateUser(int userId) {
-        return userRepository.getUserById(userId)
-                .orElseThrow(() -> new NotFoundException("Пользователь с id=" + userId + " не найден"));
+        int[] found = fuzzy
+                ? fuzzySearchIndex.search(query.trim(), searchBy)
+                : searchResultCache.search(query.trim(), searchBy);
+        List<Integer> filmIds = Arrays.stream(found).boxed().toList();
+        return filmRepository.findByIds(filmIds);
     }
 
-    public Collection<Film> searchFilms(String query, SearchBy searchBy) {
-        if (query == null || query.isBlank()) {
-            return List.of();
+    // Подсказки при наборе целиком из памяти: только id и название, без обращения к базе
+    // Подсказок в узле дерева не больше top-k, поэтому больший limit не выполнить
+    public List<FilmSuggestionDTO> suggest(String prefix, int limit) {
+        if (limit > filmSuggestIndex.topK()) {
+            throw new ValidationException("limit", limit,
+                    "Подсказок можно запросить не больше " + filmSuggestIndex.topK());
         }
 
-        Collection<Film> films = filmRepository.searchFilms(query.trim(), searchBy);
-        loadGenresForFilms(films);
-        loadDirectorsForFilms(films);
-
-        return films;
+        List<FilmSuggestionDTO> suggestions = new ArrayList<>();
+        for (int filmId : filmSuggestIndex.suggest(prefix, limit)) {
+            String title = filmSuggestIndex.title(filmId);
+            if (title != null) {
+                suggestions.add(FilmSuggestionDTO.builder().id(filmId).name(title).build());
+            }
+        }
+        return suggestions;
     }
 
 }
\ No newline at end of file
@@ -4,11 +4,16 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dal.FriendshipStorage;
 import ru.yandex.practicum.filmorate.dal.UserStorage;
 import ru.yandex.practicum.filmorate.dto.UserDTO;
 import ru.yandex.practicum.filmorate.exceptions.exceptions.InternalServerException;
 import ru.yandex.practicum.filmorate.exceptions.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.FriendPathFinder;
+import ru.yandex.practicum.filmorate.index.FriendSuggestions;
+import ru.yandex.practicum.filmorate.index.LiveIdRegistry;
 import ru.yandex.practicum.filmorate.mapper.UserMapper;
 import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.FriendshipStatus;
@@ -22,7 +27,12 @@ import java.util.List;
 public class FriendshipService {
     private final FriendshipStorage friendshipRepository;
     private final UserStorage userRepository;
+    private final FriendGraph friendGraph;
+    private final FriendSuggestions friendSuggestions;
+    private final FriendPathFinder friendPathFinder;
+    private final LiveIdRegistry liveIdRegistry;
 
+    @Transactional
     public Friendship addToFriends(int userId, int friendId) {
 
         validateUsersExist(userId, friendId);
@@ -33,19 +43,24 @@ public class FriendshipService {
                 .status(FriendshipStatus.PENDING)
                 .build();
 
-        return friendshipRepository.create(friendship);
+        Friendship created = friendshipRepository.create(friendship);
+        friendGraph.addFriend(userId, friendId);
+        return created;
     }
 
+    @Transactional
     public void removeFromFriends(int userId, int friendId) {
         validateUsersExist(userId, friendId);
 
         friendshipRepository.removeFromFriends(userId, friendId);
+        friendGraph.removeFriend(userId, friendId);
     }
 
     public List<UserDTO> getUserFriends(int userId) {
         validateUsersExist(userId);
 
-        List<User> friends = friendshipRepository.getUserFriends(userId);
+        // id друзей из графа в памяти, сами пользователи — одним запросом
+        List<User> friends = userRepository.findByIds(friendGraph.friendsOf(userId));
         return friends.stream()
                 .map(UserMapper::mapToUserDto)
                 .toList();
@@ -54,7 +69,26 @@ public class FriendshipService {
     public List<User> findCommonFriends(int userA, int userB) {
         validateUsersExist(userA, userB);
 
-        return friendshipRepository.findCommonFriends(userA, userB);
+        return userRepository.findByIds(friendGraph.commonFriends(userA, userB));
+    }
+
+    // Друзья друзей по числу общих друзей
+    public List<UserDTO> getFriendSuggestions(int userId, int count) {
+        validateUsersExist(userId);
+
+        return userRepository.findByIds(friendSuggestions.suggest(userId, count)).stream()
+                .map(UserMapper::mapToUserDto)
+                .toList();
+    }
+
+    // Кратчайшая цепочка дружбы от userId до otherId включительно; пустой список — цепочки не длиннее maxDepth нет
+    public List<UserDTO> findPath(int userId, int otherId, Integer maxDepth) {
+        validateUsersExist(userId, otherId);
+
+        int depth = maxDepth == null ? friendPathFinder.maxDepth() : maxDepth;
+        return userRepository.findByIds(friendPathFinder.findPath(userId, otherId, depth)).stream()
+                .map(UserMapper::mapToUserDto)
+                .toList();
     }
 
     private void validateUsersExist(int... userIds) {
@@ -62,10 +96,8 @@ public class FriendshipService {
             throw new InternalServerException("Список ID пользователей не может быть пустым");
         }
 
-        List<Integer> correctIds = userRepository.checkUserIds(userIds);
         for (int userId : userIds) {
-
-            if (!correctIds.contains(userId)) {
+            if (!liveIdRegistry.userExists(userId)) {
                 throw new NotFoundException("Данные не обновлены. Пользователь с id=" + userId + " не найден");
             }
         }
@@ -3,17 +3,21 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
-import ru.yandex.practicum.filmorate.dal.FeedStorage;
-import ru.yandex.practicum.filmorate.dal.FilmStorage;
 import ru.yandex.practicum.filmorate.dal.ReviewStorage;
-import ru.yandex.practicum.filmorate.dal.UserStorage;
+import ru.yandex.practicum.filmorate.dto.Page;
+import ru.yandex.practicum.filmorate.dto.PageCursor;
 import ru.yandex.practicum.filmorate.exceptions.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.index.LiveIdRegistry;
+import ru.yandex.practicum.filmorate.index.ReviewTopK;
+import ru.yandex.practicum.filmorate.ingest.FeedWriter;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Review;
 
 import java.time.Instant;
 import java.util.Collection;
+import java.util.List;
 
 import static ru.yandex.practicum.filmorate.model.FeedOperation.*;
 import static ru.yandex.practicum.filmorate.model.FeedType.REVIEW;
@@ -24,14 +28,16 @@ import static ru.yandex.practicum.filmorate.model.FeedType.REVIEW;
 @RequiredArgsConstructor
 public class ReviewService {
     private final ReviewStorage reviewRepository;
-    private final FilmStorage filmRepository;
-    private final UserStorage userRepository;
-    private final FeedStorage feedRepository;
+    private final LiveIdRegistry liveIdRegistry;
+    private final FeedWriter feedWriter;
+    private final ReviewTopK reviewTopK;
 
+    @Transactional
     public Review create(Review review) {
         checker(review.getFilmId(), review.getUserId());
 
         Review createdReview = reviewRepository.create(review);
+        reviewTopK.reviewCreated(createdReview);
 
         Feed createdFeed = Feed.builder()
                 .timestamp(Instant.now().toEpochMilli())
@@ -40,11 +46,12 @@ public class ReviewService {
                 .userId(review.getUserId())
                 .entityId(review.getReviewId())
                 .build();
-        feedRepository.create(createdFeed);
+        feedWriter.write(createdFeed);
 
         return createdReview;
     }
 
+    @Transactional
     public Review update(Review review) {
         Review uploadedReview = reviewRepository.getReviewById(review.getReviewId())
                 .orElseThrow(() -> new NotFoundException("Данные не обновлены. Отзыв с id=" + review.getReviewId() + " не найден"));
@@ -52,6 +59,7 @@ public class ReviewService {
         review.setUserId(uploadedReview.getUserId());
 
         Review updatedReview = reviewRepository.update(review);
+        reviewTopK.reviewUpdated(updatedReview);
         Feed createdFeed = Feed.builder()
                 .timestamp(Instant.now().toEpochMilli())
                 .feedType(REVIEW)
@@ -59,17 +67,19 @@ public class ReviewService {
                 .userId(review.getUserId())
                 .entityId(review.getReviewId())
                 .build();
-        feedRepository.create(createdFeed);
+        feedWriter.write(createdFeed);
 
 
         return updatedReview;
     }
 
+    @Transactional
     public void delete(Integer id) {
         Review review = reviewRepository.getReviewById(id)
                 .orElseThrow(() -> new NotFoundException("Отзыв не найден: пустой или неправильный идентификатор"));
 
         reviewRepository.delete(id);
+        reviewTopK.reviewDeleted(id);
 
         Feed createdFeed = Feed.builder()
                 .timestamp(Instant.now().toEpochMilli())
@@ -78,7 +88,7 @@ public class ReviewService {
                 .userId(review.getUserId())
                 .entityId(review.getReviewId())
                 .build();
-        feedRepository.create(createdFeed);
+        feedWriter.write(createdFeed);
     }
 
     public Review getReviewById(Integer id) {
@@ -86,25 +96,51 @@ public class ReviewService {
                 .orElseThrow(() -> new NotFoundException("Отзыв с id = " + id + " не найден"));
     }
 
+    // Общий список — из лучших отзывов в памяти
     public Collection<Review> findAll(Integer filmId, int count) {
         if (filmId == 0)
-            return reviewRepository.findAll(count);
+            return reviewTopK.findAll(count);
         return reviewRepository.getAllReviewById(filmId, count);
     }
 
+    public Page<Review> findPage(int filmId, String after, int limit) {
+        // Первая страница: начинаем «после» воображаемого отзыва с максимальной полезностью
+        int afterUseful = Integer.MAX_VALUE;
+        int afterReviewId = 0;
+        if (after != null) {
+            long[] keys = PageCursor.decode(after, 2);
+            afterUseful = (int) keys[0];
+            afterReviewId = (int) keys[1];
+        }
+
+        List<Review> rows = reviewRepository.findPage(filmId, afterUseful, afterReviewId, limit + 1);
+        return Page.of(rows, limit, review -> PageCursor.encode(review.getUseful(), review.getReviewId()));
+    }
+
+    // Лучшие отзывы в памяти обновляются в той же транзакции, пока строка отзыва заблокирована
+    @Transactional
     public void addReaction(Integer reviewId, Integer userId, Boolean isPositive) {
-        reviewRepository.addReaction(reviewId, userId, isPositive);
+        reviewRepository.addReaction(reviewId, userId, isPositive)
+                .ifPresent(useful -> reviewTopK.usefulChanged(reviewId, useful));
     }
 
+    // Снимать нечего — 404: отзыва нет или пользователь его не оценивал.
+    // Раньше снятие несуществующей оценки отвечало 200, а оценки несуществующего отзыва — 500
+    @Transactional
     public void removeReaction(Integer reviewId, Integer userId) {
-        reviewRepository.removeReaction(reviewId, userId);
+        int useful = reviewRepository.removeReaction(reviewId, userId).orElseThrow(() ->
+                reviewRepository.isNotExists(reviewId)
+                        ? new NotFoundException("Отзыв с id = " + reviewId + " не найден")
+                        : new NotFoundException("Оценка отзыва с id = " + reviewId + " от пользователя с id = "
+                        + userId + " не найдена"));
+        reviewTopK.usefulChanged(reviewId, useful);
     }
 
     private void checker(Integer filmId, Integer userId) {
-        if (filmId == null || filmRepository.getFilmById(filmId).isEmpty()) {
+        if (filmId == null || !liveIdRegistry.filmExists(filmId)) {
             throw new NotFoundException("Не найден фильм c идентификатором " + filmId);
         }
-        if (userId == null || userRepository.getUserById(userId).isEmpty()) {
+        if (userId == null || !liveIdRegistry.userExists(userId)) {
             throw new NotFoundException("Не найден пользователь с идентификатором " + userId);
         }
     }
@@ -0,0 +1,119 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.ReviewStorage;
+import ru.yandex.practicum.filmorate.index.ReviewTopK;
+import ru.yandex.practicum.filmorate.metrics.MetricsSource;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Оценки меняют reviews.useful на разницу голосов, поэтому счётчик может разойтись с review_likes
+// (ручная правка базы, сбой между запросами). Фоновая сверка идёт по отзывам диапазонами id
+// по batch-size штук, каждый диапазон — отдельный короткий UPDATE, исправляющий только разошедшиеся строки.
+@Slf4j
+@Component
+public class ReviewUsefulReconciler implements MetricsSource {
+    private final ReviewStorage reviewRepository;
+    private final ReviewTopK reviewTopK;
+    private final boolean enabled;
+    private final long intervalMillis;
+    private final int batchSize;
+
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder repaired = new LongAdder();
+    private final LongAdder failedPasses = new LongAdder();
+    private volatile int lastPassRepaired;
+
+    private ScheduledExecutorService scheduler;
+
+    public ReviewUsefulReconciler(ReviewStorage reviewRepository,
+                                  ReviewTopK reviewTopK,
+                                  @Value("${filmorate.reviews.useful-reconcile.enabled:true}") boolean enabled,
+                                  @Value("${filmorate.reviews.useful-reconcile.interval:10m}") Duration interval,
+                                  @Value("${filmorate.reviews.useful-reconcile.batch-size:1000}") int batchSize) {
+        this.reviewRepository = reviewRepository;
+        this.reviewTopK = reviewTopK;
+        this.enabled = enabled;
+        this.intervalMillis = interval.toMillis();
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "review-useful-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runPass, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Поток не прерываем (прерывание посреди записи закрывает файл базы H2), а ждём конца текущего прохода
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            scheduler = null;
+        }
+    }
+
+    // Один проход сверки; вызывается по расписанию, а в тестах — напрямую. Возвращает число исправленных отзывов
+    public int reconcile() {
+        int maxReviewId = reviewRepository.findMaxReviewId();
+        int fixed = 0;
+        for (int from = 0; from < maxReviewId; from += batchSize) {
+            fixed += reviewRepository.reconcileUseful(from, from + batchSize);
+        }
+
+        if (fixed > 0) {
+            log.warn("Полезность отзывов разошлась с оценками и исправлена: {}", fixed);
+            // лучшие отзывы в памяти могли считаться по неверным значениям
+            reviewTopK.invalidate();
+        }
+        passes.increment();
+        repaired.add(fixed);
+        lastPassRepaired = fixed;
+        return fixed;
+    }
+
+    @Override
+    public String name() {
+        return "reviewUsefulReconciler";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("passes", passes.sum());
+        metrics.put("repaired", repaired.sum());
+        metrics.put("lastPassRepaired", lastPassRepaired);
+        metrics.put("failedPasses", failedPasses.sum());
+        return metrics;
+    }
+
+    private void runPass() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            // исключение из задачи отменило бы все следующие запуски
+            failedPasses.increment();
+            log.warn("Сверка полезности отзывов не завершена: {}", e.getMessage());
+        }
+    }
+}
@@ -3,11 +3,17 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.dal.FeedStorage;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dal.UserStorage;
+import ru.yandex.practicum.filmorate.dto.Page;
+import ru.yandex.practicum.filmorate.dto.PageCursor;
 import ru.yandex.practicum.filmorate.dto.UserDTO;
-import ru.yandex.practicum.filmorate.exceptions.exceptions.DuplicatedDataException;
 import ru.yandex.practicum.filmorate.exceptions.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.LiveIdRegistry;
+import ru.yandex.practicum.filmorate.index.ReviewTopK;
+import ru.yandex.practicum.filmorate.index.UserUniquenessIndex;
+import ru.yandex.practicum.filmorate.ingest.FeedWriter;
 import ru.yandex.practicum.filmorate.mapper.UserMapper;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Film;
@@ -15,7 +21,8 @@ import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.Instant;
 import java.util.Collection;
-import java.util.Optional;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static ru.yandex.practicum.filmorate.model.FeedOperation.ADD;
@@ -29,7 +36,11 @@ public class UserService {
     private final UserStorage userRepository;
     private final FriendshipService friendshipService;
     private final FilmService filmService;
-    private final FeedStorage feedRepository;
+    private final FeedWriter feedWriter;
+    private final FriendGraph friendGraph;
+    private final LiveIdRegistry liveIdRegistry;
+    private final UserUniquenessIndex userUniquenessIndex;
+    private final ReviewTopK reviewTopK;
 
     public Collection<UserDTO> getAllUsers() {
         return userRepository.getAllUsers().stream()
@@ -37,56 +48,70 @@ public class UserService {
                 .collect(Collectors.toList());
     }
 
-    public User create(User user) {
-        Optional<User> alreadyExistUser = userRepository.findDuplicateDataUser(user.getEmail(), user.getLogin());
+    public Page<UserDTO> getUsersPage(String after, int limit) {
+        int afterId = after == null ? 0 : (int) PageCursor.decode(after, 1)[0];
+        List<UserDTO> rows = userRepository.getUsersPage(afterId, limit + 1).stream()
+                .map(UserMapper::mapToUserDto)
+                .collect(Collectors.toList());
+        return Page.of(rows, limit, user -> PageCursor.encode(user.getId()));
+    }
 
-        if (alreadyExistUser.isPresent()) {
-            User existUser = alreadyExistUser.get();
+    public void streamAllUsers(Consumer<UserDTO> consumer) {
+        userRepository.streamAllUsers(user -> consumer.accept(UserMapper.mapToUserDto(user)));
+    }
 
-            if (existUser.getLogin().equals(user.getLogin()) && existUser.getEmail().equals(user.getEmail())) {
-                throw new DuplicatedDataException("Пользователь с таким Login и Email уже зарегистрирован");
-            } else if (existUser.getLogin().equals(user.getLogin())) {
-                throw new DuplicatedDataException("Пользователь с таким Login уже зарегистрирован");
-            }
-            throw new DuplicatedDataException("Пользователь с таким Email уже зарегистрирован");
-        }
+    @Transactional
+    public User create(User user) {
+        userUniquenessIndex.checkAvailable(0, user.getLogin(), user.getEmail());
 
         if (user.getName() == null || user.getName().isBlank()) {
             log.trace("Пользователю с именем ->|{}|<- присвоено имя {}", user.getName(), user.getLogin());
             user.setName(user.getLogin());
         }
 
-        return userRepository.create(user);
+        User created = userRepository.create(user);
+        liveIdRegistry.userCreated(created.getId());
+        userUniquenessIndex.userSaved(created);
+        return created;
     }
 
+    @Transactional
     public User update(User updateUser) {
         User user = validateUser(updateUser.getId());
 
-        Optional<User> alreadyExistUser = userRepository.findDuplicateDataUser(updateUser.getEmail(), updateUser.getLogin());
+        userUniquenessIndex.checkAvailable(updateUser.getId(), updateUser.getLogin(), updateUser.getEmail());
 
-        if (alreadyExistUser.isPresent()) {
-            if (alreadyExistUser.get().getId() != updateUser.getId()) {
-                throw new DuplicatedDataException("Такой Login или Email уже используется");
-            }
-        }
         if (updateUser.getName() == null || updateUser.getName().isBlank()) {
             log.trace("Имя пользователя не обновлено: |{}|", user.getName());
             updateUser.setName(user.getName());
         }
 
-        return userRepository.update(updateUser);
+        User updated = userRepository.update(updateUser);
+        userUniquenessIndex.userSaved(updated);
+        return updated;
     }
 
+    @Transactional
     public void delete(int userId) {
-        validateUser(userId);
+        if (!liveIdRegistry.userExists(userId)) {
+            throw new NotFoundException("Пользователь с id=" + userId + " не найден");
+        }
 
+        // Лайки снимаем явно, а не каскадом, чтобы обновились счётчики лайков у фильмов
+        filmService.removeUserLikes(userId);
         userRepository.delete(userId);
+        liveIdRegistry.userDeleted(userId);
+        userUniquenessIndex.userDeleted(userId);
+        friendGraph.removeUser(userId);
+        // отзывы пользователя удалены каскадом
+        reviewTopK.reviewsCascaded();
     }
 
     public User getUserById(int userId) {
         return validateUser(userId);
     }
 
+    @Transactional
     public void addToFriends(int userId, int friendId) {
         friendshipService.addToFriends(userId, friendId);
 
@@ -98,9 +123,10 @@ public class UserService {
                 .entityId(friendId)
                 .build();
 
-        feedRepository.create(createdFeed);
+        feedWriter.write(createdFeed);
     }
 
+    @Transactional
     public void removeFromFriends(int userId, int friendId) {
         friendshipService.removeFromFriends(userId, friendId);
 
@@ -112,7 +138,7 @@ public class UserService {
                 .entityId(friendId)
                 .build();
 
-        feedRepository.create(createdFeed);
+        feedWriter.write(createdFeed);
     }
 
     public Collection<UserDTO> getUserFriends(int userId) {
@@ -123,6 +149,14 @@ public class UserService {
         return friendshipService.findCommonFriends(id, otherId);
     }
 
+    public Collection<UserDTO> getFriendSuggestions(int userId, int count) {
+        return friendshipService.getFriendSuggestions(userId, count);
+    }
+
+    public Collection<UserDTO> findPath(int userId, int otherId, Integer maxDepth) {
+        return friendshipService.findPath(userId, otherId, maxDepth);
+    }
+
     public Collection<Film> getRecommendations(int userId) {
         validateUser(userId);
 
@@ -36,9 +36,16 @@ create TABLE IF NOT EXISTS film (
     release_date DATE,
     duration INTEGER,
     rating_id INTEGER,
+    likes_count INTEGER NOT NULL DEFAULT 0, -- денормализованный счётчик лайков, обновляется вместе с таблицей likes
     FOREIGN KEY (rating_id) REFERENCES rating(rating_id)
 );
 
+-- Для баз, созданных до появления счётчика лайков
+alter TABLE film ADD COLUMN IF NOT EXISTS likes_count INTEGER NOT NULL DEFAULT 0;
+
+-- Все выборки по популярности сортируют по (likes_count DESC, film_id)
+create INDEX IF NOT EXISTS film_likes_count_idx ON film (likes_count DESC, film_id);
+
 -- И только потом создаем таблицы, которые ссылаются на users и film
 create TABLE IF NOT EXISTS likes (
     film_id INTEGER,
@@ -104,4 +111,19 @@ create TABLE IF NOT EXISTS feeds
     user_id INTEGER NOT NULL,
     entity_id INTEGER NOT NULL,
     FOREIGN KEY (user_id) REFERENCES users(user_id) ON delete CASCADE
-)
\ No newline at end of file
+);
+
+-- Ключи постраничной выдачи по курсору: (useful DESC, review_id) и (create_time, event_id) ленты пользователя
+create INDEX IF NOT EXISTS reviews_useful_idx ON reviews (useful DESC, review_id);
+create INDEX IF NOT EXISTS reviews_film_useful_idx ON reviews (film_id, useful DESC, review_id);
+create INDEX IF NOT EXISTS feeds_user_time_idx ON feeds (user_id, create_time, event_id);
+-- Опрос новых событий ленты: event_id > since
+create INDEX IF NOT EXISTS feeds_user_event_idx ON feeds (user_id, event_id);
+
+-- Заранее посчитанные рекомендации: id фильмов в порядке выдачи, таблицу в фоне заполняет RecommendationRefresher
+create TABLE IF NOT EXISTS user_recommendations (
+    user_id INTEGER PRIMARY KEY,
+    film_ids INTEGER ARRAY NOT NULL,
+    computed_at BIGINT NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES users(user_id) ON delete CASCADE
+);
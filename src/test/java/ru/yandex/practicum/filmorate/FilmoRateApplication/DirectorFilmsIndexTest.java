@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.DirectorStorage;
+import ru.yandex.practicum.filmorate.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.dal.dBStorage.DirectorDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FilmDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.index.DirectorFilmsIndex;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.SortOrder;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDBRepository.class, FilmRowMapper.class, ReferenceDataRegistry.class, LikesIndex.class,
+        DirectorDBRepository.class, DirectorRowMapper.class, DirectorFilmsIndex.class})
+@Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class DirectorFilmsIndexTest {
+    private final FilmStorage filmRepository;
+    private final DirectorStorage directorRepository;
+    private final LikesIndex likesIndex;
+    private final DirectorFilmsIndex directorFilmsIndex;
+
+    @BeforeEach
+    void setUp() {
+        filmRepository.rebuildLikesCount();
+        likesIndex.rebuild();
+        directorFilmsIndex.rebuild();
+    }
+
+    @Test
+    public void testListsMatchSqlQueries() {
+        for (int directorId = 1; directorId <= 7; directorId++) {
+            for (SortOrder sortOrder : SortOrder.values()) {
+                assertThat(directorFilmsIndex.filmIds(directorId, sortOrder))
+                        .as("режиссёр %d, порядок %s", directorId, sortOrder)
+                        .isEqualTo(filmRepository.findByDirectorId(directorId, sortOrder).stream().map(Film::getId).toList());
+            }
+        }
+    }
+
+    @Test
+    public void testListsFollowLikesAndFilmChanges() {
+        assertThat(directorFilmsIndex.filmIds(4, SortOrder.LIKES)).containsExactly(3, 5);
+
+        // у "Довода" становится 6 лайков против 5 у "Начала"
+        for (int userId = 1; userId <= 3; userId++) {
+            likesIndex.addLike(5, userId);
+        }
+        assertThat(directorFilmsIndex.filmIds(4, SortOrder.LIKES)).containsExactly(5, 3);
+        assertThat(directorFilmsIndex.filmIds(4, SortOrder.YEAR)).containsExactly(3, 5);
+
+        // "Довод" переезжает в 1990 год и получает второго режиссёра
+        Film film = filmRepository.getFilmById(5).orElseThrow();
+        film.setReleaseDate(LocalDate.of(1990, 1, 1));
+        film.setDirectors(Set.of(directorRepository.getDirectorById(3).orElseThrow(),
+                directorRepository.getDirectorById(4).orElseThrow()));
+        directorFilmsIndex.putFilm(film);
+
+        assertThat(directorFilmsIndex.filmIds(3, SortOrder.YEAR)).containsExactly(5, 2);
+        assertThat(directorFilmsIndex.filmIds(3, SortOrder.LIKES)).containsExactly(5, 2);
+        assertThat(directorFilmsIndex.filmIds(4, SortOrder.YEAR)).containsExactly(5, 3);
+
+        directorFilmsIndex.removeDirector(4);
+        assertThat(directorFilmsIndex.filmIds(4, SortOrder.LIKES)).isEmpty();
+        assertThat(directorFilmsIndex.filmIds(3, SortOrder.LIKES)).containsExactly(5, 2);
+
+        directorFilmsIndex.removeFilm(5);
+        likesIndex.removeFilm(5);
+        assertThat(directorFilmsIndex.filmIds(3, SortOrder.YEAR)).isEqualTo(List.of(2));
+    }
+}
@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.cache.FeedTailCache;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FeedDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FeedRowMapper;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.FeedOperation;
+import ru.yandex.practicum.filmorate.model.FeedType;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+class FeedTailCacheTest {
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private FeedDBRepository feedRepository;
+    private FeedTailCache cache;
+    private final List<Integer> eventIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        feedRepository = new FeedDBRepository(jdbc, new FeedRowMapper());
+        cache = new FeedTailCache(feedRepository, 3, 10);
+        for (int i = 0; i < 5; i++) {
+            eventIds.add(feedRepository.create(feed(1)).getEventId());
+        }
+    }
+
+    @Test
+    void shouldServeRecentEventsFromTailAndOlderFromDatabase() {
+        // since = 0 старше хвоста из трёх событий — ответ из базы, но хвост уже прочитан
+        assertThat(ids(cache.findSince(1, 0, 10))).isEqualTo(eventIds);
+        assertThat(ids(cache.findSince(1, eventIds.get(1), 10))).isEqualTo(eventIds.subList(2, 5));
+        assertThat(ids(cache.findSince(1, eventIds.get(2), 1))).containsExactly(eventIds.get(3));
+        assertThat(cache.findSince(1, eventIds.get(4), 10)).isEmpty();
+        assertThat(cache.metrics().get("hits")).isEqualTo(3L);
+        assertThat(cache.metrics().get("misses")).isEqualTo(1L);
+
+        // новое событие дописывается в хвост и вытесняет самое старое
+        Feed created = feedRepository.create(feed(1));
+        cache.append(created);
+        assertThat(ids(cache.findSince(1, eventIds.get(4), 10))).containsExactly(created.getEventId());
+        assertThat(ids(cache.findSince(1, eventIds.get(1), 10)))
+                .containsExactly(eventIds.get(2), eventIds.get(3), eventIds.get(4), created.getEventId());
+        assertThat(cache.metrics().get("misses")).isEqualTo(2L);
+        assertThat(cache.metrics().get("loads")).isEqualTo(1L);
+    }
+
+    @Test
+    void shouldReloadTailAfterInvalidation() {
+        cache.findSince(1, eventIds.get(4), 10);
+
+        // пакетная запись без id: хвост сбрасывается и перечитывается при следующем запросе
+        feedRepository.createAll(List.of(feed(1)));
+        cache.invalidate(1);
+
+        assertThat(cache.findSince(1, eventIds.get(4), 10)).hasSize(1);
+        assertThat(cache.metrics().get("loads")).isEqualTo(2L);
+        assertThat(cache.metrics().get("invalidated")).isEqualTo(1L);
+    }
+
+    @Test
+    void shouldCoverUserWithShortFeed() {
+        // у пользователя событий меньше размера хвоста — хвост покрывает всю ленту
+        Feed created = feedRepository.create(feed(2));
+
+        assertThat(ids(cache.findSince(2, 0, 10))).containsExactly(created.getEventId());
+        assertThat(cache.findSince(3, 0, 10)).isEmpty();
+        assertThat(cache.metrics().get("hits")).isEqualTo(2L);
+        assertThat(cache.metrics().get("misses")).isEqualTo(0L);
+    }
+
+    private static List<Integer> ids(List<Feed> feeds) {
+        return feeds.stream().map(Feed::getEventId).toList();
+    }
+
+    private static Feed feed(int userId) {
+        return Feed.builder()
+                .timestamp(Instant.now().toEpochMilli())
+                .feedType(FeedType.LIKE)
+                .feedOperation(FeedOperation.ADD)
+                .userId(userId)
+                .entityId(1)
+                .build();
+    }
+}
@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.cache.FeedTailCache;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FeedDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FeedRowMapper;
+import ru.yandex.practicum.filmorate.ingest.FeedWriter;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.FeedOperation;
+import ru.yandex.practicum.filmorate.model.FeedType;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+// Фоновый поток пишет своими транзакциями, поэтому тест работает без общей транзакции и сам убирает за собой
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FeedWriterTest {
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private DataSourceTransactionManager transactionManager;
+    private FeedWriter feedWriter;
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        FeedDBRepository feedRepository = new FeedDBRepository(jdbc, new FeedRowMapper());
+        feedWriter = new FeedWriter(feedRepository, new FeedTailCache(feedRepository, 50, 100), transactionManager,
+                true, Duration.ofMillis(300), 100, 1000, Duration.ofMillis(50), true, Duration.ofSeconds(5));
+        feedWriter.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        feedWriter.stop();
+        jdbc.update("DELETE FROM feeds");
+    }
+
+    @Test
+    void shouldWriteEventsInBatchAndLetReadersWaitForThem() {
+        for (int userId = 1; userId <= 3; userId++) {
+            feedWriter.write(feed(userId, FeedOperation.ADD));
+        }
+        // окно сбора 300 мс: сразу после записи события ещё в очереди
+        assertThat(feedEvents(1)).isEqualTo(0);
+
+        feedWriter.awaitWritten(1);
+
+        assertThat(feedEvents(1)).isEqualTo(1);
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM feeds", Integer.class)).isEqualTo(3);
+        assertThat(feedWriter.metrics().get("batches")).isEqualTo(1L);
+        assertThat(feedWriter.metrics().get("readWaits")).isEqualTo(1L);
+    }
+
+    @Test
+    void shouldEnqueueOnlyAfterCommit() throws InterruptedException {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            feedWriter.write(feed(1, FeedOperation.ADD));
+            status.setRollbackOnly();
+        });
+        transactionTemplate.executeWithoutResult(status -> feedWriter.write(feed(2, FeedOperation.REMOVE)));
+
+        // остановка дописывает очередь
+        feedWriter.stop();
+
+        assertThat(feedEvents(1)).isEqualTo(0);
+        assertThat(feedEvents(2)).isEqualTo(1);
+        assertThat(feedWriter.metrics().get("accepted")).isEqualTo(1L);
+
+        // после остановки события снова пишутся синхронно
+        feedWriter.write(feed(3, FeedOperation.ADD));
+        assertThat(feedEvents(3)).isEqualTo(1);
+    }
+
+    private int feedEvents(int userId) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM feeds WHERE user_id = ?", Integer.class, userId);
+    }
+
+    private static Feed feed(int userId, FeedOperation operation) {
+        return Feed.builder()
+                .timestamp(Instant.now().toEpochMilli())
+                .feedType(FeedType.FRIEND)
+                .feedOperation(operation)
+                .userId(userId)
+                .entityId(userId == 6 ? 1 : 6)
+                .build();
+    }
+}
@@ -7,18 +7,31 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.dal.FilmStorage;
 import ru.yandex.practicum.filmorate.dal.dBStorage.FilmDBRepository;
 import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FilmRowMapper;
 import ru.yandex.practicum.filmorate.exceptions.exceptions.InternalServerException;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 
 import java.time.LocalDate;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
@@ -26,11 +39,13 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @JdbcTest
 @AutoConfigureTestDatabase
-@Import({FilmDBRepository.class, FilmRowMapper.class})
+@Import({FilmDBRepository.class, FilmRowMapper.class, ReferenceDataRegistry.class})
 @Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 class FilmDBRepositoryTest {
     private final FilmStorage filmRepository;
+    private final JdbcTemplate jdbc;
+    private final PlatformTransactionManager transactionManager;
 
     private Film testFilm;
 
@@ -83,6 +98,29 @@ class FilmDBRepositoryTest {
         assertThat(lionKing.isPresent()).isTrue();
     }
 
+    @Test
+    public void testFindAllLoadsGenresAndDirectors() {
+        Map<Integer, Film> filmsById = filmRepository.findAll().stream()
+                .collect(Collectors.toMap(Film::getId, film -> film));
+
+        // Из data.sql: Матрица — жанры 6 и 4, режиссёры 1 и 2; Довод — жанры 6 и 4, режиссёр 4
+        Film matrix = filmsById.get(1);
+        assertThat(matrix.getMpa().getName()).isEqualTo("G");
+        assertThat(matrix.getGenres().stream().map(Genre::getId).toList()).isEqualTo(List.of(4, 6));
+        assertThat(matrix.getDirectors().stream().map(Director::getId).collect(Collectors.toSet()))
+                .isEqualTo(Set.of(1, 2));
+
+        Film tenet = filmsById.get(5);
+        assertThat(tenet.getGenres().stream().map(Genre::getId).toList()).isEqualTo(List.of(4, 6));
+        assertThat(tenet.getDirectors().stream().map(Director::getId).collect(Collectors.toSet()))
+                .isEqualTo(Set.of(4));
+
+        // Один и тот же жанр у разных фильмов — один экземпляр
+        Genre thrillerOfMatrix = matrix.getGenres().iterator().next();
+        Genre thrillerOfTenet = tenet.getGenres().iterator().next();
+        assertThat(thrillerOfMatrix == thrillerOfTenet).isTrue();
+    }
+
     @Test
     public void testCreateFilm() {
         Film createdFilm = filmRepository.create(testFilm);
@@ -139,6 +177,71 @@ class FilmDBRepositoryTest {
         assertThat(true).isTrue();
     }
 
+    @Test
+    public void testLikesCountOrdersPopularFilms() {
+        Film createdFilm = filmRepository.create(testFilm);
+        int filmId = createdFilm.getId();
+
+        // Повторный лайк пользователя 1 не должен увеличить счётчик
+        for (int userId : new int[]{1, 2, 3, 4, 5, 1}) {
+            filmRepository.addLike(filmId, userId);
+        }
+
+        // Из data.sql: у фильма 6 шесть лайков, у фильма 3 пять, у нового фильма тоже пять, но id больше
+        List<Integer> popularIds = filmRepository.findMostPopular(3, null, null).stream()
+                .map(Film::getId)
+                .toList();
+        assertThat(popularIds).isEqualTo(List.of(6, 3, filmId));
+
+        filmRepository.removeLike(6, 6);
+        filmRepository.removeLike(6, 5);
+
+        popularIds = filmRepository.findMostPopular(2, null, null).stream()
+                .map(Film::getId)
+                .toList();
+        assertThat(popularIds).isEqualTo(List.of(3, filmId));
+
+        // Счётчики поддерживались инкрементально, пересчитывать нечего
+        assertThat(filmRepository.rebuildLikesCount()).isEqualTo(0);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testConcurrentDuplicateLikeIsNoOp() throws Exception {
+        int likesBefore = likesCount(4);
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // первый лайк вставлен, но не закоммичен: второй проходит NOT EXISTS и ждёт первичный ключ
+        Thread first = new Thread(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            filmRepository.addLike(4, 2);
+            inserted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        first.start();
+        inserted.await();
+
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> filmRepository.addLike(4, 2));
+        Thread.sleep(200);
+        release.countDown();
+        first.join();
+
+        try {
+            assertThat(second.get(5, TimeUnit.SECONDS)).isFalse();
+            assertThat(likesCount(4)).isEqualTo(likesBefore + 1);
+        } finally {
+            filmRepository.removeLike(4, 2);
+        }
+    }
+
+    private int likesCount(int filmId) {
+        return jdbc.queryForObject("SELECT likes_count FROM film WHERE film_id = ?", Integer.class, filmId);
+    }
+
     /* Закомментировал неактуальный тесты
         public void testAddLike() {
         // Сначала создаем фильм
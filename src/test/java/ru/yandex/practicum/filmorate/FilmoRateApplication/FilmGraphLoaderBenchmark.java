@@ -0,0 +1,184 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FilmDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+// Сравнение старой схемы загрузки списка фильмов (фильмы + два IN-запроса + копирование жанров в TreeSet)
+// с загрузкой графа фильма одним запросом. В обычную сборку не входит, запуск:
+// mvn test -Dtest=FilmGraphLoaderBenchmark
+@Slf4j
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FilmGraphLoaderBenchmark {
+    private static final int FILMS = 2_000;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 50;
+
+    private static final String LEGACY_FILMS_QUERY = """
+            SELECT f.film_id, f.film_name, f.description, f.release_date, f.duration,
+                   r.rating_id, r.rating_name
+            FROM film f
+            JOIN rating r ON r.rating_id = f.rating_id
+            ORDER BY f.film_id
+            """;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private final AtomicInteger statements = new AtomicInteger();
+    private JdbcTemplate jdbc;
+    private ReferenceDataRegistry referenceData;
+    private FilmDBRepository filmRepository;
+    private int firstSeededId;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = new JdbcTemplate(new CountingDataSource(dataSource, statements));
+        referenceData = new ReferenceDataRegistry(jdbc);
+        referenceData.reload();
+        filmRepository = new FilmDBRepository(jdbc, new FilmRowMapper(referenceData), referenceData, false);
+
+        Integer maxId = jdbc.queryForObject("SELECT COALESCE(MAX(film_id), 0) FROM film", Integer.class);
+        firstSeededId = maxId + 1;
+
+        List<Object[]> films = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            films.add(new Object[]{"Фильм " + i, "Описание " + i, java.sql.Date.valueOf("2000-01-01"), 100, 1 + i % 5});
+        }
+        jdbc.batchUpdate("INSERT INTO film(film_name, description, release_date, duration, rating_id) VALUES (?, ?, ?, ?, ?)", films);
+
+        List<Object[]> genres = new ArrayList<>();
+        List<Object[]> directors = new ArrayList<>();
+        for (int filmId = firstSeededId; filmId < firstSeededId + FILMS; filmId++) {
+            genres.add(new Object[]{filmId, 1 + filmId % 6});
+            genres.add(new Object[]{filmId, 1 + (filmId + 3) % 6});
+            directors.add(new Object[]{filmId, 1 + filmId % 6});
+        }
+        jdbc.batchUpdate("INSERT INTO films_genre (film_id, genre_id) VALUES (?, ?)", genres);
+        jdbc.batchUpdate("INSERT INTO films_directors (film_id, director_id) VALUES (?, ?)", directors);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.update("DELETE FROM film WHERE film_id >= ?", firstSeededId);
+    }
+
+    @Test
+    void compareLegacyLoaderWithFilmGraph() {
+        Result legacy = measure("Фильмы + жанры IN + режиссёры IN", this::loadLegacy);
+        Result graph = measure("Граф фильма одним запросом", filmRepository::findAll);
+
+        assertThat(legacy.statementsPerCall()).isEqualTo(3);
+        assertThat(graph.statementsPerCall()).isEqualTo(1);
+    }
+
+    private Result measure(String name, Supplier<Collection<Film>> loader) {
+        for (int i = 0; i < WARMUP; i++) {
+            loader.get();
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        statements.set(0);
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long started = System.nanoTime();
+
+        int size = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            size = loader.get().size();
+        }
+
+        long elapsed = System.nanoTime() - started;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        Result result = new Result(statements.get() / ITERATIONS, elapsed / ITERATIONS / 1_000, allocated / ITERATIONS);
+        log.info("{}: фильмов {}, запросов {}, {} мкс, {} КБ на вызов",
+                name, size, result.statementsPerCall(), result.micros(), result.bytes() / 1024);
+        return result;
+    }
+
+    // Повторяет прежний путь FilmService: список фильмов и два пакетных запроса за жанрами и режиссёрами
+    private Collection<Film> loadLegacy() {
+        List<Film> films = jdbc.query(LEGACY_FILMS_QUERY, new FilmRowMapper(referenceData));
+        String inClause = films.stream().map(film -> String.valueOf(film.getId())).collect(Collectors.joining(","));
+
+        Map<Integer, Set<Genre>> genresByFilmId = new HashMap<>();
+        jdbc.query("SELECT fg.film_id, g.genre_id, g.genre_name FROM genre g JOIN films_genre fg ON g.genre_id = fg.genre_id "
+                + "WHERE fg.film_id IN (" + inClause + ") ORDER BY g.genre_id ASC", rs -> {
+            genresByFilmId.computeIfAbsent(rs.getInt("film_id"), k -> new LinkedHashSet<>())
+                    .add(Genre.builder().id(rs.getInt("genre_id")).name(rs.getString("genre_name")).build());
+        });
+
+        Map<Integer, Set<Director>> directorsByFilmId = new HashMap<>();
+        jdbc.query("SELECT fd.film_id, d.director_id, d.director_name FROM director d "
+                + "JOIN films_directors fd ON d.director_id = fd.director_id WHERE fd.film_id IN (" + inClause + ")", rs -> {
+            directorsByFilmId.computeIfAbsent(rs.getInt("film_id"), k -> new HashSet<>())
+                    .add(Director.builder().id(rs.getInt("director_id")).name(rs.getString("director_name")).build());
+        });
+
+        for (Film film : films) {
+            Set<Genre> sortedGenres = new TreeSet<>(Comparator.comparing(Genre::getId));
+            sortedGenres.addAll(genresByFilmId.getOrDefault(film.getId(), new TreeSet<>(Comparator.comparing(Genre::getId))));
+            film.setGenres(sortedGenres);
+            film.setDirectors(directorsByFilmId.getOrDefault(film.getId(), new HashSet<>()));
+        }
+        return films;
+    }
+
+    private record Result(int statementsPerCall, long micros, long bytes) {
+    }
+
+    // Считает подготовленные запросы, т.е. обращения к базе
+    private static class CountingDataSource extends DelegatingDataSource {
+        private final AtomicInteger statements;
+
+        CountingDataSource(DataSource target, AtomicInteger statements) {
+            super(target);
+            this.statements = statements;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("prepareStatement") || method.getName().equals("createStatement")) {
+                            statements.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
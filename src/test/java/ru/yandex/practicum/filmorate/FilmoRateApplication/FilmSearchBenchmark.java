@@ -0,0 +1,143 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.dBStorage.DirectorDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FilmDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.SearchBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Сравнение поиска запросами LIKE '%q%' с поиском по триграммному индексу в памяти.
+// В обычную сборку не входит, запуск:
+// mvn test -Dtest=FilmSearchBenchmark
+@Slf4j
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FilmSearchBenchmark {
+    private static final int FILMS = 5_000;
+    private static final int DIRECTORS = 300;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 100;
+
+    private static final String[] WORDS = {"тёмный", "рыцарь", "возвращение", "король", "последний", "герой",
+            "ночь", "город", "дорога", "звёздный", "путь", "тайна", "остров", "зима", "песня", "море"};
+
+    private static final List<String> QUERIES = List.of("рыцарь", "ой ночь", "звёзд", "мор", "ан 1", "тайна остров");
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private FilmDBRepository filmRepository;
+    private FilmSearchIndex filmSearchIndex;
+    private int firstFilmId;
+    private int firstDirectorId;
+
+    @BeforeEach
+    void setUp() {
+        ReferenceDataRegistry referenceData = new ReferenceDataRegistry(jdbc);
+        referenceData.reload();
+        filmRepository = new FilmDBRepository(jdbc, new FilmRowMapper(referenceData), referenceData, false);
+
+        firstFilmId = jdbc.queryForObject("SELECT COALESCE(MAX(film_id), 0) FROM film", Integer.class) + 1;
+        firstDirectorId = jdbc.queryForObject("SELECT COALESCE(MAX(director_id), 0) FROM director", Integer.class) + 1;
+
+        List<Object[]> films = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            String title = WORDS[i % WORDS.length] + " " + WORDS[(i * 7 + 3) % WORDS.length] + " " + i;
+            films.add(new Object[]{title, "Описание " + i, java.sql.Date.valueOf("2000-01-01"), 100, 1 + i % 5});
+        }
+        jdbc.batchUpdate("INSERT INTO film(film_name, description, release_date, duration, rating_id) VALUES (?, ?, ?, ?, ?)", films);
+
+        List<Object[]> directors = new ArrayList<>();
+        for (int i = 0; i < DIRECTORS; i++) {
+            directors.add(new Object[]{"Режиссёр " + WORDS[i % WORDS.length] + "ов " + i});
+        }
+        jdbc.batchUpdate("INSERT INTO director(director_name) VALUES (?)", directors);
+
+        List<Object[]> links = new ArrayList<>();
+        List<Object[]> likes = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            links.add(new Object[]{firstFilmId + i, firstDirectorId + i % DIRECTORS});
+            for (int userId = 1; userId <= i % 7; userId++) {
+                likes.add(new Object[]{firstFilmId + i, userId});
+            }
+        }
+        jdbc.batchUpdate("INSERT INTO films_directors (film_id, director_id) VALUES (?, ?)", links);
+        jdbc.batchUpdate("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", likes);
+        filmRepository.rebuildLikesCount();
+
+        LikesIndex likesIndex = new LikesIndex(filmRepository);
+        likesIndex.rebuild();
+        filmSearchIndex = new FilmSearchIndex(filmRepository,
+                new DirectorDBRepository(jdbc, new DirectorRowMapper()), likesIndex);
+        filmSearchIndex.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.update("DELETE FROM film WHERE film_id >= ?", firstFilmId);
+        jdbc.update("DELETE FROM director WHERE director_id >= ?", firstDirectorId);
+        filmRepository.rebuildLikesCount();
+    }
+
+    @Test
+    void compareLikeQueriesWithTrigramIndex() {
+        for (SearchBy searchBy : SearchBy.values()) {
+            for (String query : QUERIES) {
+                assertThat(indexIds(query, searchBy)).as("'%s' по %s", query, searchBy)
+                        .isEqualTo(sqlIds(query, searchBy));
+            }
+
+            measure("LIKE, " + searchBy, query -> filmRepository.searchFilms(query, searchBy).size());
+            measure("индекс + фильмы по id, " + searchBy,
+                    query -> filmRepository.findByIds(indexIds(query, searchBy)).size());
+            measure("только индекс, " + searchBy, query -> filmSearchIndex.search(query, searchBy).length);
+        }
+    }
+
+    private void measure(String name, Function<String, Integer> search) {
+        for (int i = 0; i < WARMUP; i++) {
+            QUERIES.forEach(search::apply);
+        }
+
+        long started = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String query : QUERIES) {
+                found += search.apply(query);
+            }
+        }
+        long micros = (System.nanoTime() - started) / 1_000 / ITERATIONS / QUERIES.size();
+
+        log.info("{}: {} мкс на запрос, найдено в среднем {}", name, micros, found / ITERATIONS / QUERIES.size());
+    }
+
+    private List<Integer> indexIds(String query, SearchBy searchBy) {
+        return Arrays.stream(filmSearchIndex.search(query, searchBy)).boxed().toList();
+    }
+
+    private List<Integer> sqlIds(String query, SearchBy searchBy) {
+        return filmRepository.searchFilms(query, searchBy).stream().map(Film::getId).toList();
+    }
+}
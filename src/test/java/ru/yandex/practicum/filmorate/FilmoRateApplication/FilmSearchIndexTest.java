@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.DirectorStorage;
+import ru.yandex.practicum.filmorate.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.dal.dBStorage.DirectorDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FilmDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.SearchBy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDBRepository.class, FilmRowMapper.class, ReferenceDataRegistry.class, LikesIndex.class,
+        DirectorDBRepository.class, DirectorRowMapper.class, FilmSearchIndex.class})
+@Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FilmSearchIndexTest {
+    private final FilmStorage filmRepository;
+    private final DirectorStorage directorRepository;
+    private final LikesIndex likesIndex;
+    private final FilmSearchIndex filmSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        filmRepository.rebuildLikesCount();
+        likesIndex.rebuild();
+        filmSearchIndex.rebuild();
+    }
+
+    @Test
+    public void testSearchMatchesSqlQueries() {
+        // короткие запросы идут перебором, длинные — через триграммы
+        for (String query : List.of("а", "ро", "ОВ", "нол", "Вачовски", "ирония судьбы", "ан", "чо", "zzz", "рица")) {
+            for (SearchBy searchBy : SearchBy.values()) {
+                assertThat(search(query, searchBy))
+                        .as("запрос '%s' по %s", query, searchBy)
+                        .isEqualTo(sqlSearch(query, searchBy));
+            }
+        }
+    }
+
+    @Test
+    public void testSearchFollowsFilmAndDirectorChanges() {
+        assertThat(search("нолан", SearchBy.DIRECTOR)).containsExactly(3, 5);
+
+        // у фильма 2 новые название и режиссёр
+        Film film = filmRepository.getFilmById(2).orElseThrow();
+        film.setName("Тёмный рыцарь");
+        film.setGenres(Set.of());
+        filmRepository.update(film);
+        Director nolan = directorRepository.getDirectorById(4).orElseThrow();
+        directorRepository.saveFilmDirectors(2, Set.of(nolan));
+        film.setDirectors(Set.of(nolan));
+        filmSearchIndex.putFilm(film);
+
+        assertThat(search("король", SearchBy.TITLE)).isEmpty();
+        assertThat(search("рыцарь", SearchBy.TITLE)).containsExactly(2);
+        assertThat(search("земекис", SearchBy.DIRECTOR)).isEmpty();
+        assertThat(search("нолан", SearchBy.DIRECTOR)).isEqualTo(sqlSearch("нолан", SearchBy.DIRECTOR));
+
+        // переименование и удаление режиссёра
+        nolan.setName("Кристофер Эдвард Нолан");
+        directorRepository.update(nolan);
+        filmSearchIndex.putDirector(4, nolan.getName());
+        assertThat(search("эдвард", SearchBy.DIRECTOR_AND_TITLE))
+                .isEqualTo(sqlSearch("эдвард", SearchBy.DIRECTOR_AND_TITLE))
+                .hasSize(3);
+
+        directorRepository.delete(4);
+        filmSearchIndex.removeDirector(4);
+        assertThat(search("нолан", SearchBy.DIRECTOR)).isEmpty();
+
+        filmRepository.delete(1);
+        filmSearchIndex.removeFilm(1);
+        assertThat(search("вачовски", SearchBy.DIRECTOR)).isEmpty();
+        assertThat(search("а", SearchBy.TITLE)).isEqualTo(sqlSearch("а", SearchBy.TITLE));
+    }
+
+    private List<Integer> search(String query, SearchBy searchBy) {
+        return Arrays.stream(filmSearchIndex.search(query, searchBy)).boxed().toList();
+    }
+
+    private List<Integer> sqlSearch(String query, SearchBy searchBy) {
+        return filmRepository.searchFilms(query, searchBy).stream().map(Film::getId).toList();
+    }
+}
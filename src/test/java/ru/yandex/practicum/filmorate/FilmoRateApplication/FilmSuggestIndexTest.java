@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.dal.dBStorage.DirectorDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FilmDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDBRepository.class, FilmRowMapper.class, ReferenceDataRegistry.class, LikesIndex.class,
+        DirectorDBRepository.class, DirectorRowMapper.class, FilmSearchIndex.class})
+@Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class FilmSuggestIndexTest {
+    @Autowired
+    private FilmStorage filmRepository;
+
+    @Autowired
+    private LikesIndex likesIndex;
+
+    @Autowired
+    private FilmSearchIndex filmSearchIndex;
+
+    private FilmSuggestIndex suggestIndex;
+
+    @BeforeEach
+    void setUp() {
+        likesIndex.rebuild();
+        filmSearchIndex.rebuild();
+        // глубина 3 — чтобы проверить и узлы-корзины, куда сложены все фильмы ниже
+        suggestIndex = new FilmSuggestIndex(filmSearchIndex, likesIndex, 2, 3, Duration.ofHours(1), Duration.ofHours(1), 1024);
+        suggestIndex.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        suggestIndex.stop();
+    }
+
+    @Test
+    public void testTopKByLikesAndPrefixesDeeperThanTrie() {
+        // "д": Довод (3 лайка) и Джентльмены (2 лайка); у узла хранится только top-2
+        assertThat(suggestIndex.suggest("д", 10)).containsExactly(5, 4);
+        // слова "ларри" (Матрица, 4 лайка) и "лев" (Король Лев, 3 лайка)
+        assertThat(suggestIndex.suggest("л", 10)).containsExactly(1, 2);
+        // длиннее глубины дерева: остаток префикса проверяется по названию
+        assertThat(suggestIndex.suggest("ирония с", 10)).containsExactly(6);
+        assertThat(suggestIndex.suggest("ирония х", 10)).isEmpty();
+        assertThat(suggestIndex.suggest("вачовски", 10)).containsExactly(1);
+    }
+
+    @Test
+    public void testRenamedFilmIsVisibleBeforeAndAfterRebuild() {
+        Film film = filmRepository.getFilmById(4).orElseThrow();
+        film.setName("Большой куш");
+        filmSearchIndex.putFilm(film);
+
+        assertThat(suggestIndex.suggest("куш", 10)).containsExactly(4);
+        assertThat(suggestIndex.suggest("джен", 10)).isEmpty();
+        assertThat(suggestIndex.metrics()).containsEntry("changedSinceRebuild", 1);
+
+        suggestIndex.rebuild();
+
+        assertThat(suggestIndex.suggest("куш", 10)).containsExactly(4);
+        assertThat(suggestIndex.suggest("джен", 10)).isEmpty();
+        assertThat(suggestIndex.metrics()).containsEntry("changedSinceRebuild", 0);
+    }
+
+    @Test
+    public void testLikedFilmIsRerankedWithoutRebuild() {
+        // "р": Рязанов (6 лайков), Роберт Земекис (3), Ричи (2); у узла хранится только top-2
+        assertThat(suggestIndex.suggest("р", 10)).containsExactly(6, 2);
+        likesIndex.addLike(4, 2);
+        likesIndex.addLike(4, 4);
+        likesIndex.addLike(4, 5);
+
+        // Джентльмены (теперь 5 лайков) попадают в подсказку сразу, без пересборки дерева
+        assertThat(suggestIndex.suggest("р", 10)).containsExactly(6, 4);
+        assertThat(suggestIndex.metrics())
+                .containsEntry("likedSinceRebuild", 1)
+                .containsEntry("rebuilds", 1L);
+
+        suggestIndex.rebuild();
+        assertThat(suggestIndex.suggest("р", 10)).containsExactly(6, 4);
+        assertThat(suggestIndex.metrics()).containsEntry("likedSinceRebuild", 0);
+    }
+}
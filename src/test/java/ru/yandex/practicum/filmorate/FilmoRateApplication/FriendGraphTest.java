@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.FriendshipStorage;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FriendshipDbRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FriendshipRowMapper;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FriendshipDbRepository.class, FriendshipRowMapper.class, UserRowMapper.class, FriendGraph.class})
+@Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FriendGraphTest {
+    private final FriendshipStorage friendshipRepository;
+    private final FriendGraph friendGraph;
+
+    @BeforeEach
+    void setUp() {
+        friendGraph.rebuild();
+    }
+
+    @Test
+    public void testGraphMatchesSqlQueries() {
+        for (int userId = 1; userId <= 6; userId++) {
+            assertThat(Arrays.stream(friendGraph.friendsOf(userId)).boxed().toList())
+                    .as("друзья пользователя %d", userId)
+                    .isEqualTo(ids(friendshipRepository.getUserFriends(userId)));
+            for (int otherId = 1; otherId <= 6; otherId++) {
+                assertThat(Arrays.stream(friendGraph.commonFriends(userId, otherId)).boxed().toList())
+                        .as("общие друзья пользователей %d и %d", userId, otherId)
+                        .isEqualTo(ids(friendshipRepository.findCommonFriends(userId, otherId)));
+            }
+        }
+        assertThat(friendGraph.followersOf(4)).containsExactly(1, 3);
+        assertThat(friendGraph.metrics().get("edges")).isEqualTo(10L);
+    }
+
+    @Test
+    public void testConcurrentAddAndRemoveKeepBothDirectionsInSync() throws InterruptedException {
+        // связь 3 -> 6 свободна; добавление и удаление наперегонки
+        for (int round = 0; round < 2_000; round++) {
+            Thread add = new Thread(() -> friendGraph.addFriend(3, 6));
+            Thread remove = new Thread(() -> friendGraph.removeFriend(3, 6));
+            add.start();
+            remove.start();
+            add.join();
+            remove.join();
+
+            boolean asFriend = Arrays.binarySearch(friendGraph.friendsOf(3), 6) >= 0;
+            boolean asFollower = Arrays.binarySearch(friendGraph.followersOf(6), 3) >= 0;
+            assertThat(asFollower).as("раунд %d", round).isEqualTo(asFriend);
+            friendGraph.removeFriend(3, 6);
+        }
+        assertThat(friendGraph.metrics().get("edges")).isEqualTo(10L);
+    }
+
+    @Test
+    public void testUpdatesBothDirectionsAndNotifiesListeners() {
+        List<Integer> changed = new ArrayList<>();
+        friendGraph.addChangeListener(changed::add);
+
+        friendGraph.addFriend(3, 6);
+        friendGraph.removeFriend(1, 4);
+        assertThat(friendGraph.friendsOf(3)).containsExactly(4, 6);
+        assertThat(friendGraph.followersOf(6)).containsExactly(3, 5);
+        assertThat(friendGraph.followersOf(4)).containsExactly(3);
+        assertThat(friendGraph.commonFriends(1, 3)).isEmpty();
+
+        // пользователь 5 исчезает и из своих друзей, и из чужих списков
+        friendGraph.removeUser(5);
+        assertThat(friendGraph.friendsOf(5)).isEmpty();
+        assertThat(friendGraph.friendsOf(2)).containsExactly(3);
+        assertThat(friendGraph.friendsOf(4)).isEmpty();
+        assertThat(friendGraph.followersOf(1)).containsExactly(6);
+        assertThat(friendGraph.followersOf(6)).containsExactly(3);
+
+        assertThat(changed).containsExactly(3, 1, 2, 4, 5);
+        assertThat((Long) friendGraph.metrics().get("estimatedBytes")).isPositive();
+    }
+
+    // Порядок строк в SQL не задан, граф отдаёт id по возрастанию
+    private static List<Integer> ids(List<User> users) {
+        return users.stream().map(User::getId).sorted().toList();
+    }
+}
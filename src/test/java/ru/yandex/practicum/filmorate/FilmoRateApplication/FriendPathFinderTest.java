@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FriendshipDbRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FriendshipRowMapper;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.FriendPathFinder;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FriendshipDbRepository.class, FriendshipRowMapper.class, UserRowMapper.class, FriendGraph.class})
+@Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FriendPathFinderTest {
+    private final FriendGraph friendGraph;
+
+    private FriendPathFinder pathFinder;
+
+    @BeforeEach
+    void setUp() {
+        friendGraph.rebuild();
+        pathFinder = new FriendPathFinder(friendGraph, 6);
+    }
+
+    @Test
+    public void testFindsShortestChainsAlongFriendship() {
+        assertThat(pathFinder.findPath(1, 6, 6)).containsExactly(1, 2, 5, 6);
+        assertThat(pathFinder.findPath(6, 2, 6)).containsExactly(6, 1, 2);
+        assertThat(pathFinder.findPath(3, 3, 6)).containsExactly(3);
+
+        // длина каждой цепочки совпадает с обычным поиском в ширину, и каждый шаг — дружба
+        for (int from = 1; from <= 6; from++) {
+            for (int to = 1; to <= 6; to++) {
+                int[] path = pathFinder.findPath(from, to, 6);
+                assertThat(path.length - 1).as("цепочка от %d до %d", from, to).isEqualTo(distance(from, to));
+                assertThat(path[0]).isEqualTo(from);
+                assertThat(path[path.length - 1]).isEqualTo(to);
+                for (int i = 1; i < path.length; i++) {
+                    assertThat(Arrays.binarySearch(friendGraph.friendsOf(path[i - 1]), path[i])).isNotNegative();
+                }
+            }
+        }
+        assertThat(pathFinder.metrics().get("pooledStates")).isEqualTo(1);
+    }
+
+    @Test
+    public void testRespectsMaxDepth() {
+        // 4 -> 5 -> 1 -> 3
+        assertThat(pathFinder.findPath(4, 3, 3)).containsExactly(4, 5, 1, 3);
+        assertThat(pathFinder.findPath(4, 3, 2)).isEmpty();
+        assertThat(new FriendPathFinder(friendGraph, 2).findPath(4, 3, 6)).isEmpty();
+
+        // без связей в сторону пользователя цепочки нет
+        friendGraph.removeFriend(5, 6);
+        assertThat(pathFinder.findPath(1, 6, 6)).isEmpty();
+        assertThat(pathFinder.metrics().get("found")).isEqualTo(1L);
+    }
+
+    private int distance(int from, int to) {
+        Map<Integer, Integer> distances = new HashMap<>(Map.of(from, 0));
+        Deque<Integer> queue = new ArrayDeque<>(List.of(from));
+        while (!queue.isEmpty()) {
+            int userId = queue.poll();
+            for (int friendId : friendGraph.friendsOf(userId)) {
+                if (distances.putIfAbsent(friendId, distances.get(userId) + 1) == null) {
+                    queue.add(friendId);
+                }
+            }
+        }
+        return distances.get(to);
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FriendshipDbRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FriendshipRowMapper;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.FriendSuggestions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FriendshipDbRepository.class, FriendshipRowMapper.class, UserRowMapper.class, FriendGraph.class})
+@Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FriendSuggestionsTest {
+    private final FriendGraph friendGraph;
+
+    private FriendSuggestions suggestions;
+
+    @BeforeEach
+    void setUp() {
+        friendGraph.rebuild();
+        suggestions = new FriendSuggestions(friendGraph, 200, 100, 10);
+        suggestions.start();
+    }
+
+    @Test
+    public void testRanksFriendsOfFriendsByMutualFriends() {
+        // у пользователя 1 друзья 2, 3, 4; пользователь 5 — друг и у 2, и у 4
+        assertThat(suggestions.suggest(1, 10)).containsExactly(5);
+        // у пользователя 2 друзья 3 и 5: их друзья 4, 1 и 6 — по одному общему, порядок по id
+        assertThat(suggestions.suggest(2, 10)).containsExactly(1, 4, 6);
+        assertThat(suggestions.suggest(2, 2)).containsExactly(1, 4);
+        assertThat(suggestions.suggest(6, 10)).containsExactly(2, 3, 4);
+        assertThat(suggestions.metrics().get("hits")).isEqualTo(1L);
+    }
+
+    @Test
+    public void testInvalidatesUsersWhoseFriendsOfFriendsChanged() {
+        assertThat(suggestions.suggest(2, 10)).containsExactly(1, 4, 6);
+
+        // 3 — друг пользователя 2, поэтому новый друг 3 меняет выдачу 2
+        friendGraph.addFriend(3, 6);
+
+        assertThat(suggestions.suggest(2, 10)).containsExactly(6, 1, 4);
+        assertThat(suggestions.metrics().get("hits")).isEqualTo(0L);
+        assertThat(suggestions.metrics().get("invalidated")).isEqualTo(1L);
+    }
+
+    @Test
+    public void testCapsFanOutAndResults() {
+        FriendSuggestions capped = new FriendSuggestions(friendGraph, 1, 2, 10);
+
+        // просмотрен только первый друг 2 и его первый друг 3, который уже в друзьях
+        assertThat(capped.suggest(1, 10)).isEmpty();
+        assertThat(capped.metrics().get("truncated")).isEqualTo(1L);
+
+        // в куче остаются два лучших из трёх кандидатов
+        assertThat(new FriendSuggestions(friendGraph, 200, 2, 10).suggest(6, 10)).containsExactly(2, 3);
+    }
+}
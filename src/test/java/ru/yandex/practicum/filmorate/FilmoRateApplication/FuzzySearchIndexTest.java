@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.dal.dBStorage.DirectorDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FilmDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.FuzzySearchIndex;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.SearchBy;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDBRepository.class, FilmRowMapper.class, ReferenceDataRegistry.class, LikesIndex.class,
+        DirectorDBRepository.class, DirectorRowMapper.class, FilmSearchIndex.class})
+@Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class FuzzySearchIndexTest {
+    @Autowired
+    private FilmStorage filmRepository;
+
+    @Autowired
+    private LikesIndex likesIndex;
+
+    @Autowired
+    private FilmSearchIndex filmSearchIndex;
+
+    private FuzzySearchIndex fuzzySearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        filmRepository.rebuildLikesCount();
+        likesIndex.rebuild();
+        filmSearchIndex.rebuild();
+        fuzzySearchIndex = new FuzzySearchIndex(filmSearchIndex, likesIndex, 2, 100);
+        fuzzySearchIndex.start();
+    }
+
+    @Test
+    public void testTyposWithinAllowedDistance() {
+        assertThat(fuzzySearchIndex.search("матрца", SearchBy.TITLE)).containsExactly(1);
+        assertThat(fuzzySearchIndex.search("джентельмены", SearchBy.TITLE)).containsExactly(4);
+        // каждое слово запроса должно найтись
+        assertThat(fuzzySearchIndex.search("ирония судбы", SearchBy.TITLE)).containsExactly(6);
+        assertThat(fuzzySearchIndex.search("ирония сутки", SearchBy.TITLE)).isEmpty();
+        // имена режиссёров ищутся только при поиске по режиссёру
+        assertThat(fuzzySearchIndex.search("нолон", SearchBy.DIRECTOR)).containsExactly(3, 5);
+        assertThat(fuzzySearchIndex.search("нолон", SearchBy.TITLE)).isEmpty();
+        // в коротких словах опечатки не допускаются
+        assertThat(fuzzySearchIndex.search("лед", SearchBy.TITLE)).isEmpty();
+        assertThat(fuzzySearchIndex.search("лев", SearchBy.TITLE)).containsExactly(2);
+    }
+
+    @Test
+    public void testMaxDistanceLimitsMatches() {
+        FuzzySearchIndex exactOnly = new FuzzySearchIndex(filmSearchIndex, likesIndex, 0, 100);
+        exactOnly.start();
+
+        assertThat(exactOnly.search("матрца", SearchBy.TITLE)).isEmpty();
+        assertThat(exactOnly.search("матри", SearchBy.TITLE)).containsExactly(1);
+    }
+
+    @Test
+    public void testExactMatchesGoFirstAndChangesAreFollowed() {
+        Film film = filmRepository.getFilmById(4).orElseThrow();
+        film.setName("Матрицы");
+        filmSearchIndex.putFilm(film);
+
+        // у фильма 1 больше лайков, но в нём есть правка
+        assertThat(fuzzySearchIndex.search("матрицы", SearchBy.TITLE)).containsExactly(4, 1);
+        assertThat(fuzzySearchIndex.search("джентельмены", SearchBy.TITLE)).isEmpty();
+
+        filmSearchIndex.removeFilm(4);
+        assertThat(fuzzySearchIndex.search("матрицы", SearchBy.TITLE)).containsExactly(1);
+    }
+
+    @Test
+    public void testDeadTokensAreCountedAndTreeIsRebuilt() {
+        int liveAtStart = (int) fuzzySearchIndex.metrics().get("liveTokens");
+        assertThat(fuzzySearchIndex.metrics().get("treeTokens")).isEqualTo(liveAtStart);
+
+        // каждое переименование оставляет в дереве мёртвое слово; режиссёры фильма не меняются
+        Film film = filmRepository.findByIds(List.of(4)).iterator().next();
+        for (int i = 0; i < 200; i++) {
+            film.setName("Переименование" + i);
+            filmSearchIndex.putFilm(film);
+        }
+
+        Map<String, Object> metrics = fuzzySearchIndex.metrics();
+        // слова «джентльмены» больше нет, вместо него одно новое
+        assertThat(metrics.get("liveTokens")).isEqualTo(liveAtStart);
+        assertThat((int) metrics.get("treeRebuilds")).isPositive();
+        assertThat((int) metrics.get("treeTokens")).isLessThanOrEqualTo(2 * liveAtStart + 64);
+        assertThat(fuzzySearchIndex.search("переименование199", SearchBy.TITLE)).containsExactly(4);
+        assertThat(fuzzySearchIndex.search("переименование42", SearchBy.TITLE)).isEmpty();
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.context.annotation.Import;
 import ru.yandex.practicum.filmorate.dal.GenreStorage;
 import ru.yandex.practicum.filmorate.dal.dBStorage.GenreDBRepository;
 import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.model.Genre;
 
 import java.util.List;
@@ -20,7 +21,7 @@ import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
 @JdbcTest
 @AutoConfigureTestDatabase
-@Import({GenreDBRepository.class, GenreRowMapper.class})
+@Import({GenreDBRepository.class, GenreRowMapper.class, ReferenceDataRegistry.class})
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 class GenreDBRepositoryTest {
     private final GenreStorage genreRepository;
@@ -241,4 +242,13 @@ class GenreDBRepositoryTest {
         assertThat(film6GenreNames.contains("Драма")).isTrue();
     }
 
+    @Test
+    public void testFilmGenresReuseReferenceInstances() {
+        // Жанры фильма — те же объекты, что и в справочнике, а не новые на каждую строку
+        List<Genre> filmGenres = genreRepository.getFilmGenresByFilmId(1);
+
+        for (Genre genre : filmGenres) {
+            assertThat(genre == genreRepository.getGenreById(genre.getId()).orElseThrow()).isTrue();
+        }
+    }
 }
@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.cache.FeedTailCache;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FeedDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FilmDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FeedRowMapper;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.ingest.LikeWriteBehind;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.FeedOperation;
+import ru.yandex.practicum.filmorate.model.FeedType;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+// Фоновый поток пишет своими транзакциями, поэтому тест работает без общей транзакции и сам убирает за собой
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LikeWriteBehindTest {
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private FilmDBRepository filmRepository;
+    private PopularityLeaderboard popularityLeaderboard;
+    private LikesIndex likesIndex;
+    private LikeWriteBehind likeWriteBehind;
+
+    @BeforeEach
+    void setUp() {
+        ReferenceDataRegistry referenceData = new ReferenceDataRegistry(jdbc);
+        referenceData.reload();
+        filmRepository = new FilmDBRepository(jdbc, new FilmRowMapper(referenceData), referenceData, false);
+        filmRepository.rebuildLikesCount();
+        popularityLeaderboard = new PopularityLeaderboard(filmRepository);
+        popularityLeaderboard.rebuild();
+        likesIndex = new LikesIndex(filmRepository);
+        likesIndex.rebuild();
+
+        likeWriteBehind = writeBehind(Duration.ofMillis(300), 100, 1000);
+        likeWriteBehind.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.update("DELETE FROM likes WHERE (film_id, user_id) IN ((1, 5), (4, 2))");
+        jdbc.update("MERGE INTO likes (film_id, user_id) KEY(film_id, user_id) VALUES (2, 1)");
+        jdbc.update("DELETE FROM feeds");
+        filmRepository.rebuildLikesCount();
+    }
+
+    @Test
+    void shouldCoalesceTogglesAndWriteLikesWithFeedsInBatches() throws InterruptedException {
+        // (1, 5): лайк, снятие, лайк — итог один лайк
+        assertThat(likeWriteBehind.offer(1, 5, true, feed(1, 5, FeedOperation.ADD))).isTrue();
+        assertThat(likeWriteBehind.offer(1, 5, false, feed(1, 5, FeedOperation.REMOVE))).isTrue();
+        assertThat(likeWriteBehind.offer(1, 5, true, feed(1, 5, FeedOperation.ADD))).isTrue();
+        // новый лайк, снятие существующего и повтор уже поставленного
+        assertThat(likeWriteBehind.offer(4, 2, true, feed(4, 2, FeedOperation.ADD))).isTrue();
+        assertThat(likeWriteBehind.offer(2, 1, false, feed(2, 1, FeedOperation.REMOVE))).isTrue();
+        assertThat(likeWriteBehind.offer(1, 1, true, feed(1, 1, FeedOperation.ADD))).isTrue();
+
+        // все нажатия попали в одну пачку (окно сбора 300 мс), остановка дописывает очередь
+        likeWriteBehind.stop();
+
+        assertThat(likesCount(1)).isEqualTo(5);
+        assertThat(likesCount(2)).isEqualTo(2);
+        assertThat(likesCount(4)).isEqualTo(3);
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = 1 AND user_id = 5", Integer.class))
+                .isEqualTo(1);
+        // события ленты не схлопываются
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM feeds", Integer.class)).isEqualTo(6);
+        // рейтинг в памяти получил те же изменения: у фильма 1 теперь 5 лайков, как у фильма 3, и он выше по id
+        assertThat(popularityLeaderboard.top(3, null, null).toString()).isEqualTo("[6, 1, 3]");
+        assertThat(likeWriteBehind.metrics().get("coalesced")).isEqualTo(2L);
+        // и индекс лайков тоже
+        assertThat(likesIndex.usersOf(1)).containsExactly(1, 2, 3, 4, 5);
+        assertThat(likesIndex.usersOf(2)).containsExactly(5, 6);
+        assertThat(likesIndex.filmsOf(2)).containsExactly(1, 3, 4, 6);
+
+        // после остановки лайки снова пишутся синхронно
+        assertThat(likeWriteBehind.offer(5, 1, true, feed(5, 1, FeedOperation.ADD))).isFalse();
+    }
+
+    @Test
+    void shouldKeepPressOrderWhenQueueIsFull() throws InterruptedException {
+        likeWriteBehind.stop();
+        // очередь на одно нажатие и пачки по одному: следующие нажатия ждут места, а не пишутся в обход очереди
+        LikeWriteBehind tiny = writeBehind(Duration.ofMillis(300), 1, 1);
+        tiny.start();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(tiny.offer(4, 2, true, feed(4, 2, FeedOperation.ADD))).isTrue();
+            assertThat(tiny.isLiked(4, 2)).isTrue();
+            assertThat(tiny.offer(4, 2, false, feed(4, 2, FeedOperation.REMOVE))).isTrue();
+            assertThat(tiny.isLiked(4, 2)).isFalse();
+        }
+        assertThat(tiny.offer(1, 5, true, feed(1, 5, FeedOperation.ADD))).isTrue();
+        tiny.stop();
+
+        // последним было снятие — лайка нет ни в базе, ни в индексе, счётчик не сдвинулся
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = 4 AND user_id = 2", Integer.class))
+                .isZero();
+        assertThat(likesCount(4)).isEqualTo(2);
+        assertThat(likesIndex.isLiked(4, 2)).isFalse();
+        assertThat(tiny.isLiked(1, 5)).isTrue();
+        assertThat(tiny.metrics().get("pendingPairs")).isEqualTo(0);
+        assertThat(tiny.metrics().get("failed")).isEqualTo(0L);
+    }
+
+    private LikeWriteBehind writeBehind(Duration flushInterval, int batchSize, int queueCapacity) {
+        FeedDBRepository feedRepository = new FeedDBRepository(jdbc, new FeedRowMapper());
+        return new LikeWriteBehind(filmRepository, feedRepository, new FeedTailCache(feedRepository, 50, 100),
+                popularityLeaderboard, likesIndex, new DataSourceTransactionManager(dataSource),
+                true, flushInterval, batchSize, queueCapacity);
+    }
+
+    private int likesCount(int filmId) {
+        return jdbc.queryForObject("SELECT likes_count FROM film WHERE film_id = ?", Integer.class, filmId);
+    }
+
+    private static Feed feed(int filmId, int userId, FeedOperation operation) {
+        return Feed.builder()
+                .timestamp(Instant.now().toEpochMilli())
+                .feedType(FeedType.LIKE)
+                .feedOperation(operation)
+                .userId(userId)
+                .entityId(filmId)
+                .build();
+    }
+}
@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FilmDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.index.ChunkedIntSet;
+import ru.yandex.practicum.filmorate.index.IntArrays;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDBRepository.class, FilmRowMapper.class, ReferenceDataRegistry.class, LikesIndex.class})
+@Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class LikesIndexTest {
+    private final FilmStorage filmRepository;
+    private final LikesIndex likesIndex;
+
+    @BeforeEach
+    void setUp() {
+        filmRepository.rebuildLikesCount();
+        likesIndex.rebuild();
+    }
+
+    @Test
+    public void testCommonFilmsMatchSqlQuery() {
+        for (int userId = 1; userId <= 6; userId++) {
+            for (int friendId = 1; friendId <= 6; friendId++) {
+                List<Integer> expected = filmRepository.getCommonFilms(userId, friendId).stream()
+                        .map(Film::getId)
+                        .toList();
+
+                assertThat(Arrays.stream(likesIndex.commonFilms(userId, friendId)).boxed().toList())
+                        .as("общие фильмы пользователей %d и %d", userId, friendId)
+                        .isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    public void testCommonFilmsOrderedByLikes() {
+        // у пользователей 3 и 4 общие фильмы 1 (4 лайка), 3 (5 лайков) и 6 (6 лайков)
+        assertThat(likesIndex.commonFilms(3, 4)).containsExactly(6, 3, 1);
+
+        filmRepository.removeLike(6, 1);
+        likesIndex.removeLike(6, 1);
+        filmRepository.removeLike(6, 2);
+        likesIndex.removeLike(6, 2);
+
+        assertThat(likesIndex.commonFilms(3, 4)).containsExactly(3, 1, 6);
+    }
+
+    @Test
+    public void testConcurrentLikeAndUnlikeKeepBothSidesInSync() throws InterruptedException {
+        // пара (4, 2) свободна; лайк и снятие лайка наперегонки
+        for (int round = 0; round < 2_000; round++) {
+            Thread like = new Thread(() -> likesIndex.addLike(4, 2));
+            Thread unlike = new Thread(() -> likesIndex.removeLike(4, 2));
+            like.start();
+            unlike.start();
+            like.join();
+            unlike.join();
+
+            boolean byUser = likesIndex.isLiked(4, 2);
+            boolean byFilm = Arrays.binarySearch(likesIndex.usersOf(4), 2) >= 0;
+            assertThat(byFilm).as("раунд %d", round).isEqualTo(byUser);
+            likesIndex.removeLike(4, 2);
+        }
+        assertThat(likesIndex.usersOf(4)).containsExactly(1, 3);
+    }
+
+    @Test
+    public void testChunkedSetMatchesPlainArray() {
+        ChunkedIntSet chunked = ChunkedIntSet.EMPTY;
+        int[] plain = new int[0];
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            int value = random.nextInt(5_000) + 1;
+            if (random.nextInt(3) == 0) {
+                chunked = chunked.without(value);
+                plain = IntArrays.without(plain, value);
+            } else {
+                chunked = chunked.with(value);
+                plain = IntArrays.with(plain, value);
+            }
+        }
+
+        assertThat(chunked.toArray()).isEqualTo(plain);
+        assertThat(chunked.size()).isEqualTo(plain.length);
+        assertThat(ChunkedIntSet.of(plain).toArray()).isEqualTo(plain);
+        for (int value = 0; value <= 5_001; value++) {
+            assertThat(chunked.contains(value)).isEqualTo(Arrays.binarySearch(plain, value) >= 0);
+        }
+    }
+
+    @Test
+    public void testIntersectShortWithLongArray() {
+        int[] evens = IntStream.rangeClosed(1, 1000).map(i -> i * 2).toArray();
+
+        assertThat(IntArrays.intersect(new int[]{1, 2, 7, 500, 2000, 2001}, evens)).containsExactly(2, 500, 2000);
+        assertThat(IntArrays.intersect(evens, new int[]{3, 5})).isEmpty();
+        assertThat(IntArrays.difference(new int[]{1, 2, 3, 4}, new int[]{2, 4, 6})).containsExactly(1, 3);
+    }
+}
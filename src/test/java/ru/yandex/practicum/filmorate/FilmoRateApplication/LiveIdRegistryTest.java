@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.dal.UserStorage;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FilmDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.UserDbRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.index.LiveIdRegistry;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({UserDbRepository.class, UserRowMapper.class, FilmDBRepository.class, FilmRowMapper.class,
+        ReferenceDataRegistry.class})
+@Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class LiveIdRegistryTest {
+    private final JdbcTemplate jdbc;
+    private final UserStorage userRepository;
+    private final FilmStorage filmRepository;
+
+    private LiveIdRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new LiveIdRegistry(userRepository, filmRepository);
+        registry.rebuild();
+    }
+
+    @Test
+    public void testAnswersFromBitsWithoutQueries() {
+        for (int id = 1; id <= 6; id++) {
+            assertThat(registry.userExists(id)).isTrue();
+            assertThat(registry.filmExists(id)).isTrue();
+        }
+        assertThat(registry.metrics().get("hits")).isEqualTo(12L);
+        assertThat(registry.metrics().get("fallbacks")).isEqualTo(0L);
+
+        registry.userDeleted(3);
+        registry.filmCreated(100_000);
+        assertThat(registry.filmExists(100_000)).isTrue();
+        assertThat(registry.metrics().get("films")).isEqualTo(7);
+
+        // бита нет — проверка в базе; строка пользователя 3 ещё на месте, и бит возвращается
+        assertThat(registry.userExists(3)).isTrue();
+        assertThat(registry.userExists(999)).isFalse();
+        assertThat(registry.userExists(-1)).isFalse();
+        assertThat(registry.metrics().get("fallbacks")).isEqualTo(3L);
+        assertThat(registry.metrics().get("healed")).isEqualTo(1L);
+    }
+
+    @Test
+    public void testHealsRowsAddedAroundTheService() {
+        jdbc.update("INSERT INTO users (email, login, name, birthday) " +
+                "VALUES ('registry@mail.ru', 'registry', 'Реестр', DATE '2000-01-01')");
+        int userId = jdbc.queryForObject("SELECT user_id FROM users WHERE login = 'registry'", Integer.class);
+
+        assertThat(registry.userExists(userId)).isTrue();
+        assertThat(registry.userExists(userId)).isTrue();
+        assertThat(registry.metrics().get("fallbacks")).isEqualTo(1L);
+        assertThat(registry.metrics().get("users")).isEqualTo(7);
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.context.annotation.Import;
 import ru.yandex.practicum.filmorate.dal.MpaRatingStorage;
 import ru.yandex.practicum.filmorate.dal.dBStorage.MpaRatingDBRepository;
 import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.MpaRatingRowMapper;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 
 import java.util.List;
@@ -18,7 +19,7 @@ import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
 @JdbcTest
 @AutoConfigureTestDatabase
-@Import({MpaRatingDBRepository.class, MpaRatingRowMapper.class})
+@Import({MpaRatingDBRepository.class, MpaRatingRowMapper.class, ReferenceDataRegistry.class})
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 class MpaRatingDBRepositoryTest {
     private final MpaRatingStorage mpaRatingRepository;
@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FilmDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDBRepository.class, FilmRowMapper.class, ReferenceDataRegistry.class})
+@Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class PopularityLeaderboardTest {
+    private final FilmStorage filmRepository;
+
+    private PopularityLeaderboard leaderboard;
+
+    @BeforeEach
+    void setUp() {
+        filmRepository.rebuildLikesCount();
+        leaderboard = new PopularityLeaderboard(filmRepository);
+        leaderboard.rebuild();
+    }
+
+    @Test
+    public void testTopByGenreAndYearComesFromItsOwnPartition() {
+        // боевики (жанр 6): Начало (5 лайков), Матрица (4), Довод (3), Джентльмены (2)
+        assertThat(leaderboard.top(10, 6, null)).containsExactly(3, 1, 5, 4);
+        assertThat(leaderboard.top(10, 6, 2020)).containsExactly(5);
+        assertThat(leaderboard.top(10, 6, 1975)).isEmpty();
+        assertThat(leaderboard.top(10, 1, 2019)).containsExactly(4);
+
+        leaderboard.changeLikes(4, 10);
+        assertThat(leaderboard.top(10, 6, null)).containsExactly(4, 3, 1, 5);
+        assertThat(leaderboard.top(10, 1, 2019)).containsExactly(4);
+    }
+
+    @Test
+    public void testReadersNeverSeeAFilmTwiceOrMissIt() throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            // фильм 2 скачет через весь рейтинг вверх и вниз
+            for (int i = 0; running.get(); i++) {
+                leaderboard.changeLikes(2, i % 2 == 0 ? 10 : -10);
+            }
+        });
+        writer.start();
+
+        try {
+            for (int i = 0; i < 20_000; i++) {
+                List<Integer> top = leaderboard.top(6, null, null);
+                assertThat(top).hasSize(6);
+                assertThat(new HashSet<>(top)).hasSize(6);
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+    @Test
+    public void testConcurrentLikesOfDifferentFilmsKeepEveryPartitionConsistent() throws InterruptedException {
+        List<Thread> writers = new ArrayList<>();
+        for (int filmId = 1; filmId <= 6; filmId++) {
+            int id = filmId;
+            // каждый фильм получает 10 * id лайков, попутно теряя и возвращая часть из них
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    leaderboard.changeLikes(id, 1);
+                    if (i % 100 == 0) {
+                        leaderboard.changeLikes(id, -1);
+                        leaderboard.changeLikes(id, 1);
+                    }
+                }
+                leaderboard.changeLikes(id, 10 * id - 1_000);
+            }));
+        }
+        writers.forEach(Thread::start);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        // к исходным лайкам (4, 3, 5, 2, 3, 6) добавилось по 10 * id
+        assertThat(leaderboard.top(10, null, null)).containsExactly(6, 5, 4, 3, 2, 1);
+        assertThat(leaderboard.top(10, 6, null)).containsExactly(5, 4, 3, 1);
+        assertThat(leaderboard.top(10, 6, 2020)).containsExactly(5);
+        assertThat(leaderboard.top(10, null, 1975)).containsExactly(6);
+    }
+}
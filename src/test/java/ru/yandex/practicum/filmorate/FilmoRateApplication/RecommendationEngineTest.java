@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FilmDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.RecommendationEngine;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDBRepository.class, FilmRowMapper.class, ReferenceDataRegistry.class, LikesIndex.class,
+        RecommendationEngine.class})
+@Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class RecommendationEngineTest {
+    private final FilmStorage filmRepository;
+    private final LikesIndex likesIndex;
+    private final RecommendationEngine recommendationEngine;
+
+    @BeforeEach
+    void setUp() {
+        likesIndex.rebuild();
+    }
+
+    @Test
+    public void testRecommendationsMatchSqlQuery() {
+        for (int userId = 1; userId <= 6; userId++) {
+            assertThat(recommendationEngine.recommend(userId))
+                    .as("рекомендации пользователя %d", userId)
+                    .isEqualTo(sqlRecommendations(userId));
+        }
+    }
+
+    @Test
+    public void testRecommendationsFollowLikeChanges() {
+        // у пользователя 2 фильмы 1, 3, 6: фильмы 2 и 5 рекомендуют по трое похожих, фильм 4 — двое
+        assertThat(recommendationEngine.recommend(2)).containsExactly(2, 5, 4);
+
+        filmRepository.addLike(5, 2);
+        likesIndex.addLike(5, 2);
+        filmRepository.removeLike(1, 2);
+        likesIndex.removeLike(1, 2);
+
+        assertThat(recommendationEngine.recommend(2)).isEqualTo(sqlRecommendations(2));
+    }
+
+    @Test
+    public void testNoRecommendationsWithoutLikes() {
+        filmRepository.removeUserLikes(4);
+        likesIndex.removeUser(4);
+
+        assertThat(likesIndex.filmsOf(4)).isEmpty();
+        assertThat(likesIndex.usersOf(1)).containsExactly(1, 2, 3);
+        assertThat(recommendationEngine.recommend(4)).isEmpty();
+        assertThat(sqlRecommendations(4)).isEmpty();
+    }
+
+    private List<Integer> sqlRecommendations(int userId) {
+        return filmRepository.getRecomendations(userId).stream().map(Film::getId).toList();
+    }
+}
@@ -0,0 +1,134 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.dal.RecommendationStorage;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FilmDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.RecommendationDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.UserDbRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.LiveIdRegistry;
+import ru.yandex.practicum.filmorate.index.RecommendationEngine;
+import ru.yandex.practicum.filmorate.index.RecommendationRefresher;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Проходы запускаются из теста напрямую: интервал расписания заведомо больше времени теста
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDBRepository.class, FilmRowMapper.class, ReferenceDataRegistry.class, LikesIndex.class,
+        RecommendationEngine.class, RecommendationDBRepository.class, UserDbRepository.class, UserRowMapper.class,
+        LiveIdRegistry.class})
+@Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class RecommendationRefresherTest {
+    @Autowired
+    private FilmStorage filmRepository;
+
+    @Autowired
+    private LikesIndex likesIndex;
+
+    @Autowired
+    private RecommendationEngine recommendationEngine;
+
+    @Autowired
+    private RecommendationStorage recommendationRepository;
+
+    @Autowired
+    private LiveIdRegistry liveIdRegistry;
+
+    private RecommendationRefresher refresher;
+
+    @BeforeEach
+    void setUp() {
+        likesIndex.rebuild();
+        liveIdRegistry.rebuild();
+        refresher = new RecommendationRefresher(recommendationEngine, likesIndex, recommendationRepository, liveIdRegistry,
+                true, Duration.ofHours(1), Duration.ofHours(1), 2, 2);
+        refresher.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        refresher.stop();
+    }
+
+    @Test
+    public void testFirstPassMaterializesEveryUserWithLikes() {
+        // до первого прохода строк нет — ответ считается синхронно
+        assertThat(recommendationRepository.getRecommendations(1)).isEmpty();
+        assertThat(refresher.recommend(1)).isEqualTo(recommendationEngine.recommend(1));
+
+        refresher.refresh();
+
+        for (int userId = 1; userId <= 6; userId++) {
+            assertThat(recommendationRepository.getRecommendations(userId))
+                    .contains(recommendationEngine.recommend(userId));
+        }
+        assertThat(refresher.recommend(1)).isEqualTo(recommendationEngine.recommend(1));
+        assertThat(refresher.metrics())
+                .containsEntry("fullPasses", 1L)
+                .containsEntry("recomputed", 6L)
+                .containsEntry("synchronousReads", 1L)
+                .containsEntry("materializedReads", 1L);
+    }
+
+    @Test
+    public void testChangedUserIsServedFreshAndRecomputedFirst() {
+        refresher.refresh();
+        var before = recommendationRepository.getRecommendations(2).orElseThrow();
+
+        // пользователь 2 лайкает фильм 5, который ему рекомендовали
+        filmRepository.addLike(5, 2);
+        likesIndex.addLike(5, 2);
+
+        // строка устарела, но её не читают: ответ считается по индексу
+        assertThat(recommendationRepository.getRecommendations(2)).contains(before);
+        assertThat(refresher.recommend(2)).doesNotContain(5).isEqualTo(recommendationEngine.recommend(2));
+        assertThat(refresher.metrics()).containsEntry("dirtyUsers", 1);
+
+        // следующий проход не полный: пересчитывается только изменившийся пользователь
+        refresher.refresh();
+
+        assertThat(recommendationRepository.getRecommendations(2)).contains(recommendationEngine.recommend(2));
+        assertThat(refresher.metrics())
+                .containsEntry("dirtyUsers", 0)
+                .containsEntry("fullPasses", 1L)
+                .containsEntry("recomputed", 7L);
+    }
+
+    @Test
+    public void testRowWithDeletedFilmIsServedFreshAndRecomputed() {
+        refresher.refresh();
+        var before = recommendationRepository.getRecommendations(2).orElseThrow();
+        assertThat(before).contains(5);
+
+        // фильм 5 удалён: пользователь 2 его не лайкал, поэтому его строка сама не пересчитается
+        filmRepository.delete(5);
+        likesIndex.removeFilm(5);
+        liveIdRegistry.filmDeleted(5);
+
+        assertThat(refresher.recommend(2)).doesNotContain(5).isEqualTo(recommendationEngine.recommend(2));
+        // на пересчёт ушли лайкавшие фильм 5 (4, 5, 6 — через индекс лайков) и пользователь 2 — при чтении
+        assertThat(refresher.metrics())
+                .containsEntry("staleReads", 1L)
+                .containsEntry("dirtyUsers", 4);
+
+        refresher.refresh();
+
+        assertThat(recommendationRepository.getRecommendations(2)).contains(recommendationEngine.recommend(2));
+        assertThat(refresher.recommend(2)).doesNotContain(5);
+        assertThat(refresher.metrics()).containsEntry("staleReads", 1L);
+    }
+}
@@ -0,0 +1,126 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.ReviewStorage;
+import ru.yandex.practicum.filmorate.dal.dBStorage.ReviewDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.ReviewRowMapper;
+import ru.yandex.practicum.filmorate.index.ReviewTopK;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.service.ReviewUsefulReconciler;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({ReviewDBRepository.class, ReviewRowMapper.class})
+@Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class ReviewDBRepositoryTest {
+    private final ReviewStorage reviewRepository;
+    private final JdbcTemplate jdbc;
+    private final PlatformTransactionManager transactionManager;
+
+    @Test
+    public void testReactionsChangeUsefulByDelta() {
+        int reviewId = createReview();
+
+        reviewRepository.addReaction(reviewId, 2, true);
+        reviewRepository.addReaction(reviewId, 3, true);
+        reviewRepository.addReaction(reviewId, 4, false);
+        assertThat(useful(reviewId)).isEqualTo(1);
+
+        // повтор той же оценки ничего не меняет, смена оценки — на два голоса
+        reviewRepository.addReaction(reviewId, 2, true);
+        assertThat(useful(reviewId)).isEqualTo(1);
+        reviewRepository.addReaction(reviewId, 2, false);
+        assertThat(useful(reviewId)).isEqualTo(-1);
+
+        reviewRepository.removeReaction(reviewId, 4);
+        reviewRepository.removeReaction(reviewId, 4);
+        reviewRepository.removeReaction(reviewId, 5);
+        assertThat(useful(reviewId)).isEqualTo(0);
+    }
+
+    @Test
+    public void testReconcilerRepairsDrift() {
+        int first = createReview();
+        int second = createReview();
+        reviewRepository.addReaction(first, 2, true);
+        reviewRepository.addReaction(second, 2, false);
+        jdbc.update("UPDATE reviews SET useful = 42 WHERE review_id = ?", first);
+        jdbc.update("UPDATE reviews SET useful = NULL WHERE review_id = ?", second);
+
+        // по одному отзыву за UPDATE — проверяем и границы диапазонов
+        ReviewUsefulReconciler reconciler = new ReviewUsefulReconciler(reviewRepository, new ReviewTopK(reviewRepository, 10), false, Duration.ofHours(1), 1);
+        assertThat(reconciler.reconcile()).isEqualTo(2);
+        assertThat(useful(first)).isEqualTo(1);
+        assertThat(useful(second)).isEqualTo(-1);
+
+        assertThat(reconciler.reconcile()).isZero();
+        assertThat(reconciler.metrics()).containsEntry("repaired", 2L);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testConcurrentDuplicateReactionIsNoOp() throws Exception {
+        int reviewId = createReview();
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // первая оценка вставлена, но не закоммичена: вторая проходит NOT EXISTS и упирается в первичный ключ
+        Thread first = new Thread(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            reviewRepository.addReaction(reviewId, 2, true);
+            inserted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        first.start();
+        inserted.await();
+
+        CompletableFuture<Optional<Integer>> second =
+                CompletableFuture.supplyAsync(() -> reviewRepository.addReaction(reviewId, 2, true));
+        Thread.sleep(200);
+        release.countDown();
+        first.join();
+
+        try {
+            assertThat(second.get(5, TimeUnit.SECONDS)).isEmpty();
+            assertThat(useful(reviewId)).isEqualTo(1);
+        } finally {
+            reviewRepository.delete(reviewId);
+        }
+    }
+
+    private int createReview() {
+        return reviewRepository.create(Review.builder()
+                .content("Отзыв")
+                .isPositive(true)
+                .userId(1)
+                .filmId(1)
+                .build()).getReviewId();
+    }
+
+    private int useful(int reviewId) {
+        return reviewRepository.getReviewById(reviewId).orElseThrow().getUseful();
+    }
+}
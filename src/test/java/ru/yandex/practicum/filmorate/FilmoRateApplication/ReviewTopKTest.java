@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.ReviewStorage;
+import ru.yandex.practicum.filmorate.dal.dBStorage.ReviewDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.ReviewRowMapper;
+import ru.yandex.practicum.filmorate.index.ReviewTopK;
+import ru.yandex.practicum.filmorate.model.Review;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({ReviewDBRepository.class, ReviewRowMapper.class})
+@Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class ReviewTopKTest {
+    @Autowired
+    private ReviewStorage reviewRepository;
+
+    @Test
+    public void testTopFollowsReactionsAndReloadsWhenShort() {
+        ReviewTopK topK = new ReviewTopK(reviewRepository, 2);
+        int first = create(topK);
+        int second = create(topK);
+        int third = create(topK);
+
+        assertThat(ids(topK.findAll(2))).containsExactly(first, second);
+
+        // третий поднимается выше худшего в наборе и вытесняет его без чтения списка из базы
+        react(topK, third, 2, true);
+        assertThat(ids(topK.findAll(2))).containsExactly(third, first);
+        assertThat(topK.metrics()).containsEntry("reloads", 1L);
+
+        // первый опускается ниже худшего и уходит из набора: отзывов не хватает, набор перечитывается
+        react(topK, first, 2, false);
+        assertThat(ids(topK.findAll(2))).containsExactly(third, second);
+        assertThat(topK.metrics()).containsEntry("reloads", 2L);
+
+        // больше capacity — из базы
+        assertThat(ids(topK.findAll(5))).containsExactly(third, second, first);
+
+        reviewRepository.delete(third);
+        topK.reviewDeleted(third);
+        assertThat(ids(topK.findAll(1))).containsExactly(second);
+    }
+
+    @Test
+    public void testSmallListHoldsAllReviews() {
+        ReviewTopK topK = new ReviewTopK(reviewRepository, 10);
+        assertThat(topK.findAll(10)).isEmpty();
+
+        int first = create(topK);
+        int second = create(topK);
+        react(topK, second, 3, true);
+
+        assertThat(ids(topK.findAll(10))).containsExactly(second, first);
+        assertThat(topK.findAll(10)).first().extracting(Review::getUseful).isEqualTo(1);
+        assertThat(topK.metrics()).containsEntry("reloads", 1L).containsEntry("holdsAll", true);
+    }
+
+    private int create(ReviewTopK topK) {
+        Review review = reviewRepository.create(Review.builder()
+                .content("Отзыв")
+                .isPositive(true)
+                .userId(1)
+                .filmId(1)
+                .build());
+        topK.reviewCreated(review);
+        return review.getReviewId();
+    }
+
+    private void react(ReviewTopK topK, int reviewId, int userId, boolean isPositive) {
+        reviewRepository.addReaction(reviewId, userId, isPositive)
+                .ifPresent(useful -> topK.usefulChanged(reviewId, useful));
+    }
+
+    private static List<Integer> ids(Collection<Review> reviews) {
+        return reviews.stream().map(Review::getReviewId).toList();
+    }
+}
@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.cache.SearchResultCache;
+import ru.yandex.practicum.filmorate.dal.FilmStorage;
+import ru.yandex.practicum.filmorate.dal.dBStorage.DirectorDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.FilmDBRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.SearchBy;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDBRepository.class, FilmRowMapper.class, ReferenceDataRegistry.class, LikesIndex.class,
+        DirectorDBRepository.class, DirectorRowMapper.class, FilmSearchIndex.class})
+@Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class SearchResultCacheTest {
+    @Autowired
+    private FilmStorage filmRepository;
+
+    @Autowired
+    private LikesIndex likesIndex;
+
+    @Autowired
+    private FilmSearchIndex filmSearchIndex;
+
+    private SearchResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        filmRepository.rebuildLikesCount();
+        likesIndex.rebuild();
+        filmSearchIndex.rebuild();
+        cache = new SearchResultCache(filmSearchIndex, likesIndex, 3, 10);
+        cache.start();
+    }
+
+    @Test
+    public void testLikesDropOnlyQueriesWithTheFilm() {
+        assertThat(cache.search("А", SearchBy.TITLE)).containsExactly(3, 1);
+
+        // фильма 2 в выдаче нет: запрос нормализуется и отдаётся из кэша в сохранённом порядке
+        likesIndex.addLike(2, 2);
+        assertThat(cache.search(" а ", SearchBy.TITLE)).containsExactly(3, 1);
+
+        // лайки фильма 1 меняют порядок выдачи — запрос сброшен и посчитан заново
+        likesIndex.addLike(1, 5);
+        likesIndex.addLike(1, 6);
+        assertThat(cache.size()).isZero();
+        assertThat(cache.search("а", SearchBy.TITLE)).containsExactly(1, 3);
+        assertThat(cache.metrics())
+                .containsEntry("hits", 1L)
+                .containsEntry("misses", 2L)
+                .containsEntry("invalidated", 1L);
+    }
+
+    @Test
+    public void testFilmChangeDropsOnlyAffectedQueries() {
+        cache.search("джен", SearchBy.TITLE);
+        cache.search("куш", SearchBy.TITLE);
+        cache.search("нолан", SearchBy.DIRECTOR);
+
+        Film film = filmRepository.getFilmById(4).orElseThrow();
+        film.setName("Большой куш");
+        filmSearchIndex.putFilm(film);
+
+        // фильм был в выдаче "джен" и теперь подходит под "куш"; "нолан" его не касается
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.search("джен", SearchBy.TITLE)).isEmpty();
+        assertThat(cache.search("куш", SearchBy.TITLE)).containsExactly(4);
+        assertThat(cache.search("нолан", SearchBy.DIRECTOR)).containsExactly(3, 5);
+        assertThat(cache.metrics())
+                .containsEntry("hits", 1L)
+                .containsEntry("invalidated", 2L);
+    }
+
+    @Test
+    public void testEvictionAndTopQueries() {
+        for (int i = 0; i < 3; i++) {
+            cache.search("нолан", SearchBy.DIRECTOR);
+        }
+        cache.search("нолан", SearchBy.TITLE);
+        cache.search("а", SearchBy.TITLE);
+        cache.search("о", SearchBy.TITLE);
+        cache.search("е", SearchBy.TITLE);
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.metrics()).containsEntry("evictions", 2L);
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> top = (List<Map<String, Object>>) cache.metrics().get("topQueries");
+        assertThat(top).hasSize(5);
+        assertThat(top.get(0))
+                .containsEntry("query", "нолан")
+                .containsEntry("by", SearchBy.DIRECTOR)
+                .containsEntry("count", 3L);
+    }
+}
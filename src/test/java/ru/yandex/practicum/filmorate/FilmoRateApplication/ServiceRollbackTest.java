@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import ru.yandex.practicum.filmorate.dal.DirectorStorage;
+import ru.yandex.practicum.filmorate.dal.UserStorage;
+import ru.yandex.practicum.filmorate.exceptions.exceptions.DuplicatedDataException;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.LikesIndex;
+import ru.yandex.practicum.filmorate.index.LiveIdRegistry;
+import ru.yandex.practicum.filmorate.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.index.UserUniquenessIndex;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.doThrow;
+
+// Сервис падает посреди записи: база откатывается вместе с транзакцией сервиса, индексы в памяти — вместе с ней.
+// Класс не @Transactional, иначе откатывалась бы только транзакция теста, а транзакция сервиса в неё бы вошла
+@SpringBootTest
+@AutoConfigureTestDatabase
+class ServiceRollbackTest {
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private LikesIndex likesIndex;
+    @Autowired
+    private PopularityLeaderboard popularityLeaderboard;
+    @Autowired
+    private LiveIdRegistry liveIdRegistry;
+    @Autowired
+    private UserUniquenessIndex userUniquenessIndex;
+    @Autowired
+    private FriendGraph friendGraph;
+
+    @MockitoSpyBean
+    private UserStorage userRepository;
+    @MockitoSpyBean
+    private DirectorStorage directorRepository;
+
+    @Test
+    public void testUserDeleteFailingAfterLikesRemovalRestoresIndexes() {
+        int[] likedFilms = likesIndex.filmsOf(1);
+        List<Integer> popular = popularityLeaderboard.top(10, null, null);
+        doThrow(new IllegalStateException("сбой базы")).when(userRepository).delete(1);
+
+        // лайки пользователя уже сняты и в базе, и в индексах, когда удаление самого пользователя падает
+        assertThatThrownBy(() -> userService.delete(1)).isInstanceOf(IllegalStateException.class);
+
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM likes WHERE user_id = 1", Integer.class))
+                .isEqualTo(likedFilms.length);
+        assertThat(Arrays.stream(likesIndex.filmsOf(1)).boxed().toList())
+                .isEqualTo(Arrays.stream(likedFilms).boxed().toList());
+        assertThat(popularityLeaderboard.top(10, null, null)).isEqualTo(popular);
+        assertThat(liveIdRegistry.metrics().get("users")).isEqualTo(6);
+        assertThat(friendGraph.friendsOf(1)).isNotEmpty();
+        assertThatThrownBy(() -> userUniquenessIndex.checkAvailable(0, "ivan_petrov", "free@mail.ru"))
+                .isInstanceOf(DuplicatedDataException.class);
+    }
+
+    @Test
+    public void testFilmCreateFailingAfterInsertLeavesNoTrace() {
+        int films = (int) liveIdRegistry.metrics().get("films");
+        doThrow(new IllegalStateException("сбой базы")).when(directorRepository).saveFilmDirectors(anyInt(), anySet());
+
+        Film film = Film.builder()
+                .name("Откатанный фильм")
+                .description("Не должен остаться ни в базе, ни в индексах")
+                .releaseDate(LocalDate.of(2020, 1, 1))
+                .duration(100)
+                .mpa(MpaRating.builder().id(1).build())
+                .directors(Set.of(Director.builder().id(1).build()))
+                .build();
+
+        // строка film уже вставлена и id занят в реестре, когда сохранение режиссёров падает
+        assertThatThrownBy(() -> filmService.create(film)).isInstanceOf(IllegalStateException.class);
+
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM film WHERE film_name = 'Откатанный фильм'", Integer.class))
+                .isZero();
+        assertThat(liveIdRegistry.metrics().get("films")).isEqualTo(films);
+    }
+}
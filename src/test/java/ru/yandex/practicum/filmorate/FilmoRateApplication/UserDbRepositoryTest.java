@@ -60,26 +60,6 @@ class UserDbRepositoryTest {
         assertThat(userOptional.isPresent()).isFalse();
     }
 
-    @Test
-    public void testFindDuplicateDataUser() {
-        Optional<User> userOptional = userRepository.getUserById(1);
-        assertThat(userOptional.isPresent()).isTrue();
-
-        String existingUserEmail = userOptional.get().getEmail();
-        String existingUserLogin = userOptional.get().getLogin();
-
-        Optional<User> duplicateEmailUser = userRepository.findDuplicateDataUser(existingUserEmail, "");
-        assertThat(duplicateEmailUser.isPresent()).isTrue();
-        assertThat(duplicateEmailUser.get().getEmail()).isEqualTo(existingUserEmail);
-
-        Optional<User> duplicateLoginUser = userRepository.findDuplicateDataUser("", existingUserLogin);
-        assertThat(duplicateLoginUser.isPresent()).isTrue();
-        assertThat(duplicateLoginUser.get().getLogin()).isEqualTo(existingUserLogin);
-
-        Optional<User> noDuplicateUser = userRepository.findDuplicateDataUser("такой почты нет", "такого логина нет");
-        assertThat(noDuplicateUser.isPresent()).isFalse();
-    }
-
     @Test
     public void testGetAllUsers() {
         Collection<User> allUsers = userRepository.getAllUsers();
@@ -178,18 +158,6 @@ class UserDbRepositoryTest {
         assertThat(retrievedUser.get().getFriends().isEmpty()).isTrue();
     }
 
-    @Test
-    public void testFindDuplicateDataUserWithBothParameters() {
-        Optional<User> existingUser = userRepository.getUserById(1);
-        assertThat(existingUser.isPresent()).isTrue();
-
-        String existingEmail = existingUser.get().getEmail();
-        String existingLogin = existingUser.get().getLogin();
-
-        Optional<User> foundUser = userRepository.findDuplicateDataUser(existingEmail, existingLogin);
-        assertThat(foundUser.isPresent()).isTrue();
-    }
-
     @Test
     public void testUserDataConsistency() {
         Optional<User> user1 = userRepository.getUserById(1);
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.FilmoRateApplication;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.UserStorage;
+import ru.yandex.practicum.filmorate.dal.dBStorage.UserDbRepository;
+import ru.yandex.practicum.filmorate.dal.dBStorage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.exceptions.exceptions.DuplicatedDataException;
+import ru.yandex.practicum.filmorate.index.UserUniquenessIndex;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({UserDbRepository.class, UserRowMapper.class})
+@Sql(scripts = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class UserUniquenessIndexTest {
+    private final JdbcTemplate jdbc;
+    private final UserStorage userRepository;
+
+    private UserUniquenessIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new UserUniquenessIndex(userRepository);
+        index.rebuild();
+    }
+
+    @Test
+    public void testRejectsTakenLoginAndEmailWithoutQueries() {
+        assertThatThrownBy(() -> index.checkAvailable(0, "ivan_petrov", "ivan@mail.ru"))
+                .isInstanceOf(DuplicatedDataException.class)
+                .hasMessage("Пользователь с таким Login и Email уже зарегистрирован");
+        assertThatThrownBy(() -> index.checkAvailable(0, " Maria_S ", "new@mail.ru"))
+                .hasMessage("Пользователь с таким Login уже зарегистрирован");
+        assertThatThrownBy(() -> index.checkAvailable(0, "new_login", "OLGA@mail.ru"))
+                .hasMessage("Пользователь с таким Email уже зарегистрирован");
+        assertThatThrownBy(() -> index.checkAvailable(2, "ivan_petrov", "maria@gmail.com"))
+                .hasMessage("Такой Login или Email уже используется");
+
+        // свои логин и почта при обновлении не мешают
+        index.checkAvailable(1, "ivan_petrov", "ivan@mail.ru");
+        index.checkAvailable(0, "new_login", "new@mail.ru");
+
+        assertThat(index.metrics().get("users")).isEqualTo(6);
+        assertThat(index.metrics().get("conflicts")).isEqualTo(4L);
+        assertThat(index.metrics().get("healed")).isEqualTo(0L);
+    }
+
+    @Test
+    public void testTracksSavedAndDeletedUsers() {
+        User user = userRepository.getUserById(1).orElseThrow();
+        user.setLogin("ivan_new");
+        index.userSaved(userRepository.update(user));
+
+        // старый логин освободился, новый занят
+        index.checkAvailable(0, "ivan_petrov", "free@mail.ru");
+        assertThatThrownBy(() -> index.checkAvailable(0, "IVAN_NEW", "free@mail.ru"))
+                .isInstanceOf(DuplicatedDataException.class);
+
+        index.userDeleted(1);
+        index.checkAvailable(0, "ivan_new", "ivan@mail.ru");
+        assertThat(index.metrics().get("users")).isEqualTo(5);
+    }
+
+    @Test
+    public void testDropsValuesChangedAroundTheService() {
+        jdbc.update("UPDATE users SET login = 'maria_new' WHERE user_id = 2");
+
+        index.checkAvailable(0, "maria_s", "free@mail.ru");
+        assertThat(index.metrics().get("healed")).isEqualTo(1L);
+        assertThatThrownBy(() -> index.checkAvailable(0, "maria_new", "free@mail.ru"))
+                .isInstanceOf(DuplicatedDataException.class);
+    }
+
+    @Test
+    public void testUniqueConstraintIsTranslated() {
+        User duplicate = User.builder()
+                .email("ivan@mail.ru")
+                .login("other_login")
+                .name("Другой Иван")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+
+        assertThatThrownBy(() -> userRepository.create(duplicate))
+                .isInstanceOf(DuplicatedDataException.class);
+    }
+}
@@ -10,15 +10,18 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -414,6 +417,20 @@ class FilmControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void removeLike_WhenNotLiked_ShouldReturnNotFound() throws Exception {
+        // из data.sql: пользователь 2 не лайкал фильм 4
+        mockMvc.perform(delete("/films/{id}/like/{userId}", 4, 2))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(put("/films/{id}/like/{userId}", 4, 2))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/films/{id}/like/{userId}", 4, 2))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/films/{id}/like/{userId}", 4, 2))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void getPopularFilms_ShouldReturnPopularFilms() throws Exception {
         // Создаем фильм
@@ -429,10 +446,150 @@ class FilmControllerTest {
                 .andExpect(jsonPath("$").isArray());
     }
 
+    @Test
+    void getPopularFilms_ShouldFollowLikesAndFilters() throws Exception {
+        // Из data.sql: фильм 6 — 6 лайков, 3 — 5, 1 — 4, 2 и 5 — по 3, 4 — 2
+        mockMvc.perform(get("/films/popular").param("count", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(6, 3, 1)));
+
+        mockMvc.perform(put("/films/{id}/like/{userId}", 4, 5))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/films/{id}/like/{userId}", 4, 6))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/films/{id}/like/{userId}", 6, 6))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/films/{id}/like/{userId}", 6, 5))
+                .andExpect(status().isOk());
+
+        // Теперь у фильмов 1, 4 и 6 по 4 лайка, при равенстве выше фильм с меньшим id
+        mockMvc.perform(get("/films/popular").param("count", "4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(3, 1, 4, 6)));
+
+        // Жанр 6 (Боевик) есть у фильмов 1, 3, 4 и 5
+        mockMvc.perform(get("/films/popular").param("genreId", "6"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(3, 1, 4, 5)));
+
+        mockMvc.perform(get("/films/popular").param("genreId", "6").param("year", "2019"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(4)));
+    }
+
     @Test
     void getPopularFilms_WithDefaultCount_ShouldReturnFilms() throws Exception {
         mockMvc.perform(get("/films/popular"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isArray());
     }
-}
\ No newline at end of file
+
+    // Потоковая выдача NDJSON и прежний JSON-массив для остальных клиентов
+    @Test
+    void getFilms_WithNdjsonAccept_ShouldStreamOneFilmPerLine() throws Exception {
+        MvcResult started = mockMvc.perform(get("/films").accept(NdjsonWriter.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(NdjsonWriter.APPLICATION_NDJSON_VALUE))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        String[] lines = body.split("\n");
+        assertEquals(6, lines.length);
+        Film first = objectMapper.readValue(lines[0], Film.class);
+        assertEquals(1, first.getId());
+        assertEquals(2, first.getGenres().size());
+        assertEquals(2, first.getDirectors().size());
+
+        mockMvc.perform(get("/films"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(6));
+    }
+
+    // Постраничная выдача по курсору
+    @Test
+    void getFilmsPage_ShouldFollowCursorToLastPage() throws Exception {
+        String body = mockMvc.perform(get("/films").param("limit", "4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(1, 2, 3, 4)))
+                .andExpect(jsonPath("$.items[0].genres.length()").value(2))
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty())
+                .andReturn().getResponse().getContentAsString();
+        String cursor = objectMapper.readTree(body).get("nextCursor").asText();
+
+        mockMvc.perform(get("/films").param("limit", "4").param("after", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(5, 6)))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        mockMvc.perform(get("/films").param("limit", "4").param("after", "не курсор"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Кэш карточки фильма: повторное чтение — попадание, изменение режиссёра сбрасывает карточку
+    @Test
+    void getFilmById_ShouldBeCachedAndInvalidatedByDirectorUpdate() throws Exception {
+        mockMvc.perform(get("/films/1")).andExpect(status().isOk());
+        long hitsBefore = objectMapper.readTree(mockMvc.perform(get("/metrics"))
+                .andReturn().getResponse().getContentAsString()).at("/filmCache/hits").asLong();
+
+        mockMvc.perform(get("/films/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.genres.length()").value(2));
+        mockMvc.perform(get("/metrics"))
+                .andExpect(jsonPath("$.filmCache.hits").value(hitsBefore + 1));
+
+        mockMvc.perform(put("/directors")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\": 1, \"name\": \"Новое имя\"}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/films/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.directors[?(@.id == 1)].name").value("Новое имя"));
+    }
+
+    // Подсказки по началу слова в названии или имени режиссёра; новый фильм виден сразу, до пересборки дерева
+    @Test
+    void suggest_ShouldMatchWordPrefixesOrderedByLikes() throws Exception {
+        mockMvc.perform(get("/films/suggest").param("prefix", "  НО"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(3, 5)))
+                .andExpect(jsonPath("$[0].name").value("Начало"));
+
+        mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Новый фильм\", \"description\": \"Описание\", "
+                                + "\"releaseDate\": \"2001-01-01\", \"duration\": 100, \"mpa\": {\"id\": 1}}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/films/suggest").param("prefix", "но").param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", contains("Начало", "Довод", "Новый фильм")));
+        mockMvc.perform(get("/films/suggest").param("prefix", "фил"))
+                .andExpect(jsonPath("$[*].name", contains("Новый фильм")));
+        mockMvc.perform(get("/films/suggest").param("prefix", "ильм"))
+                .andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/films/suggest").param("prefix", "но").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        // больше top-k (по умолчанию 10) индекс подсказок не хранит
+        mockMvc.perform(get("/films/suggest").param("prefix", "но").param("limit", "11"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void searchFilms_FuzzyShouldTolerateTypos() throws Exception {
+        mockMvc.perform(get("/films/search").param("query", "нолон").param("by", "director"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+
+        mockMvc.perform(get("/films/search").param("query", "нолон").param("by", "director").param("fuzzy", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(3, 5)));
+    }
+}
@@ -0,0 +1,141 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.Review;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@Transactional
+class ReviewControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Отзывы идут по убыванию полезности, при равенстве — по id; курсор не теряет и не повторяет отзывы
+    @Test
+    void getReviewsPage_ShouldOrderByUsefulAndFollowCursor() throws Exception {
+        int first = createReview(1, 1);
+        int second = createReview(2, 1);
+        int third = createReview(3, 1);
+        int fourth = createReview(4, 1);
+
+        mockMvc.perform(put("/reviews/{id}/like/{userId}", third, 5)).andExpect(status().isOk());
+        mockMvc.perform(put("/reviews/{id}/like/{userId}", third, 6)).andExpect(status().isOk());
+        mockMvc.perform(put("/reviews/{id}/like/{userId}", second, 5)).andExpect(status().isOk());
+        mockMvc.perform(put("/reviews/{id}/dislike/{userId}", fourth, 5)).andExpect(status().isOk());
+
+        String body = mockMvc.perform(get("/reviews").param("filmId", "1").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].reviewId", contains(third, second)))
+                .andReturn().getResponse().getContentAsString();
+        String cursor = objectMapper.readTree(body).get("nextCursor").asText();
+
+        mockMvc.perform(get("/reviews").param("filmId", "1").param("limit", "2").param("after", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].reviewId", contains(first, fourth)))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void removeReaction_WhenNothingToRemove_ShouldReturnNotFound() throws Exception {
+        int review = createReview(1, 1);
+        mockMvc.perform(put("/reviews/{id}/like/{userId}", review, 5)).andExpect(status().isOk());
+
+        mockMvc.perform(delete("/reviews/{id}/like/{userId}", review, 5)).andExpect(status().isOk());
+        mockMvc.perform(delete("/reviews/{id}/like/{userId}", review, 5)).andExpect(status().isNotFound());
+        mockMvc.perform(delete("/reviews/{id}/dislike/{userId}", review, 6)).andExpect(status().isNotFound());
+        mockMvc.perform(delete("/reviews/{id}/like/{userId}", 9999, 5)).andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/reviews/{id}", review))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.useful").value(0));
+    }
+
+    // Отзывы удалённых фильма и пользователя исчезают из списка лучших отзывов, хотя удаляются каскадом в базе
+    @Test
+    void getReviews_AfterFilmOrUserDeleted_ShouldNotReturnTheirReviews() throws Exception {
+        int filmReview = createReview(1, 2);
+        int userReview = createReview(3, 1);
+        int kept = createReview(4, 1);
+
+        mockMvc.perform(get("/reviews"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].reviewId", hasItems(filmReview, userReview, kept)));
+
+        mockMvc.perform(delete("/films/{id}", 2)).andExpect(status().isOk());
+        mockMvc.perform(get("/reviews"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].reviewId", not(hasItem(filmReview))))
+                .andExpect(jsonPath("$[*].reviewId", hasItems(userReview, kept)));
+
+        mockMvc.perform(delete("/users/{id}", 3)).andExpect(status().isOk());
+        mockMvc.perform(get("/reviews"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].reviewId", not(hasItem(userReview))))
+                .andExpect(jsonPath("$[*].reviewId", hasItem(kept)));
+    }
+
+    // Полезность из тела запроса игнорируется: новый отзыв не может сразу оказаться в начале списка
+    @Test
+    void createReview_WithUsefulInBody_ShouldStartFromZero() throws Exception {
+        int liked = createReview(1, 1);
+        mockMvc.perform(put("/reviews/{id}/like/{userId}", liked, 5)).andExpect(status().isOk());
+        mockMvc.perform(get("/reviews")).andExpect(status().isOk());
+
+        Review review = Review.builder()
+                .content("Накрученный отзыв")
+                .isPositive(true)
+                .userId(2)
+                .filmId(1)
+                .useful(1_000_000)
+                .build();
+        String body = mockMvc.perform(post("/reviews")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(review)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.useful").value(0))
+                .andReturn().getResponse().getContentAsString();
+        int created = objectMapper.readTree(body).get("reviewId").asInt();
+
+        mockMvc.perform(get("/reviews"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].reviewId").value(liked))
+                .andExpect(jsonPath("$[?(@.reviewId == %d)].useful", created).value(0));
+    }
+
+    private int createReview(int userId, int filmId) throws Exception {
+        Review review = Review.builder()
+                .content("Отзыв пользователя " + userId)
+                .isPositive(true)
+                .userId(userId)
+                .filmId(filmId)
+                .build();
+
+        String body = mockMvc.perform(post("/reviews")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(review)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("reviewId").asInt();
+    }
+}
@@ -9,14 +9,17 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 
-import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
-import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest  // загружает полный контекст приложения Spring, имитируя запуск реального приложения.
@@ -323,4 +326,76 @@ class UserControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
-}
\ No newline at end of file
+
+    @Test
+    void getUsers_WithNdjsonAccept_ShouldStreamOneUserPerLine() throws Exception {
+        MvcResult started = mockMvc.perform(get("/users").accept(NdjsonWriter.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        String[] lines = body.split("\n");
+        assertEquals(6, lines.length);
+        assertEquals(1, objectMapper.readTree(lines[0]).get("id").asInt());
+    }
+
+    @Test
+    void getUsersPage_ShouldFollowCursorToLastPage() throws Exception {
+        String body = mockMvc.perform(get("/users").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(5))
+                .andExpect(jsonPath("$.items[4].id").value(5))
+                .andReturn().getResponse().getContentAsString();
+        String cursor = objectMapper.readTree(body).get("nextCursor").asText();
+
+        mockMvc.perform(get("/users").param("limit", "5").param("after", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].id").value(6))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void getFeedSince_ShouldReturnPlainListAndRejectNegativeSince() throws Exception {
+        // since вместе с limit — опрос новых событий, а не постраничная выдача
+        mockMvc.perform(get("/users/6/feed").param("since", "0").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isArray())
+                .andExpect(jsonPath("$.length()").value(0));
+
+        mockMvc.perform(get("/users/6/feed").param("since", "-1"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/users/999/feed").param("since", "0"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getFriendSuggestions_ShouldReturnFriendsOfFriends() throws Exception {
+        mockMvc.perform(get("/users/2/friends/suggestions").param("count", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].id").value(4));
+
+        mockMvc.perform(get("/users/999/friends/suggestions"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void findPath_ShouldReturnShortestFriendshipChain() throws Exception {
+        mockMvc.perform(get("/users/6/path/2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].id").value(6))
+                .andExpect(jsonPath("$[1].id").value(1))
+                .andExpect(jsonPath("$[2].id").value(2));
+
+        mockMvc.perform(get("/users/6/path/2").param("maxDepth", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+}